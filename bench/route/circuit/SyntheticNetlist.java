@@ -0,0 +1,156 @@
+package route.circuit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import route.circuit.architecture.BlockType;
+import route.circuit.architecture.DelayTables;
+import route.circuit.architecture.SyntheticArchitecture;
+import route.circuit.block.AbstractBlock;
+import route.circuit.block.GlobalBlock;
+import route.circuit.block.LeafBlock;
+import route.circuit.exceptions.PlacedBlockException;
+import route.circuit.pin.AbstractPin;
+import route.circuit.pin.GlobalPin;
+import route.circuit.resource.Site;
+import route.circuit.resource.SyntheticRouteGraph;
+import route.circuit.timing.TimingGraphSLL;
+import route.route.Connection;
+import route.route.Net;
+
+/**
+ * A placed circuit on the tiles of a SyntheticRouteGraph, with the nets,
+ * connections and timing graph of a circuit that is read from a netlist.
+ *
+ * The first column has input pads, the last column output pads and the
+ * other columns a clb with a lut per tile. The nets go from a column to
+ * the next one: every output drives an input in its row, the other
+ * inputs are driven by a random output at most radius rows away.
+ */
+public class SyntheticNetlist {
+    private static final short BOUNDING_BOX_RANGE = 3;
+
+    private final List<GlobalBlock> globalBlocks = new ArrayList<>();
+    private final Map<BlockType, List<AbstractBlock>> leafBlocks = new HashMap<>();
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<Net> nets = new ArrayList<>();
+    private final TimingGraphSLL timingGraph;
+
+    public SyntheticNetlist(SyntheticRouteGraph graph, int radius, long seed) throws PlacedBlockException {
+        SyntheticArchitecture architecture = SyntheticArchitecture.getInstance();
+        Random random = new Random(seed);
+
+        int width = graph.width, height = graph.height;
+        GlobalBlock[][] blocks = new GlobalBlock[width][height];
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                blocks[x][y] = this.addBlock(graph, architecture, x, y, width);
+            }
+        }
+
+        // Connect the outputs of each column to the inputs of the next column
+        for(int x = 0; x < width - 1; x++) {
+            for(int y = 0; y < height; y++) {
+                List<AbstractPin> inputs = blocks[x + 1][y].getInputPins();
+                connect(blocks[x][y], inputs.get(random.nextInt(inputs.size())));
+            }
+            for(int y = 0; y < height; y++) {
+                for(AbstractPin input : blocks[x + 1][y].getInputPins()) {
+                    if(input.getSource() == null) {
+                        int sourceY = Math.min(height - 1, Math.max(0, y + random.nextInt(2 * radius + 1) - radius));
+                        connect(blocks[x][sourceY], input);
+                    }
+                }
+            }
+        }
+
+        this.timingGraph = new TimingGraphSLL(this.globalBlocks, this.leafBlocks, new DelayTables());
+        this.timingGraph.build();
+
+        // The connections need the timing nodes of their pins
+        for(GlobalBlock block : this.globalBlocks) {
+            for(AbstractPin abstractSourcePin : block.getOutputPins()) {
+                GlobalPin sourcePin = (GlobalPin) abstractSourcePin;
+                if(sourcePin.getNumSinks() > 0) {
+                    List<Connection> net = new ArrayList<>();
+                    for(AbstractPin sinkPin : sourcePin.getSinks()) {
+                        Connection connection = new Connection(this.connections.size(), sourcePin, (GlobalPin) sinkPin, 0);
+                        this.connections.add(connection);
+                        net.add(connection);
+                    }
+                    this.nets.add(new Net(sourcePin.getNetName(), net, BOUNDING_BOX_RANGE, 0));
+                }
+            }
+        }
+        this.timingGraph.addSLLConnections(this.connections);
+    }
+
+    private GlobalBlock addBlock(SyntheticRouteGraph graph, SyntheticArchitecture architecture, int x, int y, int width) throws PlacedBlockException {
+        BlockType globalType, leafType;
+        if(x == 0) {
+            globalType = architecture.inputType;
+            leafType = architecture.inpadType;
+        } else if(x == width - 1) {
+            globalType = architecture.outputType;
+            leafType = architecture.outpadType;
+        } else {
+            globalType = architecture.clbType;
+            leafType = architecture.lutType;
+        }
+
+        String name = "n_" + x + "_" + y;
+        GlobalBlock block = new GlobalBlock(name, globalType, this.globalBlocks.size(), 0);
+        LeafBlock leaf = new LeafBlock(name, leafType, 0, block, block);
+        this.globalBlocks.add(block);
+        if(!this.leafBlocks.containsKey(leafType)) {
+            this.leafBlocks.put(leafType, new ArrayList<AbstractBlock>());
+        }
+        this.leafBlocks.get(leafType).add(leaf);
+
+        // The global pins pass the pins of the leaf block
+        if(x > 0) {
+            List<AbstractPin> globalInputs = block.getInputPins();
+            List<AbstractPin> leafInputs = leaf.getInputPins();
+            for(int i = 0; i < leafInputs.size(); i++) {
+                globalInputs.get(i).addSink(leafInputs.get(i));
+                leafInputs.get(i).setSource(globalInputs.get(i));
+            }
+        }
+        if(x < width - 1) {
+            GlobalPin output = (GlobalPin) block.getOutputPins().get(0);
+            AbstractPin leafOutput = leaf.getOutputPins().get(0);
+            leafOutput.addSink(output);
+            output.setSource(leafOutput);
+            output.setNetName(name);
+        }
+
+        Site site = new Site(x, y, 1, globalType, 1);
+        site.addSource(graph.getSourceNode(x, y));
+        site.addSink(graph.getSinkNode(x, y));
+        block.setSiteInstance(site.getInstance(0));
+
+        return block;
+    }
+
+    private static void connect(GlobalBlock source, AbstractPin sink) {
+        GlobalPin output = (GlobalPin) source.getOutputPins().get(0);
+        output.addSink(sink);
+        sink.setSource(output);
+        ((GlobalPin) sink).setNetName(output.getNetName());
+    }
+
+    public List<Connection> getConnections() {
+        return Collections.unmodifiableList(this.connections);
+    }
+    public List<Net> getNets() {
+        return Collections.unmodifiableList(this.nets);
+    }
+    public TimingGraphSLL getTimingGraph() {
+        return this.timingGraph;
+    }
+}
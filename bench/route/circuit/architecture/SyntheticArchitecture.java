@@ -0,0 +1,92 @@
+package route.circuit.architecture;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import route.util.Pair;
+
+/**
+ * The block types of the synthetic circuits of the router benchmarks,
+ * registered in the BlockTypeData and PortTypeData singletons without
+ * an architecture file.
+ *
+ * An io block is an input pad or an output pad, a clb block has one lut.
+ * Both have an equivalent input port "I" and an output port "O" with
+ * one pin, as the ports of the tiles of a SyntheticRouteGraph.
+ */
+public class SyntheticArchitecture {
+    public static final int INPUTS = 4;
+
+    private static final float LUT_DELAY = 2.5e-10f;
+    private static final float CLOCK_TO_PAD = 1e-10f;
+
+    private static SyntheticArchitecture instance;
+
+    // The block types are singletons, so they are registered once
+    public static synchronized SyntheticArchitecture getInstance() {
+        if(SyntheticArchitecture.instance == null) {
+            SyntheticArchitecture.instance = new SyntheticArchitecture();
+        }
+        return SyntheticArchitecture.instance;
+    }
+
+    // Global block types with their mode
+    public final BlockType inputType, outputType, clbType;
+    // Leaf block types with their mode
+    public final BlockType inpadType, outpadType, lutType;
+
+    public final PortType ioInput, ioOutput, clbInput, clbOutput;
+    public final PortType inpadOutput, outpadInput, lutInput, lutOutput;
+
+    private SyntheticArchitecture() {
+        BlockTypeData data = BlockTypeData.getInstance();
+
+        BlockType io = data.addType(null, "io", BlockCategory.IO, 1, 1, 0, 1, 0, 1, 1, false,
+                ports("I", 1, true), ports("O", 1, false), ports());
+        this.inputType = data.addMode(io, "inpad");
+        this.outputType = data.addMode(io, "outpad");
+
+        BlockType clb = data.addType(null, "clb", BlockCategory.CLB, 1, 1, 1, 1, 0, 1, 1, false,
+                ports("I", INPUTS, true), ports("O", 1, false), ports());
+        this.clbType = data.addMode(clb, "clb");
+
+        BlockType inpad = data.addType(this.inputType, "inpad", BlockCategory.LEAF, 1, -1, -1, -1, -1, -1, -1, true,
+                ports(), ports("inpad", 1, false), ports());
+        this.inpadType = data.addMode(inpad, "");
+        data.addChild(this.inputType, inpad, 1);
+
+        BlockType outpad = data.addType(this.outputType, "outpad", BlockCategory.LEAF, 1, -1, -1, -1, -1, -1, -1, true,
+                ports("outpad", 1, false), ports(), ports());
+        this.outpadType = data.addMode(outpad, "");
+        data.addChild(this.outputType, outpad, 1);
+
+        BlockType lut = data.addType(this.clbType, "lut", BlockCategory.LEAF, 1, -1, -1, -1, -1, -1, -1, false,
+                ports("in", INPUTS, false), ports("out", 1, false), ports());
+        this.lutType = data.addMode(lut, "");
+        data.addChild(this.clbType, lut, 1);
+
+        data.postProcess();
+
+        this.ioInput = new PortType(io, "I");
+        this.ioOutput = new PortType(io, "O");
+        this.clbInput = new PortType(clb, "I");
+        this.clbOutput = new PortType(clb, "O");
+        this.inpadOutput = new PortType(inpad, "inpad");
+        this.outpadInput = new PortType(outpad, "outpad");
+        this.lutInput = new PortType(lut, "in");
+        this.lutOutput = new PortType(lut, "out");
+
+        // The delays that are not set are 0, the other ports are connected without delay
+        this.lutInput.setDelay(new DelayElement(-1, this.lutInput, -1, -1, this.lutOutput, -1, LUT_DELAY));
+        this.inpadOutput.setSetupTime(CLOCK_TO_PAD);
+    }
+
+    private static Map<String, Pair<Integer, Boolean>> ports() {
+        return new HashMap<>();
+    }
+    private static Map<String, Pair<Integer, Boolean>> ports(String name, int numPins, boolean equivalent) {
+        Map<String, Pair<Integer, Boolean>> ports = new HashMap<>();
+        ports.put(name, new Pair<>(numPins, equivalent));
+        return ports;
+    }
+}
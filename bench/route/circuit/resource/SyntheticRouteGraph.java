@@ -0,0 +1,176 @@
+package route.circuit.resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import route.circuit.architecture.SyntheticArchitecture;
+
+/**
+ * A routing resource graph on a grid of width x height tiles that doesn't
+ * need an architecture or a VPR dump, used by the router benchmarks.
+ *
+ * Every tile has a source, an output pin "O", the input pins "I" of a
+ * SyntheticArchitecture block and a sink. The channels have tracks
+ * horizontal and vertical wires that span wireLength tiles, the wires of
+ * a track are staggered over the tracks. A wire drives the next and the
+ * previous wire of its track, the orthogonal wires of the same track in
+ * the tiles it spans and one input pin of these tiles. The output pin
+ * drives all wires of its tile, all input pins drive the sink.
+ */
+public class SyntheticRouteGraph {
+	private static final int INPUTS = SyntheticArchitecture.INPUTS;
+	private static final int SOURCE = 0, OPIN = 1, SINK = 2, IPIN = 3, PINS = IPIN + INPUTS;
+
+	public final int width, height, tracks, wireLength;
+
+	private final List<RouteNode> routeNodes;
+	private final RouteGraph graph;
+
+	public SyntheticRouteGraph(int width, int height, int tracks) {
+		this(width, height, tracks, 1);
+	}
+	public SyntheticRouteGraph(int width, int height, int tracks, int wireLength) {
+		this.width = width;
+		this.height = height;
+		this.tracks = tracks;
+		this.wireLength = wireLength;
+
+		IndexedData pinData = new IndexedData(0, 0.95f, -1, 1, 0, 0, 0);
+		IndexedData sourceData = new IndexedData(1, 1, -1, 1, 0, 0, 0);
+		IndexedData chanxData = new IndexedData(2, 1, 3, 1f / wireLength, 0, 0, 0);
+		IndexedData chanyData = new IndexedData(3, 1, 2, 1f / wireLength, 0, 0, 0);
+		chanxData.setOrthoData(chanyData);
+		chanyData.setOrthoData(chanxData);
+
+		RouteSwitch wireSwitch = new RouteSwitch(0, "wire", 500, 1e-15f, 1e-15f, 5e-11f, 1, 1);
+		RouteSwitch pinSwitch = new RouteSwitch(1, "pin", 0, 0, 0, 1e-11f, 1, 1);
+
+		List<RouteNode> nodes = new ArrayList<>();
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				nodes.add(new Source(this.index(x, y, SOURCE), x, x, y, y, 0, 1, sourceData, 1));
+				nodes.add(new Opin(this.index(x, y, OPIN), x, x, y, y, 0, "O", 0, pinData, "none", 2 * tracks));
+				nodes.add(new Sink(this.index(x, y, SINK), x, x, y, y, 0, INPUTS, sourceData, 0));
+				for(int k = 0; k < INPUTS; k++) {
+					nodes.add(new Ipin(this.index(x, y, IPIN + k), x, x, y, y, k, "I", k, pinData, "none", 1));
+				}
+			}
+		}
+
+		//The wire of each track that spans a tile, a wire ends where the tile index plus the track is a multiple of the wire length
+		RouteNode[][][] chanx = new RouteNode[width][height][tracks];
+		RouteNode[][][] chany = new RouteNode[width][height][tracks];
+		for(int y = 0; y < height; y++) {
+			for(int t = 0; t < tracks; t++) {
+				for(int x = 0; x < width; x++) {
+					int start = x;
+					while(x < width - 1 && (x + t + 1) % wireLength != 0) x++;
+					RouteNode wire = new Chanx(nodes.size(), start, x, y, y, t, 100 * (x - start + 1), 1e-14f * (x - start + 1), chanxData, "INC_DIR", 0);
+					nodes.add(wire);
+					for(int i = start; i <= x; i++) chanx[i][y][t] = wire;
+				}
+			}
+		}
+		for(int x = 0; x < width; x++) {
+			for(int t = 0; t < tracks; t++) {
+				for(int y = 0; y < height; y++) {
+					int start = y;
+					while(y < height - 1 && (y + t + 1) % wireLength != 0) y++;
+					RouteNode wire = new Chany(nodes.size(), x, x, start, y, t, 100 * (y - start + 1), 1e-14f * (y - start + 1), chanyData, "INC_DIR", 0);
+					nodes.add(wire);
+					for(int i = start; i <= y; i++) chany[x][i][t] = wire;
+				}
+			}
+		}
+
+		List<RouteNode> children = new ArrayList<>();
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				connect(nodes.get(this.index(x, y, SOURCE)), Arrays.asList(nodes.get(this.index(x, y, OPIN))), pinSwitch);
+				for(int k = 0; k < INPUTS; k++) {
+					connect(nodes.get(this.index(x, y, IPIN + k)), Arrays.asList(nodes.get(this.index(x, y, SINK))), pinSwitch);
+				}
+
+				children.clear();
+				for(int t = 0; t < tracks; t++) {
+					children.add(chanx[x][y][t]);
+					children.add(chany[x][y][t]);
+				}
+				connect(nodes.get(this.index(x, y, OPIN)), children, wireSwitch);
+			}
+		}
+		for(RouteNode wire : nodes) {
+			if(wire.type == RouteNodeType.CHANX) {
+				int y = wire.ylow, t = wire.n;
+				children.clear();
+				if(wire.xlow > 0) children.add(chanx[wire.xlow - 1][y][t]);
+				if(wire.xhigh < width - 1) children.add(chanx[wire.xhigh + 1][y][t]);
+				for(int x = wire.xlow; x <= wire.xhigh; x++) {
+					children.add(chany[x][y][t]);
+					children.add(nodes.get(this.index(x, y, IPIN + t % INPUTS)));
+				}
+				connect(wire, children, wireSwitch);
+			} else if(wire.type == RouteNodeType.CHANY) {
+				int x = wire.xlow, t = wire.n;
+				children.clear();
+				if(wire.ylow > 0) children.add(chany[x][wire.ylow - 1][t]);
+				if(wire.yhigh < height - 1) children.add(chany[x][wire.yhigh + 1][t]);
+				for(int y = wire.ylow; y <= wire.yhigh; y++) {
+					children.add(chanx[x][y][t]);
+					children.add(nodes.get(this.index(x, y, IPIN + t % INPUTS)));
+				}
+				connect(wire, children, wireSwitch);
+			}
+		}
+
+		for(RouteNode node : nodes) {
+			node.setDelay(node.isWire ? wireSwitch : pinSwitch);
+		}
+
+		//The names of the sources and sinks, as the port names of the pins of a Connection
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				((Source) nodes.get(this.index(x, y, SOURCE))).setName();
+				for(int k = 0; k < INPUTS; k++) {
+					((Ipin) nodes.get(this.index(x, y, IPIN + k))).setSinkName();
+				}
+			}
+		}
+
+		this.routeNodes = nodes;
+		this.graph = new RouteGraph(this.routeNodes);
+	}
+
+	private static void connect(RouteNode node, List<RouteNode> children, RouteSwitch routeSwitch) {
+		node.setNumChildren(children.size());
+		for(int i = 0; i < children.size(); i++) {
+			node.setChild(i, children.get(i));
+			node.setSwitchType(i, routeSwitch);
+		}
+	}
+
+	//The pins of the tiles are the first nodes, the wires follow
+	private int index(int x, int y, int offset) {
+		return (y * this.width + x) * PINS + offset;
+	}
+
+	public RouteGraph getRouteGraph() {
+		return this.graph;
+	}
+	public List<RouteNode> getRouteNodes() {
+		return this.routeNodes;
+	}
+	public int getSource(int x, int y) {
+		return this.index(x, y, SOURCE);
+	}
+	public int getSink(int x, int y) {
+		return this.index(x, y, SINK);
+	}
+	public Source getSourceNode(int x, int y) {
+		return (Source) this.routeNodes.get(this.getSource(x, y));
+	}
+	public Sink getSinkNode(int x, int y) {
+		return (Sink) this.routeNodes.get(this.getSink(x, y));
+	}
+}
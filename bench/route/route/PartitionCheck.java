@@ -0,0 +1,145 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import route.circuit.SyntheticNetlist;
+import route.circuit.exceptions.PlacedBlockException;
+import route.circuit.resource.RouteNode;
+import route.circuit.resource.SyntheticRouteGraph;
+import route.route.PartitionTree.Partition;
+
+/**
+ * Checks that the parallel routing of a PartitionTree does not depend on
+ * the number of threads. The same synthetic circuit is routed for a
+ * number of iterations with one thread and with the given number of
+ * threads, level by level as in ConnectionRouter, and the routes of all
+ * connections are compared. The partitions of a level only stay
+ * independent if the margins of the tree cover the wires that stick out
+ * of the bounding boxes, so the graph has long wires by default.
+ *
+ * Usage: PartitionCheck [-size tiles] [-tracks tracks] [-length wire
+ * length] [-radius rows] [-threads threads] [-iterations iterations]
+ */
+public class PartitionCheck {
+	private static final long SEED = 1;
+	private static final int BB_INITIAL_MARGIN = 2;
+	private static final float ACC_FAC = 1;
+
+	private final int size, tracks, wireLength, radius, iterations;
+	private final int maxDepth;
+
+	private PartitionCheck(int size, int tracks, int wireLength, int radius, int iterations, int threads) {
+		this.size = size;
+		this.tracks = tracks;
+		this.wireLength = wireLength;
+		this.radius = radius;
+		this.iterations = iterations;
+
+		//The depth of ConnectionRouter for the parallel run, both runs route the same tree
+		this.maxDepth = 2 + (int) Math.ceil(Math.log(threads) / Math.log(2));
+	}
+
+	public static void main(String[] args) throws PlacedBlockException {
+		int size = 60, tracks = 8, wireLength = 8, radius = 10, threads = 4, iterations = 3;
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+				case "-size": size = Integer.parseInt(args[++i]); break;
+				case "-tracks": tracks = Integer.parseInt(args[++i]); break;
+				case "-length": wireLength = Integer.parseInt(args[++i]); break;
+				case "-radius": radius = Integer.parseInt(args[++i]); break;
+				case "-threads": threads = Integer.parseInt(args[++i]); break;
+				case "-iterations": iterations = Integer.parseInt(args[++i]); break;
+				default: throw new IllegalArgumentException("Non-existent option: " + args[i]);
+			}
+		}
+
+		PartitionCheck check = new PartitionCheck(size, tracks, wireLength, radius, iterations, threads);
+		List<List<Integer>> sequential = check.route(1);
+		List<List<Integer>> parallel = check.route(threads);
+
+		int numDifferent = 0;
+		for(int i = 0; i < sequential.size(); i++) {
+			if(!sequential.get(i).equals(parallel.get(i))) {
+				numDifferent++;
+			}
+		}
+		if(numDifferent > 0) {
+			throw new IllegalStateException(numDifferent + " of " + sequential.size() + " connections are routed differently with 1 and " + threads + " threads");
+		}
+		System.out.printf("The %d connections are routed identically with 1 and %d threads\n", sequential.size(), threads);
+	}
+
+	/**
+	 * Route a new instance of the circuit and return the route node
+	 * indexes of each connection.
+	 */
+	private List<List<Integer>> route(int numThreads) throws PlacedBlockException {
+		SyntheticRouteGraph synthetic = new SyntheticRouteGraph(this.size, this.size, this.tracks, this.wireLength);
+		SyntheticNetlist netlist = new SyntheticNetlist(synthetic, this.radius, SEED);
+		List<Connection> connections = netlist.getConnections();
+
+		//The margins of ConnectionRouter: the longest wire span and the pins
+		int margin = this.wireLength - 1 + 2;
+		PartitionTree partitionTree = new PartitionTree(netlist.getNets(), connections, margin, margin, this.maxDepth);
+
+		RouteWorker[] workers = new RouteWorker[numThreads];
+		for(int i = 0; i < numThreads; i++) {
+			workers[i] = new RouteWorker(new RouteBenchmark.SearchParameters(synthetic.getRouteGraph(), true, null));
+		}
+		for(Connection con : connections) {
+			con.initBoundingBox(BB_INITIAL_MARGIN);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			for(int iteration = 0; iteration < this.iterations; iteration++) {
+				for(List<Partition> level : partitionTree.getLevels()) {
+					this.routeLevel(level, workers, executor);
+				}
+				ConnectionRouter.updateCost(synthetic.getRouteNodes(), 0.5f, ACC_FAC);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		List<List<Integer>> routes = new ArrayList<>();
+		for(Connection con : connections) {
+			List<Integer> route = new ArrayList<>();
+			for(RouteNode node : con.routeNodes) {
+				route.add(node.routeNodeData.index);
+			}
+			routes.add(route);
+		}
+		return routes;
+	}
+
+	//Partition p of the level is routed by task p % numTasks, as in ConnectionRouter.routeParallel
+	private void routeLevel(List<Partition> level, RouteWorker[] workers, ExecutorService executor) {
+		int numTasks = Math.min(workers.length, level.size());
+		List<Future<?>> futures = new ArrayList<>();
+		for(int i = 0; i < numTasks; i++) {
+			final int first = i;
+			final RouteWorker worker = workers[i];
+			futures.add(executor.submit(() -> {
+				for(int p = first; p < level.size(); p += numTasks) {
+					for(Connection con : level.get(p).connections) {
+						worker.routeConnection(con);
+					}
+				}
+			}));
+		}
+
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException error) {
+				throw new RuntimeException("Parallel routing failed", error);
+			}
+		}
+	}
+}
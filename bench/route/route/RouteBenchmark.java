@@ -0,0 +1,438 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import route.circuit.SyntheticNetlist;
+import route.circuit.exceptions.PlacedBlockException;
+import route.circuit.resource.RouteGraph;
+import route.circuit.resource.RouteNode;
+import route.circuit.resource.SyntheticRouteGraph;
+import route.circuit.timing.TimingGraphSLL;
+import route.util.IntCountingSet;
+
+/**
+ * Micro benchmarks of the router and timing kernels on a SyntheticNetlist
+ * that is placed on a SyntheticRouteGraph, so a change can be measured
+ * without the VPR inputs of a full flow. All connections are routed once
+ * before the kernels run. Each kernel runs a number of warmup rounds and
+ * measured rounds, the mean and standard deviation of a round and the
+ * throughput are printed.
+ *
+ * The benchmarks are not part of the tool flow, they are compiled with
+ * the sources: javac -d out $(find src bench -name "*.java")
+ *
+ * Usage: RouteBenchmark [-size tiles] [-tracks tracks] [-length wire
+ * length] [-radius rows] [-threads timing threads] [-warmup rounds]
+ * [-rounds rounds] [kernel ...], all kernels run if none is given.
+ *
+ *   queue_heap, queue_priority: add and poll search like costs
+ *   search_heap, search_priority: directed searches of a RouteWorker
+ *     for random connections, with the distance based estimate
+ *   search_lookahead: the searches with the heap and the lookahead map
+ *   source_counting: add, count and remove the sources of route nodes
+ *   update_cost: present and accumulated cost of the overused nodes
+ *   timing_full: wire delays and a full timing analysis after a
+ *     hundredth of the connections is rerouted
+ *   timing_incremental: the same with the incremental timing analysis
+ */
+public class RouteBenchmark {
+	private interface Kernel {
+		//Untimed work before each round
+		default void prepare() {}
+		//Returns the number of operations of the round
+		long run();
+	}
+
+	private static final int CONNECTIONS_PER_ROUND = 200;
+	private static final int REROUTES_PER_ROUND = 100;
+	private static final long SEED = 1;
+
+	private static final float MAX_CRITICALITY = 0.99f, CRITICALITY_EXPONENT = 8;
+
+	//Bounding box of the connections, as with the adaptive bounding box of the router
+	private static final short BB_RANGE = 3;
+	private static final int BB_INITIAL_MARGIN = 2;
+
+	//Keeps the results of the kernels alive
+	private static volatile float sink;
+
+	private final SyntheticRouteGraph synthetic;
+	private final RouteGraph graph;
+	private final SyntheticNetlist netlist;
+	private final List<Connection> connections;
+	private final TimingGraphSLL timingGraph;
+	private final RouteWorker routeWorker;
+	private final Random random;
+
+	//A copy of each connection in a net of its own, the searches don't change the routes of the netlist
+	private final List<Connection> searchConnections;
+
+	private RouteBenchmark(int size, int tracks, int wireLength, int radius, int timingThreads) throws PlacedBlockException {
+		long start = System.nanoTime();
+		this.synthetic = new SyntheticRouteGraph(size, size, tracks, wireLength);
+		this.graph = this.synthetic.getRouteGraph();
+		this.random = new Random(SEED);
+		System.out.printf("Synthetic graph: %dx%d tiles, %d tracks of length %d, %d nodes, %d edges, built in %.2f s\n\n",
+				size, size, tracks, wireLength, this.graph.numNodes, this.graph.numEdges, (System.nanoTime() - start) * 1e-9);
+
+		start = System.nanoTime();
+		this.netlist = new SyntheticNetlist(this.synthetic, radius, SEED);
+		this.connections = this.netlist.getConnections();
+		this.timingGraph = this.netlist.getTimingGraph();
+		this.timingGraph.setTimingThreads(timingThreads);
+
+		//Route the netlist once, the kernels see the congestion and criticalities of a routed circuit
+		this.routeWorker = new RouteWorker(new SearchParameters(this.graph, true, null));
+		for(Connection con : this.connections) {
+			con.initBoundingBox(BB_INITIAL_MARGIN);
+			this.routeWorker.routeConnection(con);
+		}
+		this.timingGraph.calculateActualWireDelay();
+		this.timingGraph.calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+		this.timingGraph.enableIncrementalTiming();
+
+		this.searchConnections = new ArrayList<>();
+		for(Connection con : this.connections) {
+			Connection copy = new Connection(con.id, con.source, con.sink, 0);
+			List<Connection> net = new ArrayList<>();
+			net.add(copy);
+			new Net(copy.netName, net, BB_RANGE, 0);
+			copy.initBoundingBox(BB_INITIAL_MARGIN);
+			copy.updateCriticality();
+			this.searchConnections.add(copy);
+		}
+		System.out.printf("Synthetic netlist: %d nets, %d connections, routed in %.2f s, critical path %.3f ns\n\n",
+				this.netlist.getNets().size(), this.connections.size(), (System.nanoTime() - start) * 1e-9, this.timingGraph.getMaxDelay());
+	}
+
+	public static void main(String[] args) throws PlacedBlockException {
+		int size = 100, tracks = 20, wireLength = 1, radius = 10, timingThreads = 1, warmup = 5, rounds = 10;
+		List<String> selected = new ArrayList<>();
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+				case "-size": size = Integer.parseInt(args[++i]); break;
+				case "-tracks": tracks = Integer.parseInt(args[++i]); break;
+				case "-length": wireLength = Integer.parseInt(args[++i]); break;
+				case "-radius": radius = Integer.parseInt(args[++i]); break;
+				case "-threads": timingThreads = Integer.parseInt(args[++i]); break;
+				case "-warmup": warmup = Integer.parseInt(args[++i]); break;
+				case "-rounds": rounds = Integer.parseInt(args[++i]); break;
+				default: selected.add(args[i]); break;
+			}
+		}
+
+		RouteBenchmark benchmark = new RouteBenchmark(size, tracks, wireLength, radius, timingThreads);
+		Map<String, Kernel> kernels = benchmark.kernels();
+		if(selected.isEmpty()) {
+			selected.addAll(kernels.keySet());
+		}
+
+		System.out.printf("%-18s  %12s  %12s  %14s\n", "Kernel", "Round (ms)", "Stdev (ms)", "Ops/s");
+		try {
+			for(String name : selected) {
+				Kernel kernel = kernels.get(name);
+				if(kernel == null) {
+					throw new IllegalArgumentException("Non-existent kernel: " + name + ", the kernels are " + kernels.keySet());
+				}
+				benchmark.measure(name, kernel, warmup, rounds);
+			}
+		} finally {
+			benchmark.timingGraph.shutdownTimingExecutor();
+		}
+	}
+
+	private Map<String, Kernel> kernels() {
+		Map<String, Kernel> kernels = new LinkedHashMap<>();
+		kernels.put("queue_heap", () -> this.queue(new BinaryHeap()));
+		kernels.put("queue_priority", () -> this.queue(new ComparatorQueue(this.graph)));
+		kernels.put("search_heap", new SearchKernel(true, false));
+		kernels.put("search_priority", new SearchKernel(false, false));
+		kernels.put("search_lookahead", new SearchKernel(true, true));
+		kernels.put("source_counting", this::sourceCounting);
+		kernels.put("update_cost", this::updateCost);
+		kernels.put("timing_full", new TimingKernel(false));
+		kernels.put("timing_incremental", new TimingKernel(true));
+		return kernels;
+	}
+
+	private void measure(String name, Kernel kernel, int warmup, int rounds) {
+		for(int i = 0; i < warmup; i++) {
+			kernel.prepare();
+			kernel.run();
+		}
+
+		double[] times = new double[rounds];
+		long operations = 0;
+		for(int i = 0; i < rounds; i++) {
+			kernel.prepare();
+			long start = System.nanoTime();
+			operations += kernel.run();
+			times[i] = (System.nanoTime() - start) * 1e-6;
+		}
+
+		double mean = 0;
+		for(double time : times) mean += time;
+		mean /= rounds;
+		double variance = 0;
+		for(double time : times) variance += (time - mean) * (time - mean);
+		double stdev = rounds > 1 ? Math.sqrt(variance / (rounds - 1)) : 0;
+
+		System.out.printf("%-18s  %12.3f  %12.3f  %14.0f\n", name, mean, stdev, operations / (mean * rounds * 1e-3));
+	}
+
+	/**
+	 * Add the nodes with a cost that grows like the lower bound of a
+	 * search and poll them all.
+	 */
+	private long queue(RouteQueue queue) {
+		int numNodes = this.graph.numNodes;
+		int count = 0;
+		float cost = 0;
+		for(int i = 0; i < numNodes; i++) {
+			queue.add(i, cost + this.random.nextFloat());
+			if((i & 3) == 0) {
+				cost += 0.25f;
+				sink = queue.poll();
+				count++;
+			}
+		}
+		while(!queue.isEmpty()) {
+			sink = queue.poll();
+			count++;
+		}
+		return numNodes + count;
+	}
+
+	/**
+	 * Directed searches of a RouteWorker for random connections of the
+	 * netlist. The routes are not added to the route nodes, so all
+	 * searches see the congestion of the routed netlist. The worker and
+	 * the lookahead are built in the first round, which is a warmup round.
+	 */
+	private class SearchKernel implements Kernel {
+		private final boolean binaryHeap, lookahead;
+		private RouteWorker worker;
+
+		SearchKernel(boolean binaryHeap, boolean lookahead) {
+			this.binaryHeap = binaryHeap;
+			this.lookahead = lookahead;
+		}
+
+		@Override
+		public long run() {
+			if(this.worker == null) {
+				RouterLookahead lookahead = this.lookahead ? new RouterLookahead(RouteBenchmark.this.graph, RouteBenchmark.this.synthetic.height, 1, null) : null;
+				this.worker = new RouteWorker(new SearchParameters(RouteBenchmark.this.graph, this.binaryHeap, lookahead));
+			}
+			return RouteBenchmark.this.search(this.worker);
+		}
+	}
+	private long search(RouteWorker worker) {
+		long expanded = worker.nodesExpanded;
+
+		for(int c = 0; c < CONNECTIONS_PER_ROUND; c++) {
+			Connection con = this.searchConnections.get(this.random.nextInt(this.searchConnections.size()));
+			worker.route(con);
+			sink = con.routeNodes.size();
+		}
+		return worker.nodesExpanded - expanded;
+	}
+
+	/**
+	 * The parameters of a router in its first iteration, the distance
+	 * based estimate is the average cost and delay of the wires per tile
+	 * they span.
+	 */
+	static class SearchParameters implements RouteSearchParameters {
+		private final RouteGraph graph;
+		private final boolean binaryHeap;
+		private final RouterLookahead lookahead;
+		private final float costPerDistance, delayPerDistance, ipinBaseCost;
+
+		SearchParameters(RouteGraph graph, boolean binaryHeap, RouterLookahead lookahead) {
+			this.graph = graph;
+			this.binaryHeap = binaryHeap;
+			this.lookahead = lookahead;
+
+			float cost = 0, delay = 0, ipinBaseCost = 0;
+			int numWires = 0;
+			for(int i = 0; i < graph.numNodes; i++) {
+				if(graph.isWire(i)) {
+					cost += graph.baseCost[i] / graph.wireLength(i);
+					delay += graph.delay[i] / graph.wireLength(i);
+					numWires++;
+				} else if(graph.type[i] == RouteGraph.IPIN) {
+					ipinBaseCost = graph.baseCost[i];
+				}
+			}
+			this.costPerDistance = cost / numWires;
+			this.delayPerDistance = delay / numWires;
+			this.ipinBaseCost = ipinBaseCost;
+		}
+
+		@Override
+		public RouteGraph getRouteGraph() {
+			return this.graph;
+		}
+		@Override
+		public RouteQueue createQueue() {
+			return this.binaryHeap ? new BinaryHeap() : new ComparatorQueue(this.graph);
+		}
+		@Override
+		public float getPresFac() {
+			return 0.5f;
+		}
+		@Override
+		public float getAlphaWLD() {
+			return 1.4f;
+		}
+		@Override
+		public float getAlphaTD() {
+			return 0.7f;
+		}
+		@Override
+		public float getCostPerDistanceHorizontal() {
+			return this.costPerDistance;
+		}
+		@Override
+		public float getCostPerDistanceVertical() {
+			return this.costPerDistance;
+		}
+		@Override
+		public float getDelayPerDistanceHorizontal() {
+			return this.delayPerDistance;
+		}
+		@Override
+		public float getDelayPerDistanceVertical() {
+			return this.delayPerDistance;
+		}
+		@Override
+		public float getIpinBaseCost() {
+			return this.ipinBaseCost;
+		}
+		@Override
+		public RouterLookahead getLookahead() {
+			return this.lookahead;
+		}
+		@Override
+		public boolean seedNetTree() {
+			return false;
+		}
+		@Override
+		public boolean splitSLLSearch() {
+			return false;
+		}
+		@Override
+		public int getBBStep() {
+			return 2;
+		}
+		@Override
+		public int getBBCongestedReroutes() {
+			return 3;
+		}
+	}
+
+	/**
+	 * The sources of the nets that use a wire, as stored in RouteNodeData:
+	 * a few sources per wire, counted on every expansion.
+	 */
+	private long sourceCounting() {
+		int numSets = 10000;
+		IntCountingSet[] sets = new IntCountingSet[numSets];
+		for(int i = 0; i < numSets; i++) {
+			sets[i] = new IntCountingSet();
+		}
+
+		long operations = 0;
+		int count = 0;
+		for(int i = 0; i < 20 * numSets; i++) {
+			IntCountingSet set = sets[this.random.nextInt(numSets)];
+			int source = this.random.nextInt(64);
+			set.add(source);
+			count += set.count(this.random.nextInt(64));
+			count += set.uniqueSize();
+			operations += 3;
+		}
+		for(IntCountingSet set : sets) {
+			set.clear();
+		}
+		sink = count;
+		return operations;
+	}
+
+	/**
+	 * The cost update of ConnectionRouter on a tenth of the nodes with a
+	 * random occupation around the capacity. The congestion of the routed
+	 * netlist is restored afterwards.
+	 */
+	private long updateCost() {
+		int numNodes = (this.graph.numNodes + 9) / 10;
+		List<RouteNode> nodes = new ArrayList<>(numNodes);
+		int[] occupation = new int[numNodes];
+		float[] presCost = new float[numNodes], accCost = new float[numNodes];
+		for(int i = 0; i < numNodes; i++) {
+			RouteNode node = this.graph.routeNodes[10 * i];
+			RouteNodeData data = node.routeNodeData;
+			occupation[i] = data.occupation;
+			presCost[i] = data.pres_cost;
+			accCost[i] = data.acc_cost;
+
+			data.occupation = node.capacity + this.random.nextInt(3) - 1;
+			nodes.add(node);
+		}
+
+		ConnectionRouter.updateCost(nodes, 0.5f, 1);
+
+		float cost = 0;
+		for(int i = 0; i < numNodes; i++) {
+			RouteNodeData data = nodes.get(i).routeNodeData;
+			cost += data.pres_cost;
+			data.occupation = occupation[i];
+			data.pres_cost = presCost[i];
+			data.acc_cost = accCost[i];
+		}
+		sink = cost;
+		return numNodes;
+	}
+
+	/**
+	 * The wire delays and the timing analysis after a router iteration
+	 * that reroutes a hundredth of the connections of the netlist. The
+	 * reroutes are not timed, the number of timing edges is counted.
+	 */
+	private class TimingKernel implements Kernel {
+		private final boolean incremental;
+
+		TimingKernel(boolean incremental) {
+			this.incremental = incremental;
+		}
+
+		@Override
+		public void prepare() {
+			RouteBenchmark.this.reroute();
+		}
+
+		@Override
+		public long run() {
+			TimingGraphSLL timingGraph = RouteBenchmark.this.timingGraph;
+			timingGraph.calculateActualWireDelay();
+			if(this.incremental) {
+				timingGraph.updateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+			} else {
+				timingGraph.calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+			}
+			sink = timingGraph.getMaxDelay();
+			return RouteBenchmark.this.connections.size();
+		}
+	}
+	private void reroute() {
+		for(int c = 0; c < REROUTES_PER_ROUND; c++) {
+			Connection con = this.connections.get(this.random.nextInt(this.connections.size()));
+			this.routeWorker.routeConnection(con);
+		}
+	}
+}
@@ -1,25 +1,71 @@
 package place.mathtools;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /*
  * Solves a linear system using the conjugate gradient method
  * Uses a Jacobi preconditioner
+ *
+ * The solve can start from an initial guess, e.g. the solution of the
+ * previous placement iteration. The stop condition is relative to the
+ * right hand side, not to the initial residual, so a good guess saves
+ * iterations. With an executor the sparse matrix vector product runs
+ * over blocks of rows in parallel, the result doesn't depend on it.
  */
 public class CGSolver {
 
-    private final List<Double> val;
-    private final List<Integer> columnIndexes, rowPointers;
+    // Below this number of elements per block, the tasks cost more than they save
+    private static final int MIN_BLOCK_SIZE = 20000;
+
+    private final double[] val;
+    private final int[] columnIndexes, rowPointers, diagonalIndexes;
     private final double[] vector;
 
+    private final ExecutorService executor;
+    private final int[] blockStarts;
+
     public CGSolver(Csr crs, double[] vector) {
+        this(crs, vector, null, 1);
+    }
+    public CGSolver(Csr crs, double[] vector, ExecutorService executor, int numThreads) {
         this.val = crs.getVal();
         this.columnIndexes = crs.getColumnIndexes();
         this.rowPointers = crs.getRowPointers();
+        this.diagonalIndexes = crs.getDiagonalIndexes();
         this.vector = vector;
+
+        int numBlocks = executor == null ? 1 : Math.max(1, Math.min(numThreads, this.val.length / MIN_BLOCK_SIZE));
+        this.executor = numBlocks > 1 ? executor : null;
+        this.blockStarts = this.balanceBlocks(numBlocks);
+    }
+
+    /*
+     * Row blocks with about the same number of elements
+     */
+    private int[] balanceBlocks(int numBlocks) {
+        int numRows = this.vector.length;
+        int[] blockStarts = new int[numBlocks + 1];
+        int row = 0;
+        for(int block = 1; block < numBlocks; block++) {
+            long target = (long) this.val.length * block / numBlocks;
+            while(row < numRows && this.rowPointers[row] < target) {
+                row++;
+            }
+            blockStarts[block] = row;
+        }
+        blockStarts[numBlocks] = numRows;
+        return blockStarts;
     }
 
     public double[] solve(double epsilon) {
+        return this.solve(epsilon, null);
+    }
+
+    public double[] solve(double epsilon, double[] initialGuess) {
         int dimensions = this.vector.length;
 
         double deltaNew;
@@ -29,26 +75,35 @@ public class CGSolver {
         double beta;
         double temp;
 
+        double[] m = constructJacobi();
+
         // Initialize everything
         double[] x = new double[dimensions];
         double[] r = new double[dimensions];
-        for(int i = 0; i < dimensions; i++) {
-            x[i] = 0.0;
-            r[i] = this.vector[i];
-        }
+        double[] s = new double[dimensions];
 
-        double[] m = constructJacobi();
+        // The residual of x = 0 is the reference of the stop condition
+        elementWiseProduct(m, this.vector, s);
+        deltaFirst = dotProduct(s, this.vector);
 
-        double[] s = new double[dimensions];
-        elementWiseProduct(m, r, s);
+        // A zero right hand side has the zero solution, the stop condition can't be met
+        if(deltaFirst == 0) {
+            return x;
+        }
 
-        double[] d = new double[dimensions];
-        for(int i = 0; i < dimensions; i++) {
-            d[i] = s[i];
+        if(initialGuess != null) {
+            System.arraycopy(initialGuess, 0, x, 0, dimensions);
+            sparseMatrixVectorProduct(x, r);
+            vectorUpdate(this.vector, r, -1.0, r);
+            elementWiseProduct(m, r, s);
+        } else {
+            System.arraycopy(this.vector, 0, r, 0, dimensions);
         }
 
+        double[] d = new double[dimensions];
+        System.arraycopy(s, 0, d, 0, dimensions);
+
         deltaNew = dotProduct(s, r);
-        deltaFirst = deltaNew;
 
         // Main loop of the algorithm
         double[] q = new double[dimensions];
@@ -74,16 +129,10 @@ public class CGSolver {
     private double[] constructJacobi() {
         int dimension = this.vector.length;
         double[] jacobi = new double[dimension];
-        int index;
 
         for(int row = 0; row < dimension; row++) {
-            index = this.rowPointers.get(row);
             // We suppose the diagonal elements are always non-zero
-            while(this.columnIndexes.get(index) != row) {
-                index++;
-            }
-
-            jacobi[row] = 1.0 / this.val.get(index);
+            jacobi[row] = 1.0 / this.val[this.diagonalIndexes[row]];
         }
         return jacobi;
     }
@@ -111,14 +160,32 @@ public class CGSolver {
     }
 
     private void sparseMatrixVectorProduct(double[] vector, double[] result) {
-        int index = 0;
-        for(int row = 0; row < this.vector.length; row++) {
+        if(this.executor == null) {
+            this.sparseMatrixVectorProduct(vector, result, 0, this.vector.length);
+            return;
+        }
+
+        // The first block runs in the calling thread
+        List<Future<?>> futures = new ArrayList<>();
+        for(int block = 1; block < this.blockStarts.length - 1; block++) {
+            int rowStart = this.blockStarts[block], rowEnd = this.blockStarts[block + 1];
+            futures.add(this.executor.submit(() -> this.sparseMatrixVectorProduct(vector, result, rowStart, rowEnd)));
+        }
+        this.sparseMatrixVectorProduct(vector, result, this.blockStarts[0], this.blockStarts[1]);
+
+        try {
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch(InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    private void sparseMatrixVectorProduct(double[] vector, double[] result, int rowStart, int rowEnd) {
+        for(int row = rowStart; row < rowEnd; row++) {
             double sum = 0.0;
-            int nextRow = row + 1;
-            int maxIndex = this.rowPointers.get(nextRow);
-            while(index < maxIndex) {
-                sum += this.val.get(index) * vector[this.columnIndexes.get(index)];
-                index++;
+            for(int index = this.rowPointers[row]; index < this.rowPointers[row + 1]; index++) {
+                sum += this.val[index] * vector[this.columnIndexes[index]];
             }
             result[row] = sum;
         }
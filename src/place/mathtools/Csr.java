@@ -1,99 +1,138 @@
 package place.mathtools;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
+import java.util.Arrays;
+
+/*
+ * Builds a sparse matrix in compressed sparse row format. The elements are
+ * collected in primitive arrays, prepareArrays() sorts them per row and
+ * sums the elements with the same row and column. The diagonal element of
+ * every row is always present, also if it is zero.
+ */
 public class Csr {
 
     private int numRows;
-    private List<Double> selfValues;
-    private List<List<CsrTuple>> values;
+    private double[] selfValues;
+
+    // Off-diagonal elements in the order they are added
+    private int numElements;
+    private int[] elementRows, elementColumns;
+    private double[] elementValues;
 
-    private ArrayList<Integer> indexArray, rowPointers;
-    private ArrayList<Double> valueArray;
+    private int[] indexArray, rowPointers, diagonalIndexes;
+    private double[] valueArray;
 
     public Csr(int numRows) {
         this.numRows = numRows;
 
-        this.selfValues = new ArrayList<>(numRows);
-        this.values = new ArrayList<>(numRows);
-        for(int i = 0; i < numRows; i++) {
-            this.selfValues.add(0.0);
-            this.values.add(new ArrayList<CsrTuple>());
-        }
+        this.selfValues = new double[numRows];
+
+        int capacity = Math.max(16, 4 * numRows);
+        this.numElements = 0;
+        this.elementRows = new int[capacity];
+        this.elementColumns = new int[capacity];
+        this.elementValues = new double[capacity];
     }
 
 
 
     public void addElement(int row, int column, double value) {
         if(row == column) {
-            this.selfValues.set(row, value + this.selfValues.get(row));
+            this.selfValues[row] += value;
 
         } else {
-            CsrTuple entry = new CsrTuple(column, value);
-            this.values.get(row).add(entry);
+            if(this.numElements == this.elementRows.length) {
+                int capacity = 2 * this.numElements;
+                this.elementRows = Arrays.copyOf(this.elementRows, capacity);
+                this.elementColumns = Arrays.copyOf(this.elementColumns, capacity);
+                this.elementValues = Arrays.copyOf(this.elementValues, capacity);
+            }
+
+            this.elementRows[this.numElements] = row;
+            this.elementColumns[this.numElements] = column;
+            this.elementValues[this.numElements] = value;
+            this.numElements++;
         }
     }
 
     public void prepareArrays() {
-        this.indexArray = new ArrayList<>(10 * this.numRows);
-        this.valueArray = new ArrayList<>(10 * this.numRows);
-        this.rowPointers = new ArrayList<>(this.numRows + 1);
+        int numRows = this.numRows;
 
-        int totalIndex = 0;
-        for(int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-            this.rowPointers.add(totalIndex);
+        // Bucket the elements per row, the diagonal element is the first of its row
+        int[] rowStarts = new int[numRows + 1];
+        for(int i = 0; i < this.numElements; i++) {
+            rowStarts[this.elementRows[i] + 1]++;
+        }
+        for(int row = 0; row < numRows; row++) {
+            rowStarts[row + 1] += rowStarts[row] + 1;
+        }
 
-            List<CsrTuple> row = this.values.get(rowIndex);
-            CsrTuple selfTuple = new CsrTuple(rowIndex, this.selfValues.get(rowIndex));
-            row.add(selfTuple);
-            Collections.sort(row);
+        // Sort key: column in the high bits, element (-1 for the diagonal) in the low bits
+        long[] keys = new long[rowStarts[numRows]];
+        int[] next = Arrays.copyOf(rowStarts, numRows);
+        for(int row = 0; row < numRows; row++) {
+            keys[next[row]++] = key(row, -1);
+        }
+        for(int i = 0; i < this.numElements; i++) {
+            keys[next[this.elementRows[i]]++] = key(this.elementColumns[i], i);
+        }
+
+        this.indexArray = new int[keys.length];
+        this.valueArray = new double[keys.length];
+        this.rowPointers = new int[numRows + 1];
+        this.diagonalIndexes = new int[numRows];
 
-            CsrTuple initialEntry = row.get(0);
-            int previousColumnIndex = initialEntry.getIndex();
-            double summedValue = initialEntry.getValue();
+        int totalIndex = 0;
+        for(int row = 0; row < numRows; row++) {
+            this.rowPointers[row] = totalIndex;
 
-            int numValues = row.size();
-            int valueIndex = 1;
-            while(valueIndex < numValues) {
-                CsrTuple entry = row.get(valueIndex);
-                int columnIndex = entry.getIndex();
-                double value = entry.getValue();
+            int rowStart = rowStarts[row], rowEnd = rowStarts[row + 1];
+            Arrays.sort(keys, rowStart, rowEnd);
+
+            int previousColumnIndex = -1;
+            for(int k = rowStart; k < rowEnd; k++) {
+                int columnIndex = (int) (keys[k] >>> 32);
+                int element = (int) keys[k] - 1;
+                double value = element < 0 ? this.selfValues[row] : this.elementValues[element];
 
                 if(columnIndex == previousColumnIndex) {
-                    summedValue += value;
+                    this.valueArray[totalIndex - 1] += value;
 
                 } else {
-                    this.indexArray.add(previousColumnIndex);
-                    this.valueArray.add(summedValue);
+                    if(columnIndex == row) {
+                        this.diagonalIndexes[row] = totalIndex;
+                    }
+                    this.indexArray[totalIndex] = columnIndex;
+                    this.valueArray[totalIndex] = value;
                     totalIndex++;
-                    summedValue = value;
+                    previousColumnIndex = columnIndex;
                 }
-
-                previousColumnIndex = columnIndex;
-                valueIndex++;
             }
-
-            this.indexArray.add(previousColumnIndex);
-            this.valueArray.add(summedValue);
-            totalIndex++;
         }
 
-        this.rowPointers.add(totalIndex);
+        this.rowPointers[numRows] = totalIndex;
 
+        this.indexArray = Arrays.copyOf(this.indexArray, totalIndex);
+        this.valueArray = Arrays.copyOf(this.valueArray, totalIndex);
+    }
 
-        this.indexArray.trimToSize();
-        this.valueArray.trimToSize();
+    // Shift the element so the diagonal (-1) sorts first in its column
+    private static long key(int column, int element) {
+        return ((long) column << 32) | (element + 1);
     }
 
-    public List<Integer> getColumnIndexes() {
+    public int getNumRows() {
+        return this.numRows;
+    }
+    public int[] getColumnIndexes() {
         return this.indexArray;
     }
-    public List<Double> getVal() {
+    public double[] getVal() {
         return this.valueArray;
     }
-    public List<Integer> getRowPointers() {
+    public int[] getRowPointers() {
         return this.rowPointers;
     }
+    public int[] getDiagonalIndexes() {
+        return this.diagonalIndexes;
+    }
 }
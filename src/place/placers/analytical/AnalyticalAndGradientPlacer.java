@@ -18,7 +18,6 @@ import place.circuit.timing.TimingNode.Position;
 import place.interfaces.Logger;
 import place.interfaces.Options;
 import place.placers.Placer;
-import place.placers.analytical.AnalyticalAndGradientPlacer.ParallelOptiLeg;
 import place.visual.PlacementVisualizer;
 
 import java.util.ArrayList;
@@ -31,10 +30,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import pack.util.ErrorLog;
 import pack.util.Output;
@@ -83,11 +79,16 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     
     protected boolean hasHierarchyInformation;
 
+    // One pool for the whole placement, created in initializeData
+    protected PlacementScheduler scheduler;
+    private final int placementThreads;
+
     private static final String
         O_CRIT_LEARNING_RATE = "crit learning rate",
     	O_SYNC_STEP = "Synchronisation step",
     	O_FIX_GLOBAL = "fix global",
-    	O_FIX_SEPERATE = "fix Seperate";
+    	O_FIX_SEPERATE = "fix Seperate",
+    	O_PLACEMENT_THREADS = "placement threads";
     	
 
     public static void initOptions(Options options) {
@@ -105,6 +106,10 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
         options.add(O_FIX_SEPERATE,
         		"Fixed SLL blocks in seperate",
         		Boolean.FALSE);
+        options.add(
+        		O_PLACEMENT_THREADS,
+        		"number of threads of the placement pool, 0 uses all cores. The gradient, solver and legalizer threads of each die default to this number",
+        		new Integer(0));
     }
 
     protected final static String
@@ -124,6 +129,8 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
 //		this.Seperate_fix = options.getBoolean(O_FIX_SEPERATE);
         this.criticalityLearningRate = options.getDouble(O_CRIT_LEARNING_RATE);
         this.syncStep = options.getInteger(O_SYNC_STEP);
+        int placementThreads = options.getInteger(O_PLACEMENT_THREADS);
+        this.placementThreads = placementThreads > 0 ? placementThreads : Runtime.getRuntime().availableProcessors();
         this.hasHierarchyInformation = false;
         this.netBlocks = new HashMap<>();
         this.SLLcounter = new HashMap<>();
@@ -167,6 +174,11 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     protected abstract void fixSLLblocksLiquidMD(BlockType category, int SLLrows);
     
     protected abstract void synchroniseSLLblocks(StringBuilder localOutput);
+
+    // The ranges of a die in the pool, 0 splits the work of each die over all placement threads
+    protected int threadsPerDie(int threads) {
+        return threads > 0 ? threads : this.placementThreads;
+    }
     protected abstract StringBuilder printStatistics(int iteration, double time, int dieCounter);
 
 
@@ -176,6 +188,7 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     public void initializeData() {
     	String initialiseData = "Placer Initialisation";
     	this.startSystemTimer(initialiseData);
+    	this.scheduler = new PlacementScheduler(Math.max(this.TotalDies, this.placementThreads));
         int dieCount = 0;
         // All the variables are in a loop with die count
         // Count the number of blocks
@@ -610,9 +623,6 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     protected void doPlacement() throws PlacementException {
     	
 
-        int iteration = 0;
-        boolean isLastIteration = false;
-
     	String placetimer = "Placement took";
     	this.startSystemTimer(placetimer);
         System.out.print("\n");
@@ -623,35 +633,48 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
             this.fixSLLblocksLiquidMD(blockType, this.SLLrows); 
            }
         this.stopandPrintSystemTimer(sllLegal);
-        while(!isLastIteration) {
-            double timerBegin = System.nanoTime();
-            StringBuilder output = new StringBuilder();
-            int dieCounter = this.TotalDies;
-            
-            
-            ExecutorService executor = Executors.newFixedThreadPool(this.TotalDies);
-            for (int i = 0; i < dieCounter; i++) { 
-                    Runnable worker = new ParallelOptiLeg(iteration,isLastIteration,timerBegin,i);  
-                    executor.execute(worker);//calling execute method of ExecutorService  
-
-              }  
-            executor.shutdown();  
-  	      try {
-	    	    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-	    	} catch (InterruptedException e) {
-	    	    e.printStackTrace();
-	    	}
-
-            isLastIteration = this.stopCondition(iteration);
-            
-            iteration++;
 
+        // The dies iterate in lockstep on the pool of the scheduler,
+        // isLastIteration is only true in the final legalization below
+        try {
+        	this.scheduler.runIterations(
+        			this.TotalDies,
+        			this::stopCondition,
+        			(iteration, timerBegin, dieCounter) -> this.diePlacement(iteration, false, timerBegin, dieCounter));
+
+        	//************************************************
+        	this.stopandPrintSystemTimer(placetimer);
+        	System.out.print(this.localOutput);
+
+        	this.finalLegalization();
+        } finally {
+        	// The legalizers submit their ranges to the pool up to the final legalization
+        	this.scheduler.shutdown();
         }
-    	
-    	//************************************************
-       this.stopandPrintSystemTimer(placetimer);
-       System.out.print(this.localOutput);
 
+        this.logger.println();
+
+        
+        String circuitUpdate = "Circuit update routine took";
+		this.startSystemTimer(circuitUpdate);
+//		ExecutorService executor = Executors.newFixedThreadPool(this.TotalDies);
+//		for (int i = 0; i < dieCounter; i++) {  
+//		    Runnable worker = new parallelCircuitUpdate(i);  
+//		    executor.execute(worker);//calling execute method of ExecutorService  
+//		  }  
+//		executor.shutdown();  
+//	      try {
+//		    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+//		} catch (InterruptedException e) {
+//		    e.printStackTrace();
+//		}
+	      
+        this.updateCircuit();
+		this.stopandPrintSystemTimer(circuitUpdate);
+       
+    }
+    
+    private void finalLegalization() {
         int dieCounter = 0;
     	String legaltimer = "Legalisation routine took";
     	this.startSystemTimer(legaltimer);
@@ -684,31 +707,10 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     		this.legalY.set(dieCounter, legalYtemp);
     		
         	for(BlockType blockType : BlockType.getBlockTypes(BlockCategory.CLB)){
-            	this.solveLegal(blockType, isLastIteration, dieCounter);
+            	this.solveLegal(blockType, true, dieCounter);
             }
         	dieCounter++;
         }
-
-        this.logger.println();
-
-        
-        String circuitUpdate = "Circuit update routine took";
-		this.startSystemTimer(circuitUpdate);
-//		ExecutorService executor = Executors.newFixedThreadPool(this.TotalDies);
-//		for (int i = 0; i < dieCounter; i++) {  
-//		    Runnable worker = new parallelCircuitUpdate(i);  
-//		    executor.execute(worker);//calling execute method of ExecutorService  
-//		  }  
-//		executor.shutdown();  
-//	      try {
-//		    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-//		} catch (InterruptedException e) {
-//		    e.printStackTrace();
-//		}
-	      
-        this.updateCircuit();
-		this.stopandPrintSystemTimer(circuitUpdate);
-       
     }
     
     private StringBuilder diePlacement(int iteration, boolean isLastIteration,double timerBegin, int dieCounter) {
@@ -1059,30 +1061,6 @@ public abstract class AnalyticalAndGradientPlacer extends Placer{
     	}
     }
     
-    class ParallelOptiLeg implements Runnable{
-    	int iteration;
-    	boolean isLastIteration;
-    	double timerBegin;
-    	int dieCounter;
-    	StringBuilder output = new StringBuilder();
-    	public ParallelOptiLeg(int iteration, boolean isLastIteration, double timerBegin, int dieCounter) {
-    		this.iteration = iteration;
-    		this.isLastIteration = isLastIteration;
-    		this.timerBegin = timerBegin;
-    		this.dieCounter = dieCounter;
-    	}
-    	@Override
-    	public void run() {
-    		this.output = diePlacement(this.iteration, this.isLastIteration, this.timerBegin, this.dieCounter);
-    		System.out.println(this.output);
-    	}
-    	
-    	
-    }
-    
- 
-    
-    
     class parallelCircuitUpdate implements Runnable{
     	int dieCounter;
     	StringBuilder output = new StringBuilder();
@@ -25,7 +25,10 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
     	O_ANCHOR_WEIGHT = "anchor weight",
     	O_ANCHOR_WEIGHT_MULTIPLIER = "anchor weight multiplier",
 
-    	O_OUTER_EFFORT_LEVEL = "outer effort level";
+    	O_OUTER_EFFORT_LEVEL = "outer effort level",
+
+    	O_WARM_START = "warm start",
+    	O_SOLVER_THREADS = "solver threads";
 
     public static void initOptions(Options options) {
         AnalyticalAndGradientPlacer.initOptions(options);
@@ -44,10 +47,22 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
                 O_OUTER_EFFORT_LEVEL,
                 "number of solve-legalize iterations",
                 new Integer(40));
+
+        options.add(
+                O_WARM_START,
+                "start the conjugate gradient solver from the previous solution",
+                Boolean.TRUE);
+
+        options.add(
+                O_SOLVER_THREADS,
+                "number of threads of the sparse matrix vector product of each die, 0 uses the placement threads",
+                new Integer(0));
     }
 
     protected double[] anchorWeight;
     protected final double anchorWeightMultiplier;
+    private final boolean warmStart;
+    private final int solverThreads;
 
     private double[] latestCost, minCost;
 
@@ -87,6 +102,8 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
         this.anchorWeightMultiplier = this.options.getDouble(O_ANCHOR_WEIGHT_MULTIPLIER);
 
         this.numIterations = this.options.getInteger(O_OUTER_EFFORT_LEVEL) + 1;
+        this.warmStart = this.options.getBoolean(O_WARM_START);
+        this.solverThreads = this.threadsPerDie(this.options.getInteger(O_SOLVER_THREADS));
 
         this.latestCost[TotalDies] = Double.MAX_VALUE;
         this.minCost[TotalDies] = Double.MAX_VALUE;
@@ -226,7 +243,10 @@ public abstract class AnalyticalPlacer extends AnalyticalAndGradientPlacer {
                     this.coordinatesY[dieNumber],
                     this.anchorWeight[dieNumber],
                     AnalyticalPlacer.EPSILON,
-                    this.fixed[dieNumber]);
+                    this.fixed[dieNumber],
+                    this.warmStart,
+                    this.solverThreads > 1 ? this.scheduler.getExecutor() : null,
+                    this.solverThreads);
             this.solveLinearIteration(processNets, iteration, dieNumber);
         }
 
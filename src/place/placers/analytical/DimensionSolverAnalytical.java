@@ -1,7 +1,7 @@
 package place.placers.analytical;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
 
 import place.mathtools.CGSolver;
 import place.mathtools.Csr;
@@ -14,31 +14,46 @@ class DimensionSolverAnalytical {
 
     private final double pseudoWeight;
     private final double epsilon;
+    private final boolean warmStart;
+
+    private final ExecutorService executor;
+    private final int numThreads;
 
     private boolean[] fixed;
-    private Map<Integer,Integer> forwardIndexMap;
-    private Map<Integer,Integer> backwardIndexMap;
+    // Block index to row of the movable block (-1 if fixed) and back
+    private int[] forwardIndexMap;
+    private int[] backwardIndexMap;
 
-    DimensionSolverAnalytical(double[] coordinates, double pseudoWeight, double epsilon, boolean[] fixed) {
+    DimensionSolverAnalytical(double[] coordinates, double pseudoWeight, double epsilon, boolean[] fixed, boolean warmStart, ExecutorService executor, int numThreads) {
         this.coordinates = coordinates;
 
         this.pseudoWeight = pseudoWeight;
         this.epsilon = epsilon;
+        this.warmStart = warmStart;
+
+        this.executor = executor;
+        this.numThreads = numThreads;
 
         this.fixed = fixed;
 
-        this.forwardIndexMap = new HashMap<Integer,Integer>();
-        this.backwardIndexMap = new HashMap<Integer,Integer>();
+        this.forwardIndexMap = new int[this.fixed.length];
+        Arrays.fill(this.forwardIndexMap, -1);
 
         int numMovableBlocks = 0;
         for(int i = 0; i < this.fixed.length; i++){
         	if(!this.fixed[i]){
-        		this.forwardIndexMap.put(i, numMovableBlocks);
-        		this.backwardIndexMap.put(numMovableBlocks, i);
+        		this.forwardIndexMap[i] = numMovableBlocks;
         		numMovableBlocks++;
         	}
         }
 
+        this.backwardIndexMap = new int[numMovableBlocks];
+        for(int i = 0; i < this.fixed.length; i++){
+        	if(!this.fixed[i]){
+        		this.backwardIndexMap[this.forwardIndexMap[i]] = i;
+        	}
+        }
+
         this.matrix = new Csr(numMovableBlocks);
         this.vector = new double[numMovableBlocks];
     }
@@ -46,7 +61,7 @@ class DimensionSolverAnalytical {
 
     void addPseudoConnection(int blockIndex, double legalCoordinate) {
         double weight = this.pseudoWeight;
-        int relativeIndex = this.forwardIndexMap.get(blockIndex);
+        int relativeIndex = this.forwardIndexMap[blockIndex];
 
         this.matrix.addElement(relativeIndex, relativeIndex, weight);
         this.vector[relativeIndex] += weight * legalCoordinate;
@@ -62,21 +77,21 @@ class DimensionSolverAnalytical {
 
         if(fixed1) {
             if(!fixed2) {
-            	int relativeIndex2 = this.forwardIndexMap.get(index2);
+            	int relativeIndex2 = this.forwardIndexMap[index2];
             	
                 this.matrix.addElement(relativeIndex2, relativeIndex2, weight);
                 this.vector[relativeIndex2] += weight * (coordinate1 - offset2);
             }
 
         } else if(fixed2) {
-        	int relativeIndex1 = this.forwardIndexMap.get(index1);
+        	int relativeIndex1 = this.forwardIndexMap[index1];
 
             this.matrix.addElement(relativeIndex1, relativeIndex1, weight);
             this.vector[relativeIndex1] += weight * (coordinate2 - offset1);
 
         } else {
-        	int relativeIndex1 = this.forwardIndexMap.get(index1);
-        	int relativeIndex2 = this.forwardIndexMap.get(index2);
+        	int relativeIndex1 = this.forwardIndexMap[index1];
+        	int relativeIndex2 = this.forwardIndexMap[index2];
 
             this.matrix.addElement(relativeIndex1, relativeIndex1, weight);
             this.matrix.addElement(relativeIndex1, relativeIndex2, -weight);
@@ -87,11 +102,20 @@ class DimensionSolverAnalytical {
 
     void solve() {
         this.matrix.prepareArrays();
-        CGSolver solver = new CGSolver(this.matrix, this.vector);
-        double[] solution = solver.solve(this.epsilon);
+        CGSolver solver = new CGSolver(this.matrix, this.vector, this.executor, this.numThreads);
+
+        // The coordinates of the movable blocks are the solution of the previous iteration
+        double[] initialGuess = null;
+        if(this.warmStart) {
+        	initialGuess = new double[this.backwardIndexMap.length];
+        	for(int index = 0; index < this.backwardIndexMap.length; index++){
+        		initialGuess[index] = this.coordinates[this.backwardIndexMap[index]];
+        	}
+        }
+        double[] solution = solver.solve(this.epsilon, initialGuess);
 
-        for(int index:this.backwardIndexMap.keySet()){
-        	this.coordinates[this.backwardIndexMap.get(index)] = solution[index];
+        for(int index = 0; index < this.backwardIndexMap.length; index++){
+        	this.coordinates[this.backwardIndexMap[index]] = solution[index];
         }
     }
 }
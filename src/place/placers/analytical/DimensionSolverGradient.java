@@ -2,12 +2,20 @@ package place.placers.analytical;
 
 import java.util.Arrays;
 
+/*
+ * The net forces are accumulated per thread: thread t adds its nets to
+ * directions[t], totalPositiveNetSize[t], ... The partial sums are reduced
+ * into those of thread 0 in thread order in solve(), so the result only
+ * depends on the number of threads, not on the scheduling. The reduction
+ * also clears the partial sums of the other threads for the next iteration.
+ */
 class DimensionSolverGradient {
 
     private final double[] coordinates;
+    private final int numThreads;
 
-    private final double[] directions, totalPositiveNetSize, totalNegativeNetSize;
-    private final double[] numPositiveNets, numNegativeNets;
+    private final double[][] directions, totalPositiveNetSize, totalNegativeNetSize;
+    private final double[][] numPositiveNets, numNegativeNets;
     private final double halfMaxConnectionLength;
 
     private double stepSize;
@@ -24,8 +32,9 @@ class DimensionSolverGradient {
     
     private final boolean[] fixed;
 
-    DimensionSolverGradient(double[] coordinates, double maxConnectionLength, boolean[] fixed, double beta1, double beta2, double eps) {
+    DimensionSolverGradient(double[] coordinates, double maxConnectionLength, boolean[] fixed, double beta1, double beta2, double eps, int numThreads) {
         this.coordinates = coordinates;
+        this.numThreads = numThreads;
         this.halfMaxConnectionLength = maxConnectionLength / 2;
 
         int numBlocks = coordinates.length;
@@ -37,11 +46,11 @@ class DimensionSolverGradient {
         this.beta2 = beta2;
         this.eps = eps;
 
-        this.directions = new double[numBlocks];
-        this.numPositiveNets = new double[numBlocks];
-        this.numNegativeNets = new double[numBlocks];
-        this.totalPositiveNetSize = new double[numBlocks];
-        this.totalNegativeNetSize = new double[numBlocks];
+        this.directions = new double[numThreads][numBlocks];
+        this.numPositiveNets = new double[numThreads][numBlocks];
+        this.numNegativeNets = new double[numThreads][numBlocks];
+        this.totalPositiveNetSize = new double[numThreads][numBlocks];
+        this.totalNegativeNetSize = new double[numThreads][numBlocks];
 
         this.fixed = fixed;
     }
@@ -50,13 +59,14 @@ class DimensionSolverGradient {
         this.pseudoWeight = pseudoWeight;
         this.stepSize = learningRate;
 
-        Arrays.fill(this.directions, 0.0);
+        // The partial sums of the other threads are cleared by the reduction
+        Arrays.fill(this.directions[0], 0.0);
 
-        Arrays.fill(this.numPositiveNets, 0);
-        Arrays.fill(this.numNegativeNets, 0);
+        Arrays.fill(this.numPositiveNets[0], 0);
+        Arrays.fill(this.numNegativeNets[0], 0);
 
-        Arrays.fill(this.totalPositiveNetSize, 0.0);
-        Arrays.fill(this.totalNegativeNetSize, 0.0);
+        Arrays.fill(this.totalPositiveNetSize[0], 0.0);
+        Arrays.fill(this.totalNegativeNetSize[0], 0.0);
     }
 
     void setLegal(double[] legal) {
@@ -66,13 +76,16 @@ class DimensionSolverGradient {
 
 
     void processConnection(int firstIndex, int secondIndex, double coorDifference, double weight, boolean critical) {
+    	this.processConnection(0, firstIndex, secondIndex, coorDifference, weight, critical);
+    }
+    void processConnection(int thread, int firstIndex, int secondIndex, double coorDifference, double weight, boolean critical) {
     	if(coorDifference > 0.0){
-    		this.addConnection(firstIndex, secondIndex, coorDifference, weight, critical);
+    		this.addConnection(thread, firstIndex, secondIndex, coorDifference, weight, critical);
     	}else if(coorDifference < 0.0){
-    		this.addConnection(secondIndex, firstIndex, -coorDifference, weight, critical);
+    		this.addConnection(thread, secondIndex, firstIndex, -coorDifference, weight, critical);
     	}
     }
-    private void addConnection(int minIndex, int maxIndex, double coorDifference, double weight, boolean critical) {
+    private void addConnection(int thread, int minIndex, int maxIndex, double coorDifference, double weight, boolean critical) {
     	double netSize;
     	if(critical){
             netSize = 2 * (5 * this.halfMaxConnectionLength) * coorDifference / ((5 * this.halfMaxConnectionLength) + coorDifference);
@@ -81,33 +94,50 @@ class DimensionSolverGradient {
             netSize = 2 * this.halfMaxConnectionLength * coorDifference / (this.halfMaxConnectionLength + coorDifference);
     	}
 
-        this.totalPositiveNetSize[minIndex] += weight * netSize;
-        this.numPositiveNets[minIndex] += weight;
-        this.directions[minIndex] += weight;
+        this.totalPositiveNetSize[thread][minIndex] += weight * netSize;
+        this.numPositiveNets[thread][minIndex] += weight;
+        this.directions[thread][minIndex] += weight;
 
-        this.totalNegativeNetSize[maxIndex] += weight * netSize;
-        this.numNegativeNets[maxIndex] += weight;
-        this.directions[maxIndex] -= weight;
+        this.totalNegativeNetSize[thread][maxIndex] += weight * netSize;
+        this.numNegativeNets[thread][maxIndex] += weight;
+        this.directions[thread][maxIndex] -= weight;
     }
 
     void solve() {
-        int numBlocks = this.coordinates.length;
-
-        for(int i = 0; i < numBlocks; i++) {
+        this.solve(0, this.coordinates.length);
+    }
+    void solve(int blockStart, int blockEnd) {
+        for(int i = blockStart; i < blockEnd; i++) {
+        	this.reduce(i);
         	if(!this.fixed[i]){
         		this.doSolve(i);
         	}
         }
     }
+    private void reduce(int i) {
+    	for(int thread = 1; thread < this.numThreads; thread++) {
+    		this.directions[0][i] += this.directions[thread][i];
+    		this.numPositiveNets[0][i] += this.numPositiveNets[thread][i];
+    		this.numNegativeNets[0][i] += this.numNegativeNets[thread][i];
+    		this.totalPositiveNetSize[0][i] += this.totalPositiveNetSize[thread][i];
+    		this.totalNegativeNetSize[0][i] += this.totalNegativeNetSize[thread][i];
+
+    		this.directions[thread][i] = 0.0;
+    		this.numPositiveNets[thread][i] = 0;
+    		this.numNegativeNets[thread][i] = 0;
+    		this.totalPositiveNetSize[thread][i] = 0.0;
+    		this.totalNegativeNetSize[thread][i] = 0.0;
+    	}
+    }
     void doSolve(int i){
-    	double direction = this.directions[i];
+    	double direction = this.directions[0][i];
     	double currentCoordinate = this.coordinates[i];
 
     	double gradient;
     	if(direction > 0) {
-    		gradient = this.totalPositiveNetSize[i] / this.numPositiveNets[i];
+    		gradient = this.totalPositiveNetSize[0][i] / this.numPositiveNets[0][i];
     	} else if(direction < 0) {
-    		gradient = - this.totalNegativeNetSize[i] / this.numNegativeNets[i];
+    		gradient = - this.totalNegativeNetSize[0][i] / this.numNegativeNets[0][i];
     	} else {
     		return;
     	}
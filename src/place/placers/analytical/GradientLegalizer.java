@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -11,6 +12,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
 import place.circuit.Circuit;
 import place.circuit.architecture.BlockCategory;
@@ -32,6 +37,17 @@ class GradientLegalizer extends Legalizer {
     
     private final MassMap massMap;
 
+    //Parallel spreading, the first thread uses this.massMap
+    private ExecutorService executor;
+    private int numThreads;
+    private MassMap[] threadMassMaps;
+
+    //Width in mass map cells of the strips of the parallel block spreading,
+    //two tiles of the mass map
+    private static final int STRIP_WIDTH = 32;
+    private List<List<Block>> strips;
+    private List<List<Block>> deferredBlocks;
+
     private Column bestColumn;
     private double bestCost;
     
@@ -78,6 +94,7 @@ class GradientLegalizer extends Legalizer {
     	this.scalingFactor = ((double)this.numLegalColumns) / ((double)(this.numLegalColumns + this.numIllegalColumns));
 
     	this.massMap = new MassMap(this.numLegalColumns, this.height);
+    	this.numThreads = 1;
     	
     	this.iterationCounter = 0;
     	
@@ -89,6 +106,33 @@ class GradientLegalizer extends Legalizer {
     		this.visualY[i] = 0;
     	}
     }
+    /*
+     * Spread the clusters and the blocks on the threads of the executor.
+     * The result only depends on the number of threads.
+     */
+    void setExecutor(ExecutorService executor, int numThreads){
+    	if(executor == null || numThreads < 2){
+    		this.executor = null;
+    		this.numThreads = 1;
+    		return;
+    	}
+    	this.executor = executor;
+    	this.numThreads = numThreads;
+
+    	this.threadMassMaps = new MassMap[numThreads];
+    	this.threadMassMaps[0] = this.massMap;
+    	for(int t = 1; t < numThreads; t++){
+    		this.threadMassMaps[t] = new MassMap(this.numLegalColumns, this.height);
+    	}
+
+    	int numStrips = (this.massMap.gridWidth + STRIP_WIDTH - 1) / STRIP_WIDTH;
+    	this.strips = new ArrayList<>(numStrips);
+    	this.deferredBlocks = new ArrayList<>(numStrips);
+    	for(int s = 0; s < numStrips; s++){
+    		this.strips.add(new ArrayList<Block>());
+    		this.deferredBlocks.add(new ArrayList<Block>());
+    	}
+    }
     private void addVisual(String name, List<Block> blocks){
     	if(doVisual){
         	for(int i = 0; i < this.linearX.length; i++){
@@ -280,22 +324,53 @@ class GradientLegalizer extends Legalizer {
     }
     public void spreadClusters(int numIterations){
     	//The mass map is empty before cluster spreading
-    	for(Cluster cluster:this.clusters){
-    		
-    		//Add the blocks to the mass map
-    		for(Block block:cluster.blocks){
-    			this.massMap.add(block);
+    	if(this.executor == null || this.clusters.size() < 2){
+    		for(Cluster cluster:this.clusters){
+    			this.spreadCluster(cluster, this.massMap, numIterations);
     		}
-    		
-    		for(int i = 0; i < numIterations; i++){
-    			this.applyPushingBlockForces(cluster);
-    		}
-    		
-    		//Remove the blocks from the mass map
-    		for(Block block:cluster.blocks){
-    			this.massMap.remove(block);
+    		return;
+    	}
+
+    	//A cluster only sees its own blocks, so the clusters are independent.
+    	//Each thread spreads a fixed range of clusters on its own mass map,
+    	//the ranges have about the same number of blocks.
+    	int numTasks = Math.min(this.numThreads, this.clusters.size());
+    	int[] clusterStarts = new int[numTasks + 1];
+    	int cluster = 0, blocks = 0;
+    	for(int task = 1; task < numTasks; task++){
+    		long target = (long) this.blocks.size() * task / numTasks;
+    		while(cluster < this.clusters.size() && blocks < target){
+    			blocks += this.clusters.get(cluster).blocks.size();
+    			cluster++;
     		}
+    		clusterStarts[task] = cluster;
     	}
+    	clusterStarts[numTasks] = this.clusters.size();
+
+    	this.runParallel(numTasks, task -> {
+    		MassMap massMap = this.threadMassMaps[task];
+    		if(task > 0){
+    			massMap.reset();
+    		}
+    		for(int c = clusterStarts[task]; c < clusterStarts[task + 1]; c++){
+    			this.spreadCluster(this.clusters.get(c), massMap, numIterations);
+    		}
+    	});
+    }
+    private void spreadCluster(Cluster cluster, MassMap massMap, int numIterations){
+		//Add the blocks to the mass map
+		for(Block block:cluster.blocks){
+			massMap.add(block);
+		}
+		
+		for(int i = 0; i < numIterations; i++){
+			this.applyPushingBlockForces(cluster, massMap);
+		}
+		
+		//Remove the blocks from the mass map
+		for(Block block:cluster.blocks){
+			massMap.remove(block);
+		}
     }
     public void moveClusters(int numIterations, double scaleFactor){
     	//The mass map is empty before cluster moving
@@ -355,6 +430,10 @@ class GradientLegalizer extends Legalizer {
     }
     
     private void applyPushingBlockForces(int numIterations){
+    	if(this.executor != null){
+    		this.applyPushingBlockForcesTiled(numIterations);
+    		return;
+    	}
     	for(int i = 0; i < numIterations; i++){
     		for(Block block: this.blocks){
     			this.massMap.remove(block);
@@ -364,14 +443,98 @@ class GradientLegalizer extends Legalizer {
         	}
     	}
     }
-    private void applyPushingBlockForces(Cluster cluster){
+    private void applyPushingBlockForces(Cluster cluster, MassMap massMap){
     	for(Block block: cluster.blocks){
+    		massMap.remove(block);
+    		block.setForce(massMap);
+    		block.doForce();
+    		massMap.add(block);
+    	}
+    }
+
+    /*
+     * Red/black update over vertical strips of the mass map. A block reads
+     * and writes the cells within one cell of its position, so the blocks
+     * of strips that are two strips apart touch disjoint cells as long as
+     * they stay within one cell of their strip. The even strips are
+     * updated in parallel, then the odd strips. A block that would leave
+     * its strip is put back and moved after both colors, in strip order.
+     * The strips don't depend on the number of threads, so neither does
+     * the result.
+     */
+    private void applyPushingBlockForcesTiled(int numIterations){
+    	int numStrips = this.strips.size();
+    	for(int i = 0; i < numIterations; i++){
+    		for(int s = 0; s < numStrips; s++){
+    			this.strips.get(s).clear();
+    			this.deferredBlocks.get(s).clear();
+    		}
+    		for(Block block: this.blocks){
+    			this.strips.get(block.ceilx / STRIP_WIDTH).add(block);
+    		}
+
+    		for(int color = 0; color < 2; color++){
+    			int firstStrip = color;
+    			int numColorStrips = (numStrips - color + 1) / 2;
+    			int numTasks = Math.max(1, Math.min(this.numThreads, numColorStrips));
+    			this.runParallel(numTasks, task -> {
+    				int start = numColorStrips * task / numTasks, end = numColorStrips * (task + 1) / numTasks;
+    				for(int k = start; k < end; k++){
+    					this.moveStrip(firstStrip + 2 * k);
+    				}
+    			});
+    		}
+
+    		for(List<Block> deferred: this.deferredBlocks){
+    			for(Block block: deferred){
+    				this.massMap.remove(block);
+    				block.setForce(this.massMap);
+    				block.doForce();
+    				this.massMap.add(block);
+    			}
+    		}
+    	}
+    }
+    private void moveStrip(int strip){
+    	int minX = strip * STRIP_WIDTH - 1;
+    	int maxX = (strip + 1) * STRIP_WIDTH;
+    	List<Block> deferred = this.deferredBlocks.get(strip);
+
+    	for(Block block: this.strips.get(strip)){
+    		double horizontalCoordinate = block.horizontal.coordinate;
+    		double verticalCoordinate = block.vertical.coordinate;
+
     		this.massMap.remove(block);
     		block.setForce(this.massMap);
     		block.doForce();
+
+    		if(block.ceilx < minX || block.ceilx > maxX){
+    			block.horizontal.coordinate = horizontalCoordinate;
+    			block.vertical.coordinate = verticalCoordinate;
+    			block.update();
+    			deferred.add(block);
+    		}
     		this.massMap.add(block);
     	}
     }
+
+    //Task 0 runs in the calling thread
+    private void runParallel(int numTasks, IntConsumer task){
+    	List<Future<?>> futures = new ArrayList<>();
+    	for(int t = 1; t < numTasks; t++){
+    		int taskIndex = t;
+    		futures.add(this.executor.submit(() -> task.accept(taskIndex)));
+    	}
+    	task.accept(0);
+
+    	try{
+    		for(Future<?> future: futures){
+    			future.get();
+    		}
+    	}catch(InterruptedException | ExecutionException e){
+    		throw new RuntimeException(e);
+    	}
+    }
     
     //Finalize
     private void updateLegal(){
@@ -531,36 +694,89 @@ class GradientLegalizer extends Legalizer {
     	}
     }
 
+    /*
+     * The mass map is a dense float grid, stored column by column. The grid
+     * is divided in square tiles that keep whether they were changed since
+     * the last reset and since their overlap was last calculated, so reset()
+     * only clears the changed tiles and overlap() only recalculates the
+     * overlap of the changed tiles.
+     *
+     * A tile is 16 cells wide, half a strip of the parallel block spreading,
+     * so the blocks of two concurrent strips never change the same tile.
+     */
     class MassMap {
+    	private static final int TILE_SHIFT = 4;
+    	private static final int TILE_SIZE = 1 << TILE_SHIFT;
+
     	private final int gridWidth, gridHeight;
-        private final double[][] massMap;
+    	private final int tilesWide, tilesHigh;
+
+        private final float[] massMap;
+        private final double[] tileOverlap;
+        private final boolean[] dirty, changed;
         
         public MassMap(int width, int height){
         	this.gridWidth = (width + 2) * 2;
         	this.gridHeight = (height + 2) * 2;
 
-        	this.massMap = new double[this.gridWidth][this.gridHeight];
-        	
-        	this.reset();
+        	this.massMap = new float[this.gridWidth * this.gridHeight];
+
+        	this.tilesWide = (this.gridWidth + TILE_SIZE - 1) >> TILE_SHIFT;
+        	this.tilesHigh = (this.gridHeight + TILE_SIZE - 1) >> TILE_SHIFT;
+        	this.tileOverlap = new double[this.tilesWide * this.tilesHigh];
+        	this.dirty = new boolean[this.tileOverlap.length];
+        	this.changed = new boolean[this.tileOverlap.length];
         }
         public void reset(){
-        	for(int x = 0; x < this.gridWidth; x++){
-        		for(int y = 0; y < this.gridHeight; y++){
-        			this.massMap[x][y] = 0.0;
+        	for(int tile = 0; tile < this.dirty.length; tile++){
+        		if(this.dirty[tile]){
+        			int x0 = (tile / this.tilesHigh) << TILE_SHIFT, x1 = Math.min(x0 + TILE_SIZE, this.gridWidth);
+        			int y0 = (tile % this.tilesHigh) << TILE_SHIFT, y1 = Math.min(y0 + TILE_SIZE, this.gridHeight);
+        			for(int x = x0; x < x1; x++){
+        				Arrays.fill(this.massMap, x * this.gridHeight + y0, x * this.gridHeight + y1, 0f);
+        			}
+        			this.tileOverlap[tile] = 0.0;
+        			this.dirty[tile] = false;
+        			this.changed[tile] = false;
         		}
         	}
         }
         public double overlap(){
         	double overlap = 0.0;
-        	for(int i = 0; i < this.gridWidth; i++){
-        		for(int j = 0; j < this.gridHeight; j++){
-        			if(this.massMap[i][j] > 0.25){
-        				overlap += this.massMap[i][j] - 0.25;
+        	for(int tile = 0; tile < this.dirty.length; tile++){
+        		if(this.changed[tile]){
+        			int x0 = (tile / this.tilesHigh) << TILE_SHIFT, x1 = Math.min(x0 + TILE_SIZE, this.gridWidth);
+        			int y0 = (tile % this.tilesHigh) << TILE_SHIFT, y1 = Math.min(y0 + TILE_SIZE, this.gridHeight);
+        			double tileOverlap = 0.0;
+        			for(int x = x0; x < x1; x++){
+        				for(int i = x * this.gridHeight + y0; i < x * this.gridHeight + y1; i++){
+        					if(this.massMap[i] > 0.25f){
+        						tileOverlap += this.massMap[i] - 0.25;
+        					}
+        				}
         			}
+        			this.tileOverlap[tile] = tileOverlap;
+        			this.changed[tile] = false;
         		}
+        		overlap += this.tileOverlap[tile];
         	}
         	return overlap;
         }
+        //Mark the tiles of the cells around the block
+        private void touch(Block block){
+        	int xMin = (block.ceilx - 1) >> TILE_SHIFT, xMax = (block.ceilx + 1) >> TILE_SHIFT;
+        	int yMin = (block.ceily - 1) >> TILE_SHIFT, yMax = (block.ceily + 2 * block.height - 1) >> TILE_SHIFT;
+        	for(int x = xMin; x <= xMax; x++){
+        		for(int y = yMin; y <= yMax; y++){
+        			this.dirty[x * this.tilesHigh + y] = true;
+        			this.changed[x * this.tilesHigh + y] = true;
+        		}
+        	}
+        }
+        private float get(int x, int y){
+        	return this.massMap[x * this.gridHeight + y];
+        }
+
         public void printToFile(String name, int iteration){
         	if(doVisual){
         		if(iteration == 1){
@@ -570,8 +786,8 @@ class GradientLegalizer extends Legalizer {
                         FileWriter fw = new FileWriter(file.getAbsoluteFile());
                         BufferedWriter bw = new BufferedWriter(fw);
                         
-                        int hor = this.massMap.length;
-                        int ver = this.massMap[0].length;
+                        int hor = this.gridWidth;
+                        int ver = this.gridHeight;
                         
                         bw.write("Dimensions: " + hor + " x " + ver + "\n\n");
                         
@@ -579,9 +795,9 @@ class GradientLegalizer extends Legalizer {
                         for(int i = 0; i < hor; i++){
                         	for(int j = 0; j < ver; j++){
                         		if(j == (ver - 1)){
-                        			bw.write(String.format("%.2f", this.massMap[i][j]));
+                        			bw.write(String.format("%.2f", this.get(i, j)));
                         		}else{
-                        			bw.write(String.format("%.2f;", this.massMap[i][j]));
+                        			bw.write(String.format("%.2f;", this.get(i, j)));
                         		}
                         		
                         	}
@@ -598,11 +814,9 @@ class GradientLegalizer extends Legalizer {
 		}
         public double usedRegion(){
         	double usedRegion = 0.0;
-        	for(int i = 0; i < this.gridWidth; i++){
-        		for(int j = 0; j < this.gridHeight; j++){
-        			if(this.massMap[i][j] > 0.0){
-        				usedRegion += 0.25;
-        			}
+        	for(float mass:this.massMap){
+        		if(mass > 0f){
+        			usedRegion += 0.25;
         		}
         	}
         	return usedRegion;
@@ -617,8 +831,11 @@ class GradientLegalizer extends Legalizer {
             block.vertical.setForce(verticalForce);
         }
         private void setPushingForce(Block block){
-        	int x = block.ceilx;
-    		int y = block.ceily;
+        	float[] massMap = this.massMap;
+
+        	//Cells (x - 1, y), (x, y) and (x + 1, y)
+        	int c = block.ceilx * this.gridHeight + block.ceily;
+        	int w = c - this.gridHeight, e = c + this.gridHeight;
     		
     		block.force_nw = 0.0;
     		block.force_ne = 0.0;
@@ -626,68 +843,80 @@ class GradientLegalizer extends Legalizer {
     		block.force_se = 0.0;
 
         	for(int h = 0; h < block.height; h++){
-        		block.force_nw += block.area_sw * this.massMap[x - 1][y];
-        		block.force_nw += block.area_nw * this.massMap[x - 1][y + 1];
-        		block.force_nw += block.area_se * this.massMap[x][y];
-        		block.force_nw += block.area_ne * this.massMap[x][y + 1];
+        		block.force_nw += block.area_sw * massMap[w];
+        		block.force_nw += block.area_nw * massMap[w + 1];
+        		block.force_nw += block.area_se * massMap[c];
+        		block.force_nw += block.area_ne * massMap[c + 1];
 
-        		block.force_ne += block.area_sw * this.massMap[x][y];
-        		block.force_ne += block.area_nw * this.massMap[x][y + 1];
-        		block.force_ne += block.area_se * this.massMap[x + 1][y];
-        		block.force_ne += block.area_ne * this.massMap[x + 1][y + 1];
+        		block.force_ne += block.area_sw * massMap[c];
+        		block.force_ne += block.area_nw * massMap[c + 1];
+        		block.force_ne += block.area_se * massMap[e];
+        		block.force_ne += block.area_ne * massMap[e + 1];
 
-        		block.force_sw += block.area_sw * this.massMap[x - 1][y - 1];
-        		block.force_sw += block.area_nw * this.massMap[x - 1][y];
-        		block.force_sw += block.area_se * this.massMap[x][y - 1];
-        		block.force_sw += block.area_ne * this.massMap[x][y];
+        		block.force_sw += block.area_sw * massMap[w - 1];
+        		block.force_sw += block.area_nw * massMap[w];
+        		block.force_sw += block.area_se * massMap[c - 1];
+        		block.force_sw += block.area_ne * massMap[c];
 
-        		block.force_se += block.area_sw * this.massMap[x][y - 1];
-        		block.force_se += block.area_nw * this.massMap[x][y];
-        		block.force_se += block.area_se * this.massMap[x + 1][y - 1];
-        		block.force_se += block.area_ne * this.massMap[x + 1][y];
+        		block.force_se += block.area_sw * massMap[c - 1];
+        		block.force_se += block.area_nw * massMap[c];
+        		block.force_se += block.area_se * massMap[e - 1];
+        		block.force_se += block.area_ne * massMap[e];
 
-        		y += 2;
+        		w += 2;
+        		c += 2;
+        		e += 2;
     		}
         }
         public void add(Block block){
-    		int x = block.ceilx;
-    		int y = block.ceily;
+        	float[] massMap = this.massMap;
+
+        	int c = block.ceilx * this.gridHeight + block.ceily;
+        	int w = c - this.gridHeight, e = c + this.gridHeight;
 
     		for(int h = 0; h < block.height; h++){
-        		this.massMap[x - 1][y - 1] += block.area_sw;
-        		this.massMap[x][y - 1] += block.area_se + block.area_sw;
-        		this.massMap[x + 1][y - 1] += block.area_se;
+        		massMap[w - 1] += block.area_sw;
+        		massMap[c - 1] += block.area_se + block.area_sw;
+        		massMap[e - 1] += block.area_se;
 
-        		this.massMap[x - 1][y] += block.area_sw + block.area_nw;
-        		this.massMap[x][y] += 0.25;
-        		this.massMap[x + 1][y] += block.area_se + block.area_ne;
+        		massMap[w] += block.area_sw + block.area_nw;
+        		massMap[c] += 0.25;
+        		massMap[e] += block.area_se + block.area_ne;
 
-        		this.massMap[x - 1][y + 1] += block.area_nw;
-        		this.massMap[x][y + 1] += block.area_nw + block.area_ne;
-        		this.massMap[x + 1][y + 1] += block.area_ne;
+        		massMap[w + 1] += block.area_nw;
+        		massMap[c + 1] += block.area_nw + block.area_ne;
+        		massMap[e + 1] += block.area_ne;
 
-        		y += 2;
+        		w += 2;
+        		c += 2;
+        		e += 2;
     		}
+    		this.touch(block);
         }
         public void remove(Block block){
-    		int x = block.ceilx;
-    		int y = block.ceily;
+        	float[] massMap = this.massMap;
+
+        	int c = block.ceilx * this.gridHeight + block.ceily;
+        	int w = c - this.gridHeight, e = c + this.gridHeight;
 
         	for(int h = 0; h < block.height; h++){
-        		this.massMap[x - 1][y - 1] -= block.area_sw;
-        		this.massMap[x][y - 1] -= block.area_se + block.area_sw;
-        		this.massMap[x + 1][y - 1] -= block.area_se;
+        		massMap[w - 1] -= block.area_sw;
+        		massMap[c - 1] -= block.area_se + block.area_sw;
+        		massMap[e - 1] -= block.area_se;
 
-        		this.massMap[x - 1][y] -= block.area_sw + block.area_nw;
-        		this.massMap[x][y] -= 0.25;
-        		this.massMap[x + 1][y] -= block.area_se + block.area_ne;
+        		massMap[w] -= block.area_sw + block.area_nw;
+        		massMap[c] -= 0.25;
+        		massMap[e] -= block.area_se + block.area_ne;
 
-        		this.massMap[x - 1][y + 1] -= block.area_nw;
-        		this.massMap[x][y + 1] -= block.area_nw + block.area_ne;
-        		this.massMap[x + 1][y + 1] -= block.area_ne;
+        		massMap[w + 1] -= block.area_nw;
+        		massMap[c + 1] -= block.area_nw + block.area_ne;
+        		massMap[e + 1] -= block.area_ne;
 
-            	y += 2;
+        		w += 2;
+        		c += 2;
+        		e += 2;
         	}
+        	this.touch(block);
         }
     }
     
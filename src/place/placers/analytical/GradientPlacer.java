@@ -50,6 +50,9 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
         
         O_INNER_EFFORT_LEVEL_START = "inner effort level start",
         O_INNER_EFFORT_LEVEL_STOP = "inner effort level stop",
+
+        O_GRADIENT_THREADS = "gradient threads",
+        O_LEGALIZER_THREADS = "legalizer threads",
         
         /////////////////////////
         // Parameters to sweep //
@@ -144,6 +147,15 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
                 O_STEP_SIZE_STOP,
                 "final step size in gradient cluster legalizer",
                 new Double(0.05));
+
+        options.add(
+                O_GRADIENT_THREADS,
+                "number of threads of the gradient step of each die, the result only depends on this number, 0 uses the placement threads",
+                new Integer(0));
+        options.add(
+                O_LEGALIZER_THREADS,
+                "number of threads of the spreading in the gradient legalizer of each die, 0 uses the placement threads",
+                new Integer(0));
     }
 
     protected double[] anchorWeight;
@@ -152,6 +164,7 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
     private double[] maxConnectionLength;
     protected double[] learningRate, learningRateMultiplier;
     private final double beta1, beta2, eps;
+    private final int gradientThreads, legalizerThreads;
     private HashMap<String, SLLNetBlocks> netToBlockSLL = new HashMap<>();
     protected int numIterations;
     protected int[] effortLevel;
@@ -243,6 +256,8 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
         this.beta2 = this.options.getDouble(O_BETA2);
         this.eps = this.options.getDouble(O_EPS);
 
+        this.gradientThreads = this.threadsPerDie(this.options.getInteger(O_GRADIENT_THREADS));
+        this.legalizerThreads = this.threadsPerDie(this.options.getInteger(O_LEGALIZER_THREADS));
     }
 
     protected abstract void initializeIteration(int iteration, int dieCounter);
@@ -332,6 +347,9 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
 	        this.legalizer[dieCount].addSetting(
 	        		"block_spreading",
 	        		this.options.getInteger(O_SPREAD_BLOCK_ITERATIONS));
+	        ((GradientLegalizer) this.legalizer[dieCount]).setExecutor(
+	        		this.legalizerThreads > 1 ? this.scheduler.getExecutor() : null,
+	        		this.legalizerThreads);
        }
             // Juggling with objects is too slow (I profiled this,
             // the speedup is around 40%)
@@ -406,7 +424,9 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
                     this.fixed.get(dieCount),
                     this.beta1, 
                     this.beta2, 
-                    this.eps);
+                    this.eps,
+                    this.gradientThreads,
+                    this.gradientThreads > 1 ? this.scheduler.getExecutor() : null);
 
             this.costCalculator[dieCount] = new CostCalculator(this.nets[dieCount]);
 
@@ -1042,15 +1062,7 @@ public abstract class GradientPlacer extends AnalyticalAndGradientPlacer {
     }
 
     protected void processNets(boolean[] processNets, int dieNum) {
-
-    	int numNets = this.netEnds.get(dieNum).length;
-
-    	for(int netIndex = 0; netIndex < numNets; netIndex++) {
-    		if(processNets[netIndex]){
-
-    			this.solver[dieNum].processNet(this.netStarts.get(dieNum)[netIndex], this.netEnds.get(dieNum)[netIndex]);
-    		}
-    	}
+    	this.solver[dieNum].processNets(processNets, this.netStarts.get(dieNum), this.netEnds.get(dieNum));
     }
 
     @Override
@@ -1,5 +1,7 @@
 package place.placers.analytical;
 
+import java.util.concurrent.ExecutorService;
+
 import place.placers.analytical.AnalyticalAndGradientPlacer.CritConn;
 import place.placers.analytical.AnalyticalAndGradientPlacer.Net;
 import place.placers.analytical.AnalyticalAndGradientPlacer.NetBlock;
@@ -16,15 +18,18 @@ class LinearSolverAnalytical {
             double[] coordinatesY,
             double pseudoWeight,
             double epsilon,
-            boolean[] fixed) {
+            boolean[] fixed,
+            boolean warmStart,
+            ExecutorService executor,
+            int numThreads) {
 
         this.coordinatesX = coordinatesX;
         this.coordinatesY = coordinatesY;
 
         this.fixed = fixed;
 
-        this.solverX = new DimensionSolverAnalytical(coordinatesX, pseudoWeight, epsilon, fixed);
-        this.solverY = new DimensionSolverAnalytical(coordinatesY, pseudoWeight, epsilon, fixed);
+        this.solverX = new DimensionSolverAnalytical(coordinatesX, pseudoWeight, epsilon, fixed, warmStart, executor, numThreads);
+        this.solverY = new DimensionSolverAnalytical(coordinatesY, pseudoWeight, epsilon, fixed, warmStart, executor, numThreads);
     }
 
 
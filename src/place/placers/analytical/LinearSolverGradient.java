@@ -1,13 +1,29 @@
 package place.placers.analytical;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 class LinearSolverGradient {
 
+    // Below this number of nets or blocks per thread, the tasks cost more than they save
+    private static final int MIN_TASK_SIZE = 2000;
+
     private double[] coordinatesX, coordinatesY;
     private int[] netBlockIndexes;
     private float[] netBlockOffsets;
 
     private DimensionSolverGradient solverX, solverY;
 
+    private final int numThreads;
+    private final ExecutorService executor;
+
+    private interface RangeTask {
+        void run(int thread, int start, int end);
+    }
+
     LinearSolverGradient(
             double[] coordinatesX,
             double[] coordinatesY,
@@ -17,7 +33,9 @@ class LinearSolverGradient {
             boolean[] fixed,
             double beta1,
             double beta2,
-            double eps) {
+            double eps,
+            int numThreads,
+            ExecutorService executor) {
 
         this.coordinatesX = coordinatesX;
         this.coordinatesY = coordinatesY;
@@ -25,8 +43,11 @@ class LinearSolverGradient {
         this.netBlockIndexes = netBlockIndexes;
         this.netBlockOffsets = netBlockOffsets;
 
-        this.solverX = new DimensionSolverGradient(coordinatesX, maxConnectionLength, fixed, beta1, beta2, eps);
-        this.solverY = new DimensionSolverGradient(coordinatesY, maxConnectionLength, fixed, beta1, beta2, eps);
+        this.numThreads = executor == null ? 1 : numThreads;
+        this.executor = executor;
+
+        this.solverX = new DimensionSolverGradient(coordinatesX, maxConnectionLength, fixed, beta1, beta2, eps, this.numThreads);
+        this.solverY = new DimensionSolverGradient(coordinatesY, maxConnectionLength, fixed, beta1, beta2, eps, this.numThreads);
     }
 
     public void initializeIteration(double pseudoWeight, double learningRate) {
@@ -40,7 +61,24 @@ class LinearSolverGradient {
         this.solverY.setLegal(legalY);
     }
 
+    /*
+     * Process the selected nets. Every thread gets a fixed range of nets
+     * and adds them to its own partial sums.
+     */
+    void processNets(boolean[] processNets, int[] netStarts, int[] netEnds) {
+        this.runParallel(netEnds.length, (thread, start, end) -> {
+            for(int netIndex = start; netIndex < end; netIndex++) {
+                if(processNets[netIndex]) {
+                    this.processNet(thread, netStarts[netIndex], netEnds[netIndex]);
+                }
+            }
+        });
+    }
+
     void processNet(int netStart, int netEnd) {
+        this.processNet(0, netStart, netEnd);
+    }
+    private void processNet(int thread, int netStart, int netEnd) {
         int numNetBlocks = netEnd - netStart;
         double weight = AnalyticalAndGradientPlacer.getWeight(numNetBlocks);
        // System.out.print("\nThe netstart is " +netStart + " netend is " +netEnd + " and the weight is " + weight+ "\n");
@@ -54,11 +92,11 @@ class LinearSolverGradient {
             
             coordinate1 = this.coordinatesY[blockIndex1] + this.netBlockOffsets[netStart];
             coordinate2 = this.coordinatesY[blockIndex2] + this.netBlockOffsets[netStart + 1];
-            this.solverY.processConnection(blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
+            this.solverY.processConnection(thread, blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
 
             coordinate1 = this.coordinatesX[blockIndex1];
             coordinate2 = this.coordinatesX[blockIndex2];
-            this.solverX.processConnection(blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
+            this.solverX.processConnection(thread, blockIndex1, blockIndex2, coordinate2 - coordinate1, weight, false);
 
             return;
         }
@@ -98,8 +136,8 @@ class LinearSolverGradient {
         }
 
         // Add connections between the min and max block
-        this.solverX.processConnection(minXIndex, maxXIndex, maxX - minX, weight, false);
-        this.solverY.processConnection(minYIndex, maxYIndex, maxY - minY, weight, false);
+        this.solverX.processConnection(thread, minXIndex, maxXIndex, maxX - minX, weight, false);
+        this.solverY.processConnection(thread, minYIndex, maxYIndex, maxY - minY, weight, false);
     }
 
     void processConnection(int blockIndex1, int blockIndex2, float offset, double weight, boolean critical) {
@@ -113,8 +151,39 @@ class LinearSolverGradient {
     }
 
     void solve() {
-        this.solverX.solve();
-        this.solverY.solve();
+        this.runParallel(this.coordinatesX.length, (thread, start, end) -> {
+            this.solverX.solve(start, end);
+            this.solverY.solve(start, end);
+        });
+    }
+
+    /*
+     * Split [0, size) in contiguous ranges, one per thread. The range of a
+     * thread only depends on the size and the number of threads, the first
+     * range runs in the calling thread.
+     */
+    private void runParallel(int size, RangeTask task) {
+        int numTasks = Math.max(1, Math.min(this.numThreads, size / MIN_TASK_SIZE));
+        if(numTasks == 1) {
+            task.run(0, 0, size);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for(int thread = 1; thread < numTasks; thread++) {
+            int start = (int) ((long) size * thread / numTasks), end = (int) ((long) size * (thread + 1) / numTasks);
+            int taskThread = thread;
+            futures.add(this.executor.submit(() -> task.run(taskThread, start, end)));
+        }
+        task.run(0, 0, (int) ((long) size / numTasks));
+
+        try {
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch(InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
     }
     
     double[] getCoordinatesX(){
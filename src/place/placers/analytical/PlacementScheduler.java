@@ -0,0 +1,89 @@
+package place.placers.analytical;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.function.IntPredicate;
+
+/*
+ * One work stealing pool for the whole placement. Every die runs its
+ * iterations in one long lived task, the dies wait for each other at the
+ * end of an iteration on a phaser. The phase of the phaser is the
+ * iteration, the last die to arrive starts the timer of the next iteration
+ * and checks the stop condition.
+ *
+ * The parallel parts of an iteration (the ranges of the gradient step, the
+ * solver and the legalizer) are submitted to the same pool, by default
+ * every die splits them in as many ranges as the pool has threads. A die
+ * that waits at the phaser blocks its worker thread, the phaser waits in
+ * managedBlock so the pool can start a spare thread for it. The idle
+ * threads steal the ranges of the dies that are still busy, so the cores
+ * of a die that is done go to the largest die.
+ */
+class PlacementScheduler {
+
+    interface DieIteration {
+        StringBuilder run(int iteration, double timerBegin, int die);
+    }
+
+    private final ForkJoinPool pool;
+    private volatile double timerBegin;
+
+    PlacementScheduler(int numThreads) {
+        this.pool = new ForkJoinPool(numThreads);
+    }
+
+    ExecutorService getExecutor() {
+        return this.pool;
+    }
+
+    /*
+     * Run the iterations of all dies until the stop condition of an
+     * iteration is true.
+     */
+    void runIterations(int numDies, IntPredicate stopCondition, DieIteration dieIteration) {
+        Phaser phaser = new Phaser(numDies) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                PlacementScheduler.this.timerBegin = System.nanoTime();
+                return registeredParties == 0 || stopCondition.test(phase);
+            }
+        };
+
+        this.timerBegin = System.nanoTime();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for(int die = 0; die < numDies; die++) {
+            int dieNumber = die;
+            futures.add(this.pool.submit(() -> {
+                try {
+                    while(!phaser.isTerminated()) {
+                        StringBuilder output = dieIteration.run(phaser.getPhase(), this.timerBegin, dieNumber);
+                        System.out.println(output);
+                        phaser.arriveAndAwaitAdvance();
+                    }
+                } catch(RuntimeException | Error e) {
+                    // Don't leave the other dies waiting at the barrier
+                    phaser.forceTermination();
+                    throw e;
+                }
+            }));
+        }
+
+        try {
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch(InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -4,8 +4,11 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +27,8 @@ public class PlaceParser {
 
     private Integer halfHeight;
     private Map<String, int[]> coordinates;
+    private Map<String, int[]> placedCoordinates;
+    private Set<String> sllBlocks;
     private Circuit circuit;
     private CircuitSLL circuitSLL;
     private File file;
@@ -47,8 +52,9 @@ public class PlaceParser {
 
         String line;
         while((line = reader.readLine()) != null) {
-            this.processLine(line);
+            this.processLine(line, this.coordinates);
         }
+        this.placedCoordinates = new HashMap<String, int[]>(this.coordinates);
 
 
         // Loop over all the blocks in the circuit
@@ -73,6 +79,7 @@ public class PlaceParser {
         }
         
        
+        this.sllBlocks = new HashSet<String>(this.coordinates.keySet());
         for(String blockName: this.coordinates.keySet()) {
             int[] coordinate = this.coordinates.get(blockName);
         	String netName = blockName.substring(6);
@@ -83,7 +90,37 @@ public class PlaceParser {
     }
 
 
-    private void processLine(String line) throws IllegalSizeException {
+    /**
+     * Compare the parsed placement with the placement in a previous place
+     * file of the same die. The blocks that moved or that are not in the
+     * previous file are added to changedBlocks, for the SLL blocks the
+     * name of the net is added to changedSLLNets.
+     */
+    public void diff(File previousFile, Set<String> changedBlocks, Set<String> changedSLLNets) throws IOException, IllegalSizeException {
+        Map<String, int[]> previousCoordinates = new HashMap<String, int[]>();
+        
+        try(BufferedReader reader = new BufferedReader(new FileReader(previousFile))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                this.processLine(line, previousCoordinates);
+            }
+        }
+        
+        for(Map.Entry<String, int[]> entry : this.placedCoordinates.entrySet()) {
+            String blockName = entry.getKey();
+            int[] previousCoordinate = previousCoordinates.get(blockName);
+            
+            if(previousCoordinate == null || !Arrays.equals(previousCoordinate, entry.getValue())) {
+                if(this.sllBlocks.contains(blockName)) {
+                    changedSLLNets.add(blockName.substring(6));
+                } else {
+                    changedBlocks.add(blockName);
+                }
+            }
+        }
+    }
+
+    private void processLine(String line, Map<String, int[]> coordinates) throws IllegalSizeException {
         Matcher sizeMatcher = sizePattern.matcher(line);
         boolean sizeMatches = sizeMatcher.matches();
 
@@ -106,7 +143,7 @@ public class PlaceParser {
 
 
             int[] coordinate = {x, y, z};
-            this.coordinates.put(blockName, coordinate);
+            coordinates.put(blockName, coordinate);
         }
     }
 }
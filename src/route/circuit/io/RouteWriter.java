@@ -0,0 +1,163 @@
+package route.circuit.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import route.circuit.architecture.BlockCategory;
+import route.circuit.resource.ResourceGraph;
+import route.circuit.resource.RouteNode;
+import route.circuit.resource.Site;
+import route.route.Connection;
+import route.route.Net;
+
+/**
+ * Writes the routing trees of the nets in the .route format of VPR. The
+ * files are written on a background thread, net by net through a
+ * buffered writer, so the caller can continue with the timing reports
+ * and the routing is never held in memory as one string.
+ *
+ * The tree of a net is written as a depth first traceback: the first
+ * connection from the source to its sink, each next connection from the
+ * node where it branches off the nodes that are already written. The
+ * branch node is repeated, as VPR does.
+ */
+public class RouteWriter {
+	private final ResourceGraph rrg;
+	private final int width, height;
+
+	private final ExecutorService executor;
+	private final List<Future<?>> files;
+
+	public RouteWriter(ResourceGraph rrg, int width, int height) {
+		this.rrg = rrg;
+		this.width = width;
+		this.height = height;
+
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "route writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.files = new ArrayList<>();
+	}
+
+	/**
+	 * Queue a file, the files are written in the order they are queued.
+	 */
+	public void write(File file, List<Net> nets) {
+		this.files.add(this.executor.submit(() -> {
+			this.writeFile(file, nets);
+			return null;
+		}));
+	}
+
+	/**
+	 * Wait until all queued files are written.
+	 */
+	public void finish() throws IOException {
+		try {
+			for(Future<?> file : this.files) {
+				file.get();
+			}
+		} catch(InterruptedException error) {
+			throw new IOException("Interrupted while writing the route files", error);
+		} catch(ExecutionException error) {
+			if(error.getCause() instanceof IOException) {
+				throw (IOException) error.getCause();
+			}
+			throw new RuntimeException(error.getCause());
+		} finally {
+			this.executor.shutdown();
+		}
+	}
+
+	private void writeFile(File file, List<Net> nets) throws IOException {
+		long start = System.nanoTime();
+
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+			writer.write("Array size: " + this.width + " x " + this.height + " logic blocks.\n");
+			writer.write("\nRouting:");
+
+			StringBuilder line = new StringBuilder();
+			Set<RouteNode> written = new HashSet<>();
+
+			for(int netId = 0; netId < nets.size(); netId++) {
+				Net net = nets.get(netId);
+				writer.write("\n\nNet " + netId + " (" + net.getName() + ")\n\n");
+
+				written.clear();
+				for(Connection con : net.getConnections()) {
+					List<RouteNode> path = con.routeNodes;
+					if(path.isEmpty()) continue;
+
+					//The route nodes are stored from the sink to the source
+					int first = path.size() - 1;
+					for(int i = 0; i < path.size(); i++) {
+						if(written.contains(path.get(i))) {
+							first = i;
+							break;
+						}
+					}
+
+					for(int i = first; i >= 0; i--) {
+						RouteNode node = path.get(i);
+						written.add(node);
+
+						line.setLength(0);
+						this.appendNode(line, node);
+						writer.write(line.toString());
+					}
+				}
+			}
+			writer.write("\n");
+		}
+
+		System.out.printf("Wrote %s in %.2f s\n", file, (System.nanoTime() - start) * 1e-9);
+	}
+
+	private void appendNode(StringBuilder line, RouteNode node) {
+		String type = node.type.name();
+
+		line.append("Node:\t").append(node.routeNodeData.index).append('\t');
+		for(int i = type.length(); i < 6; i++) {
+			line.append(' ');
+		}
+		line.append(type).append(" (").append(node.xlow).append(',').append(node.ylow).append(") ");
+		if(node.xlow != node.xhigh || node.ylow != node.yhigh) {
+			line.append("to (").append(node.xhigh).append(',').append(node.yhigh).append(") ");
+		}
+
+		switch(node.type) {
+			case IPIN:
+			case OPIN:
+				line.append(this.isIO(node) ? " Pad: " : " Pin: ");
+				break;
+			case CHANX:
+			case CHANY:
+				line.append(" Track: ");
+				break;
+			case SOURCE:
+			case SINK:
+				line.append(this.isIO(node) ? " Pad: " : " Class: ");
+				break;
+			default:
+				break;
+		}
+		line.append(node.n).append("  \n");
+	}
+
+	private boolean isIO(RouteNode node) {
+		Site site = this.rrg.getSite(node.xlow, node.ylow, true);
+		return site != null && site.getblockType().getCategory() == BlockCategory.IO;
+	}
+}
@@ -0,0 +1,272 @@
+package route.circuit.resource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of the route nodes and edges of the RRG dumps. The cache
+ * is written while the text dumps are parsed and is read on the next run
+ * through memory mapped buffers. The header holds a CRC of all dump
+ * files, a cache that doesn't match the dumps is ignored and rewritten.
+ *
+ * Layout, big endian:
+ *   header: magic, version, hash, number of nodes, number of edges, offset of the direction table
+ *   nodes: index, type, direction, capacity, xlow, xhigh, ylow, yhigh, ptc, R, C, segment id, number of children
+ *   edges: sink node, source node, switch id
+ *   direction table: number of directions, length and bytes of each direction
+ */
+class RRGCache {
+	private static final int MAGIC = 0x52524743;
+	private static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 8;
+	private static final int NODE_SIZE = 4 + 1 + 1 + 4 + 4 * 2 + 4 + 4 + 4 + 4 + 4;
+	private static final int EDGE_SIZE = 4 + 4 + 4;
+	
+	//A mapped buffer can't be larger than 2 GB
+	private static final int RECORDS_PER_BUFFER = 1 << 24;
+	
+	static long hash(File[] files) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(VERSION);
+		
+		byte[] buffer = new byte[1 << 20];
+		for(File file : files) {
+			try(FileInputStream input = new FileInputStream(file)) {
+				int length;
+				while((length = input.read(buffer)) > 0) {
+					crc.update(buffer, 0, length);
+				}
+			}
+		}
+		return crc.getValue();
+	}
+	
+	static boolean isValid(File file, long hash) {
+		if(!file.exists() || file.length() < HEADER_SIZE) {
+			return false;
+		}
+		
+		try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			if(input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != hash) {
+				return false;
+			}
+			long numNodes = input.readInt();
+			long numEdges = input.readInt();
+			long directionOffset = input.readLong();
+			
+			return directionOffset == HEADER_SIZE + numNodes * NODE_SIZE + numEdges * EDGE_SIZE && directionOffset < file.length();
+		} catch(IOException error) {
+			return false;
+		}
+	}
+	
+	static void load(File file, ResourceGraph graph) throws IOException {
+		try(RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.getInt();
+			header.getInt();
+			header.getLong();
+			int numNodes = header.getInt();
+			int numEdges = header.getInt();
+			long directionOffset = header.getLong();
+			
+			MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, directionOffset, channel.size() - directionOffset);
+			String[] directions = new String[table.getInt()];
+			for(int i = 0; i < directions.length; i++) {
+				byte[] bytes = new byte[table.getShort()];
+				table.get(bytes);
+				directions[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			
+			RouteNodeType[] types = RouteNodeType.values();
+			
+			long position = HEADER_SIZE;
+			for(int first = 0; first < numNodes; first += RECORDS_PER_BUFFER) {
+				int records = Math.min(RECORDS_PER_BUFFER, numNodes - first);
+				MappedByteBuffer nodes = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) records * NODE_SIZE);
+				for(int i = 0; i < records; i++) {
+					int index = nodes.getInt();
+					String type = types[nodes.get()].name();
+					String direction = directions[nodes.get()];
+					int capacity = nodes.getInt();
+					int xlow = nodes.getShort();
+					int xhigh = nodes.getShort();
+					int ylow = nodes.getShort();
+					int yhigh = nodes.getShort();
+					int ptc = nodes.getInt();
+					float r = nodes.getFloat();
+					float c = nodes.getFloat();
+					int segID = nodes.getInt();
+					int numChildren = nodes.getInt();
+					
+					graph.addRouteNode(index, type, direction, capacity, xlow, xhigh, ylow, yhigh, ptc, r, c, segID, numChildren);
+				}
+				position += (long) records * NODE_SIZE;
+			}
+			
+			int counter = 0;
+			for(int first = 0; first < numEdges; first += RECORDS_PER_BUFFER) {
+				int records = Math.min(RECORDS_PER_BUFFER, numEdges - first);
+				MappedByteBuffer edges = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) records * EDGE_SIZE);
+				for(int i = 0; i < records; i++) {
+					int sinkNode = edges.getInt();
+					int sourceNode = edges.getInt();
+					int switchID = edges.getInt();
+					
+					if(graph.addEdge(sinkNode, sourceNode, switchID)) {
+						counter++;
+					}
+				}
+				position += (long) records * EDGE_SIZE;
+			}
+			System.out.print("\n RR Edges: " + counter);
+		}
+	}
+	
+	static class Writer {
+		private final File file, tempFile;
+		private final long hash;
+		private DataOutputStream output;
+		
+		private int numNodes, numEdges;
+		private final Map<String, Integer> directionIndex;
+		private final List<String> directions;
+		
+		private boolean failed;
+		
+		/**
+		 * Returns null if the cache can't be written, the RRG is
+		 * parsed from the text dumps anyway
+		 */
+		static Writer open(File file, long hash) {
+			try {
+				return new Writer(file, hash);
+			} catch(IOException error) {
+				System.err.println("Unable to write the RRG cache " + file + ": " + error.getMessage());
+				return null;
+			}
+		}
+		
+		private Writer(File file, long hash) throws IOException {
+			this.file = file;
+			this.tempFile = new File(file.getPath() + ".tmp");
+			this.hash = hash;
+			
+			this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.tempFile), 1 << 20));
+			
+			//The counts and the offset are filled in when the cache is closed
+			this.output.writeInt(MAGIC);
+			this.output.writeInt(VERSION);
+			this.output.writeLong(0);
+			this.output.writeInt(0);
+			this.output.writeInt(0);
+			this.output.writeLong(0);
+			
+			this.numNodes = 0;
+			this.numEdges = 0;
+			this.directionIndex = new HashMap<>();
+			this.directions = new ArrayList<>();
+			
+			this.failed = false;
+		}
+		
+		void writeNode(int index, String type, String direction, int capacity, int xlow, int xhigh, int ylow, int yhigh, int ptc, float r, float c, int segID, int numChildren) {
+			if(this.failed) return;
+			
+			Integer directionId = this.directionIndex.get(direction);
+			if(directionId == null) {
+				directionId = this.directions.size();
+				this.directions.add(direction);
+				this.directionIndex.put(direction, directionId);
+			}
+			
+			try {
+				this.output.writeInt(index);
+				this.output.writeByte(RouteNodeType.valueOf(type).ordinal());
+				this.output.writeByte(directionId);
+				this.output.writeInt(capacity);
+				this.output.writeShort(xlow);
+				this.output.writeShort(xhigh);
+				this.output.writeShort(ylow);
+				this.output.writeShort(yhigh);
+				this.output.writeInt(ptc);
+				this.output.writeFloat(r);
+				this.output.writeFloat(c);
+				this.output.writeInt(segID);
+				this.output.writeInt(numChildren);
+				this.numNodes++;
+			} catch(IOException | IllegalArgumentException error) {
+				this.fail(error);
+			}
+		}
+		
+		void writeEdge(int sinkNode, int sourceNode, int switchID) {
+			if(this.failed) return;
+			
+			try {
+				this.output.writeInt(sinkNode);
+				this.output.writeInt(sourceNode);
+				this.output.writeInt(switchID);
+				this.numEdges++;
+			} catch(IOException error) {
+				this.fail(error);
+			}
+		}
+		
+		void close() {
+			if(this.failed) return;
+			
+			try {
+				long directionOffset = HEADER_SIZE + (long) this.numNodes * NODE_SIZE + (long) this.numEdges * EDGE_SIZE;
+				
+				this.output.writeInt(this.directions.size());
+				for(String direction : this.directions) {
+					byte[] bytes = direction.getBytes(StandardCharsets.UTF_8);
+					this.output.writeShort(bytes.length);
+					this.output.write(bytes);
+				}
+				this.output.close();
+				
+				try(RandomAccessFile header = new RandomAccessFile(this.tempFile, "rw")) {
+					header.seek(8);
+					header.writeLong(this.hash);
+					header.writeInt(this.numNodes);
+					header.writeInt(this.numEdges);
+					header.writeLong(directionOffset);
+				}
+				
+				if((this.file.exists() && !this.file.delete()) || !this.tempFile.renameTo(this.file)) {
+					throw new IOException("unable to rename " + this.tempFile);
+				}
+				System.out.println("   Wrote the RRG cache " + this.file);
+			} catch(IOException error) {
+				this.fail(error);
+			}
+		}
+		
+		private void fail(Exception error) {
+			System.err.println("Unable to write the RRG cache " + this.file + ": " + error.getMessage());
+			this.failed = true;
+			try {
+				this.output.close();
+			} catch(IOException closeError) {
+				//The cache is incomplete anyway
+			}
+			this.tempFile.delete();
+		}
+	}
+}
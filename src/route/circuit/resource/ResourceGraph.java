@@ -50,6 +50,8 @@ public class ResourceGraph {
 	private int dieBoundary; 
 	
 	private int indexStart = 0;
+	private String currentPort;
+	private int portIndex;
 	private final Map<String, BlockTypeRRG> blockTypeNodes;
 	private final List<RouteNode> routeNodes;
 	private final Map<Integer, RouteNode> routeNodeIndex;
@@ -59,6 +61,7 @@ public class ResourceGraph {
 	private Map<Integer, String> segmentList;
 	
 	private final Map<RouteNodeType, List<RouteNode>> routeNodeMap;
+	private RouteGraph routeGraph;
 	
 	private static int SOURCE_COST_INDEX = 0;
 	private static int SINK_COST_INDEX = 1;
@@ -105,6 +108,9 @@ public class ResourceGraph {
 		this.assignNamesToSourceAndSink();
 		this.connectSourceAndSinkToSite();
 		this.connectSLLWiresToSite();
+		
+		this.routeGraph = new RouteGraph(this.routeNodes);
+		System.out.println("Route graph: " + this.routeGraph.numNodes + " nodes, " + this.routeGraph.numEdges + " edges");
     }
     
     public IndexedData get_ipin_indexed_data() {
@@ -260,13 +266,49 @@ public class ResourceGraph {
         this.processSegmentList();
         //process blocktypes
         this.processBlockTypes();
-        //process RRG nodes
-        this.processRRGNodes();
-        this.processRRGEdges();
+        //process RRG nodes and edges, from the binary cache if it matches the dumps
+        File cacheFile = new File(this.getRRGDumpFileName("rrg_cache_" + this.sllRows + "L.bin"));
+        long hash = RRGCache.hash(this.getRRGDumpFiles());
+        if(RRGCache.isValid(cacheFile, hash)) {
+        	System.out.println("\n   Read " + cacheFile);
+        	RRGCache.load(cacheFile, this);
+        	System.out.print(" RR nodes: " + this.routeNodes.size());
+        } else {
+        	RRGCache.Writer cacheWriter = RRGCache.Writer.open(cacheFile, hash);
+        	this.processRRGNodes(cacheWriter);
+        	this.processRRGEdges(cacheWriter);
+        	if(cacheWriter != null) {
+        		cacheWriter.close();
+        	}
+        }
         this.postProcess();
 
     }
     
+    private String getRRGDumpFileName(String fileName) {
+		String rrgFileName = this.RRGFile.getAbsolutePath();
+		String directoryPath = rrgFileName.substring(0, rrgFileName.lastIndexOf("/") + 1);
+		return directoryPath + fileName;
+    }
+    private File[] getRRGDumpFiles() {
+    	return new File[] {
+    		new File(this.getRRGDumpFileName("rr_indexed_data_" + this.sllRows + "L.echo")),
+    		new File(this.getRRGDumpFileName("switch_info" + this.sllRows + "L.echo")),
+    		new File(this.getRRGDumpFileName("segment_info" + this.sllRows + "L.echo")),
+    		new File(this.getRRGDumpFileName("block_type_info.echo")),
+    		new File(this.getRRGDumpFileName("rrNode_info_" + this.sllRows + "L.echo")),
+    		new File(this.getRRGDumpFileName("rrEdge_info_" + this.sllRows + "L.echo"))
+    	};
+    }
+    
+    /**
+     * The router lookahead is cached next to the RRG dumps it was
+     * calculated from.
+     */
+    public File getRouterLookaheadFile() {
+    	return new File(this.getRRGDumpFileName("router_lookahead_" + this.sllRows + "L.bin"));
+    }
+    
     private void postProcess() {
     	System.out.print("\nThe postProcess is on going");
 		for(RouteNode node : this.routeNodes) {
@@ -405,7 +447,7 @@ public class ResourceGraph {
         
 	}
 
-	private void processRRGNodes() throws IOException {
+	private void processRRGNodes(RRGCache.Writer cacheWriter) throws IOException {
     	System.out.print("\n Processing the RRGNodes");
 		String rrgIndexFileName = this.RRGFile.getAbsolutePath();
 		System.out.print("RR file path is " + rrgIndexFileName);
@@ -420,15 +462,8 @@ public class ResourceGraph {
 		BufferedReader reader = null;
 		reader = new BufferedReader(new FileReader(newFileName));
 		System.out.println("\n   Read " + newFileName);
-		RouteNode routeNode = null;
-		BlockTypeRRG blockNode = null;
-		String currentBlockTypeName = null;
-		String currentPort = null;
-		int portIndex = -1;
-		IndexedData data = null;
-		String fullName = null;
-		String name = null;
-		String names[] = null;
+		this.currentPort = null;
+		this.portIndex = -1;
 
 		String line;
         String[] words = null;
@@ -440,7 +475,6 @@ public class ResourceGraph {
         		words = line.split(";");
         		int capacity = Integer.parseInt(words[3]);
         		int index = Integer.parseInt(words[0]);
-        		this.indexStart = Math.max(this.indexStart, index);
         		String direction = words[2];
         		String type = words[1];
 
@@ -449,119 +483,134 @@ public class ResourceGraph {
         		int xlow  = Integer.parseInt(words[4]);
         		int yhigh = Integer.parseInt(words[7]);
         		int ylow  = Integer.parseInt(words[5]);
-                
-        		int segID = 0;
-        		String chanType;
         		
         		float Reg = Float.parseFloat(words[9]);
         		float Cap = Float.parseFloat(words[10]);
-        		int numChildren = Integer.parseInt(words[12]);		
-        		switch (type) {
-    				case "SOURCE":        				
-    					assert Reg == 0;
-    					assert Cap == 0;
-    					data = this.indexedDataList.get(type);
-    					routeNode = new Source(index, xlow, xhigh, ylow, yhigh, ptc, capacity, data, numChildren);
-    					
-    					break;
-    				case "SINK":        				
-    					assert Reg == 0;
-    					assert Cap == 0;
-    					data = this.indexedDataList.get(type);
-    					routeNode = new Sink(index, xlow, xhigh, ylow, yhigh, ptc, capacity, data, numChildren);
-    					
-    					break;
-    			case "IPIN":
-    				//Assertions
-    				assert capacity == 1;
-    				assert Reg == 0;
-    				assert Cap == 0;
-    				currentBlockTypeName = this.getBlocktypeAtSite(xlow, ylow);
-
-    				blockNode = this.blockTypeNodes.get(currentBlockTypeName);
-  
-    				fullName = blockNode.getPinClassNameByPinId(ptc); // currentBlockTypeName);
-
-    				names = fullName.split("\\.");
-    				names = names[1].split("\\[");
-    				name = names[0];
-    				if(currentPort == null){
-    					currentPort = name;
-    					portIndex = 0;
-    				}else if(!currentPort.equals(name)){
-    					currentPort = name;
-    					portIndex = 0;
-    				}
-    				data = this.indexedDataList.get(type);
-    				routeNode = new Ipin(index, xlow, xhigh, ylow, yhigh, ptc, currentPort, portIndex, data, direction, numChildren);
-    				
-    				portIndex += 1;
-    				
-    				break;
-    			case "OPIN":        				
-    				//Assertions
-    				assert capacity == 1;
-    				assert Reg == 0;
-    				assert Cap == 0;
-    				
-    				currentBlockTypeName = this.getBlocktypeAtSite(xlow, ylow);
-    				blockNode = this.blockTypeNodes.get(currentBlockTypeName);
-    				fullName = blockNode.getPinClassNameByPinId(ptc); //, currentBlockTypeName);
-
-    				
-    				names = fullName.split("\\.");
-    				names = names[1].split("\\[");
-    				name = names[0];
-    				
-    				if(currentPort == null){
-    					currentPort = name;
-    					portIndex = 0;
-    				}else if(!currentPort.equals(name)){
-    					currentPort = name;
-    					portIndex = 0;
-    				}
-    				data = this.indexedDataList.get(type);
-    				routeNode = new Opin(index, xlow, xhigh, ylow, yhigh, ptc, currentPort, portIndex, data, direction, numChildren);
-    				
-    				portIndex += 1;
-    				
-    				break;
-    			case "CHANX":        				
-    				assert capacity == 1;
-    				segID = Integer.parseInt(words[11]);
-    				chanType = type + "_" + this.segmentList.get(segID);
-    				data = this.indexedDataList.get(chanType);
-    				routeNode = new Chanx(index, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, data, direction, numChildren);
-    				if(xhigh - xlow == (this.sllRows - 1)) {
-    					routeNode.setAsSLL();
-    					}
-    				break;
-    			case "CHANY":        				
-
-    				assert capacity == 1;
-    				segID = Integer.parseInt(words[11]);
-    				chanType = type + "_" + this.segmentList.get(segID);
-    				data = this.indexedDataList.get(chanType);
-    				routeNode = new Chany(index, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, data, direction, numChildren);
-    				if(yhigh - ylow == (this.sllRows - 1)) {
-    					routeNode.setAsSLL();
-    					}
-    				break;
-    			default:
-    				System.out.println("Unknown type: " + type);
-    				break;
-    		}
-        			
-        		this.addRouteNode(routeNode);       						
+        		int segID = type.startsWith("CHAN") ? Integer.parseInt(words[11]) : 0;
+        		int numChildren = Integer.parseInt(words[12]);
+        		
+        		this.addRouteNode(index, type, direction, capacity, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, segID, numChildren);
+        		if(cacheWriter != null) {
+        			cacheWriter.writeNode(index, type, direction, capacity, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, segID, numChildren);
+        		}
 			}
 		}
 
         reader.close();
         System.out.print("\n RR nodes: " + this.routeNodes.size());
 	}
+	
+	void addRouteNode(int index, String type, String direction, int capacity, int xlow, int xhigh, int ylow, int yhigh, int ptc, float Reg, float Cap, int segID, int numChildren) {
+		RouteNode routeNode = null;
+		BlockTypeRRG blockNode = null;
+		String currentBlockTypeName = null;
+		IndexedData data = null;
+		String fullName = null;
+		String name = null;
+		String names[] = null;
+		String chanType;
+		
+		this.indexStart = Math.max(this.indexStart, index);
+		
+		switch (type) {
+			case "SOURCE":
+				assert Reg == 0;
+				assert Cap == 0;
+				data = this.indexedDataList.get(type);
+				routeNode = new Source(index, xlow, xhigh, ylow, yhigh, ptc, capacity, data, numChildren);
+
+				break;
+			case "SINK":
+				assert Reg == 0;
+				assert Cap == 0;
+				data = this.indexedDataList.get(type);
+				routeNode = new Sink(index, xlow, xhigh, ylow, yhigh, ptc, capacity, data, numChildren);
+
+				break;
+			case "IPIN":
+				//Assertions
+				assert capacity == 1;
+				assert Reg == 0;
+				assert Cap == 0;
+				currentBlockTypeName = this.getBlocktypeAtSite(xlow, ylow);
+
+				blockNode = this.blockTypeNodes.get(currentBlockTypeName);
+
+				fullName = blockNode.getPinClassNameByPinId(ptc); // currentBlockTypeName);
+
+				names = fullName.split("\\.");
+				names = names[1].split("\\[");
+				name = names[0];
+				if(this.currentPort == null){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}else if(!this.currentPort.equals(name)){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}
+				data = this.indexedDataList.get(type);
+				routeNode = new Ipin(index, xlow, xhigh, ylow, yhigh, ptc, this.currentPort, this.portIndex, data, direction, numChildren);
+
+				this.portIndex += 1;
+
+				break;
+			case "OPIN":
+				//Assertions
+				assert capacity == 1;
+				assert Reg == 0;
+				assert Cap == 0;
+
+				currentBlockTypeName = this.getBlocktypeAtSite(xlow, ylow);
+				blockNode = this.blockTypeNodes.get(currentBlockTypeName);
+				fullName = blockNode.getPinClassNameByPinId(ptc); //, currentBlockTypeName);
+
+
+				names = fullName.split("\\.");
+				names = names[1].split("\\[");
+				name = names[0];
+
+				if(this.currentPort == null){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}else if(!this.currentPort.equals(name)){
+					this.currentPort = name;
+					this.portIndex = 0;
+				}
+				data = this.indexedDataList.get(type);
+				routeNode = new Opin(index, xlow, xhigh, ylow, yhigh, ptc, this.currentPort, this.portIndex, data, direction, numChildren);
+
+				this.portIndex += 1;
+
+				break;
+			case "CHANX":
+				assert capacity == 1;
+				chanType = type + "_" + this.segmentList.get(segID);
+				data = this.indexedDataList.get(chanType);
+				routeNode = new Chanx(index, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, data, direction, numChildren);
+				if(xhigh - xlow == (this.sllRows - 1)) {
+					routeNode.setAsSLL();
+				}
+				break;
+			case "CHANY":
+
+				assert capacity == 1;
+				chanType = type + "_" + this.segmentList.get(segID);
+				data = this.indexedDataList.get(chanType);
+				routeNode = new Chany(index, xlow, xhigh, ylow, yhigh, ptc, Reg, Cap, data, direction, numChildren);
+				if(yhigh - ylow == (this.sllRows - 1)) {
+					routeNode.setAsSLL();
+				}
+				break;
+			default:
+				System.out.println("Unknown type: " + type);
+				break;
+		}
+
+		this.addRouteNode(routeNode);
+	}
    
 
-    private void processRRGEdges() throws IOException {
+    private void processRRGEdges(RRGCache.Writer cacheWriter) throws IOException {
     	System.out.print("\n Processing the RRGEdges");
 		String rrgIndexFileName = this.RRGFile.getAbsolutePath();
 		String fileName = "rrEdge_info_" + this.sllRows + "L.echo";
@@ -591,20 +640,12 @@ public class ResourceGraph {
         		int sourceNode = Integer.parseInt(words[1]);
         		int switchID = Integer.parseInt(words[2]);
         		
-        		RouteNode parent = this.routeNodeIndex.get(sourceNode);
-        		RouteNode child = this.routeNodeIndex.get(sinkNode);
-
-        		if (!shouldEliminateConnection(parent, child, this.dieBoundary)) {
-                    int index = parent.currentIndex;
-
-                    parent.setChild(index, child);
-                    counter++;
-                    RouteSwitch routeSwitch = this.switchTypesList.get(switchID);
-                    parent.setSwitchType(index, routeSwitch);
-
+        		if(this.addEdge(sinkNode, sourceNode, switchID)) {
+        			counter++;
+        		}
+        		if(cacheWriter != null) {
+        			cacheWriter.writeEdge(sinkNode, sourceNode, switchID);
         		}
-
-
 			}
 		}
 		
@@ -612,6 +653,22 @@ public class ResourceGraph {
         System.out.print("\n RR Edges: " + counter);
     }
     
+    boolean addEdge(int sinkNode, int sourceNode, int switchID) {
+		RouteNode parent = this.routeNodeIndex.get(sourceNode);
+		RouteNode child = this.routeNodeIndex.get(sinkNode);
+
+		if (!shouldEliminateConnection(parent, child, this.dieBoundary)) {
+            int index = parent.currentIndex;
+
+            parent.setChild(index, child);
+            RouteSwitch routeSwitch = this.switchTypesList.get(switchID);
+            parent.setSwitchType(index, routeSwitch);
+            
+            return true;
+		}
+		return false;
+    }
+    
 
     private boolean shouldEliminateConnection(RouteNode parent, RouteNode child, int dieBoundary) {
         if (parent == null || child == null) {
@@ -807,6 +864,18 @@ public class ResourceGraph {
 	public List<RouteNode> getRouteNodes() {
 		return this.routeNodes;
 	}
+	public RouteGraph getRouteGraph() {
+		return this.routeGraph;
+	}
+	public int getDieBoundary() {
+		return this.dieBoundary;
+	}
+	public int getWidth() {
+		return this.width;
+	}
+	public int getHeight() {
+		return this.height;
+	}
 	public int numRouteNodes() {
 		return this.routeNodes.size();
 	}
@@ -886,8 +955,8 @@ public class ResourceGraph {
 	
 		for(RouteNode node : this.getRouteNodes()) {
 			if(node.used()) {
-				for (RouteNode child : node.children) {
-					System.out.println("\t" + child);
+				for(int edge = this.routeGraph.edgeStart[node.index]; edge < this.routeGraph.edgeStart[node.index + 1]; edge++) {
+					System.out.println("\t" + this.routeGraph.routeNodes[this.routeGraph.edgeTarget[edge]]);
 				}
 				System.out.println();
 			}
@@ -0,0 +1,115 @@
+package route.circuit.resource;
+
+import java.util.List;
+
+import route.route.RouteNodeData;
+
+/**
+ * Index based view of the routing resource graph that is used by the
+ * router. The edges are stored in compressed sparse row format, the
+ * children of node i are edgeTarget[edgeStart[i]] to
+ * edgeTarget[edgeStart[i + 1] - 1]. The properties of the nodes that
+ * are read during the search are stored in primitive arrays, indexed by
+ * the index of the route node.
+ *
+ * The graph is built once the ResourceGraph is complete. The RouteNode
+ * objects are kept for the routing trees and the reporting, but their
+ * child and switch arrays are released, the edges are only stored here.
+ */
+public class RouteGraph {
+	public final int numNodes, numEdges;
+	
+	public final int[] edgeStart;
+	public final int[] edgeTarget;
+	
+	public final short[] xlow, xhigh, ylow, yhigh;
+	public final float[] centerx, centery;
+	public final float[] baseCost;
+	public final float[] delay;
+	public final short[] capacity;
+	public final byte[] type;
+	
+	public final RouteNode[] routeNodes;
+	public final RouteNodeData[] routeNodeData;
+	
+	public static final byte SINK = (byte) RouteNodeType.SINK.ordinal();
+	public static final byte SOURCE = (byte) RouteNodeType.SOURCE.ordinal();
+	public static final byte IPIN = (byte) RouteNodeType.IPIN.ordinal();
+	public static final byte OPIN = (byte) RouteNodeType.OPIN.ordinal();
+	public static final byte CHANX = (byte) RouteNodeType.CHANX.ordinal();
+	public static final byte CHANY = (byte) RouteNodeType.CHANY.ordinal();
+	
+	RouteGraph(List<RouteNode> nodes) {
+		this.numNodes = nodes.size();
+		
+		//The children that were eliminated while reading the edges are null
+		int numEdges = 0;
+		for(RouteNode node : nodes) {
+			for(RouteNode child : node.children) {
+				if(child != null) numEdges++;
+			}
+		}
+		this.numEdges = numEdges;
+		
+		this.edgeStart = new int[this.numNodes + 1];
+		this.edgeTarget = new int[this.numEdges];
+		
+		this.xlow = new short[this.numNodes];
+		this.xhigh = new short[this.numNodes];
+		this.ylow = new short[this.numNodes];
+		this.yhigh = new short[this.numNodes];
+		this.centerx = new float[this.numNodes];
+		this.centery = new float[this.numNodes];
+		this.baseCost = new float[this.numNodes];
+		this.delay = new float[this.numNodes];
+		this.capacity = new short[this.numNodes];
+		this.type = new byte[this.numNodes];
+		
+		this.routeNodes = new RouteNode[this.numNodes];
+		this.routeNodeData = new RouteNodeData[this.numNodes];
+		
+		int edge = 0;
+		for(int i = 0; i < this.numNodes; i++) {
+			RouteNode node = nodes.get(i);
+			if(node.index != i) {
+				throw new RuntimeException("Route node " + node.index + " is stored at position " + i);
+			}
+			
+			this.edgeStart[i] = edge;
+			for(RouteNode child : node.children) {
+				if(child != null) {
+					this.edgeTarget[edge] = child.index;
+					edge++;
+				}
+			}
+			
+			this.xlow[i] = node.xlow;
+			this.xhigh[i] = node.xhigh;
+			this.ylow[i] = node.ylow;
+			this.yhigh[i] = node.yhigh;
+			this.centerx[i] = node.centerx;
+			this.centery[i] = node.centery;
+			this.baseCost[i] = node.base_cost;
+			this.delay[i] = node.getDelay();
+			this.capacity[i] = node.capacity;
+			this.type[i] = (byte) node.type.ordinal();
+			
+			this.routeNodes[i] = node;
+			this.routeNodeData[i] = node.routeNodeData;
+		}
+		this.edgeStart[this.numNodes] = edge;
+		
+		//The delays are set, the children are only needed as edges from now on
+		for(RouteNode node : nodes) {
+			node.releaseChildren();
+		}
+	}
+	
+	public boolean isWire(int node) {
+		return this.type[node] == CHANX || this.type[node] == CHANY;
+	}
+	
+	public int wireLength(int node) {
+		return this.xhigh[node] - this.xlow[node] + this.yhigh[node] - this.ylow[node] + 1;
+	}
+}
@@ -174,6 +174,12 @@ public abstract class RouteNode implements Comparable<RouteNode> {
 	
 
 	
+	//The edges are stored in the RouteGraph once it is built
+	public void releaseChildren() {
+		this.children = null;
+		this.switches = null;
+	}
+	
 	public RouteNode[] getChildren() {
 		return this.children;
 	}
@@ -0,0 +1,278 @@
+package route.circuit.timing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import route.circuit.timing.TimingNode.Position;
+import route.route.Connection;
+
+/**
+ * Updates the arrival and required times of every clock domain pair that
+ * were calculated by the last levelized timing analysis, after a few
+ * connections changed their wire delay. The times are shared with the
+ * timing graph.
+ *
+ * The set of nodes that have an arrival or required time in a clock
+ * domain pair only depends on the clock domains of the nodes, not on
+ * the delays. An update only recalculates the nodes in the fan-out cone
+ * (arrival time) and the fan-in cone (required time) of the changed
+ * edges, in order of the topological level of the nodes.
+ */
+class IncrementalTiming {
+	private final Map<Integer, List<TimingNode>> leafNodes;
+	private final int[] level;
+	private final List<List<TimingNode>> levelQueue;
+	private final boolean[] queued;
+	
+	//Clock domain pairs that are included in the timing analysis
+	private final int[] pairSource, pairSink;
+	
+	private final float[][] arrival, required;
+	private final float[] maxDelay;
+	
+	private final List<Connection> connections;
+	private final Map<TimingEdge, Connection> edgeToConnection;
+	
+	private final List<TimingEdge> changedEdges;
+	private final List<TimingNode> changedNodes;
+	private final boolean[] nodeChanged;
+	
+	private boolean valid;
+	private float maxCriticality, criticalityExponent;
+	
+	IncrementalTiming(List<TimingNode> nodes, Map<Integer, List<TimingNode>> leafNodes, int[] level, int numLevels, int[] pairSource, int[] pairSink, float[][] arrival, float[][] required, float[] maxDelay, List<Connection> connections) {
+		this.leafNodes = leafNodes;
+		this.level = level;
+		
+		this.levelQueue = new ArrayList<>();
+		for(int i = 0; i < numLevels; i++) {
+			this.levelQueue.add(new ArrayList<TimingNode>());
+		}
+		this.queued = new boolean[nodes.size()];
+		
+		this.pairSource = pairSource;
+		this.pairSink = pairSink;
+		
+		this.arrival = arrival;
+		this.required = required;
+		this.maxDelay = maxDelay;
+		
+		this.connections = connections;
+		this.edgeToConnection = new HashMap<>();
+		for(Connection connection : connections) {
+			this.edgeToConnection.put(connection.getSinkNode().getSourceEdge(0), connection);
+		}
+		
+		this.changedEdges = new ArrayList<>();
+		this.changedNodes = new ArrayList<>();
+		this.nodeChanged = new boolean[nodes.size()];
+		
+		this.valid = false;
+	}
+	
+	/*************************************************
+	 * Results of a full timing analysis             *
+	 *************************************************/
+	void finishFullAnalysis(float maxCriticality, float criticalityExponent) {
+		this.maxCriticality = maxCriticality;
+		this.criticalityExponent = criticalityExponent;
+		
+		this.changedEdges.clear();
+		this.valid = true;
+	}
+	
+	void invalidate() {
+		this.valid = false;
+	}
+	boolean canUpdate(float maxCriticality, float criticalityExponent) {
+		return this.valid && this.maxCriticality == maxCriticality && this.criticalityExponent == criticalityExponent;
+	}
+	
+	void edgeChanged(TimingEdge edge) {
+		this.changedEdges.add(edge);
+	}
+	
+	/*************************************************
+	 * Incremental update                            *
+	 *************************************************/
+	void update(float[][] maxDelayPerDomain) {
+		boolean maxDelayChanged = false;
+		
+		for(int pair = 0; pair < this.pairSource.length; pair++) {
+			int sourceClockDomain = this.pairSource[pair];
+			int sinkClockDomain = this.pairSink[pair];
+			
+			this.updateArrivalTime(pair, sourceClockDomain);
+			
+			float newMaxDelay = 0;
+			for(TimingNode leafNode : this.leafNodes.get(sinkClockDomain)) {
+				newMaxDelay = Math.max(this.arrival[pair][leafNode.id] - leafNode.clockDelay, newMaxDelay);
+			}
+			
+			if(newMaxDelay != this.maxDelay[pair]) {
+				//All required times depend on the max delay of the clock domain pair
+				float delta = newMaxDelay - this.maxDelay[pair];
+				float[] pairRequired = this.required[pair];
+				for(int i = 0; i < pairRequired.length; i++) {
+					pairRequired[i] += delta;
+				}
+				this.maxDelay[pair] = newMaxDelay;
+				maxDelayChanged = true;
+			}
+			maxDelayPerDomain[sourceClockDomain][sinkClockDomain] = newMaxDelay;
+			
+			this.updateRequiredTime(pair, sinkClockDomain);
+		}
+		
+		//Criticality
+		if(maxDelayChanged) {
+			for(Connection connection : this.connections) {
+				this.calculateCriticality(connection);
+			}
+		} else {
+			for(TimingEdge edge : this.changedEdges) {
+				this.calculateCriticality(this.edgeToConnection.get(edge));
+			}
+			for(TimingNode node : this.changedNodes) {
+				for(TimingEdge edge : node.getSinkEdges()) {
+					Connection connection = this.edgeToConnection.get(edge);
+					if(connection != null) this.calculateCriticality(connection);
+				}
+				for(TimingEdge edge : node.getSourceEdges()) {
+					Connection connection = this.edgeToConnection.get(edge);
+					if(connection != null) this.calculateCriticality(connection);
+				}
+			}
+		}
+		
+		for(TimingNode node : this.changedNodes) {
+			this.nodeChanged[node.id] = false;
+		}
+		this.changedNodes.clear();
+		this.changedEdges.clear();
+	}
+	
+	private void updateArrivalTime(int pair, int sourceClockDomain) {
+		float[] pairArrival = this.arrival[pair];
+		
+		for(TimingEdge edge : this.changedEdges) {
+			TimingNode sink = edge.getSink();
+			if(!Float.isNaN(pairArrival[sink.id]) && edge.getSource().hasClockDomainAsSource(sourceClockDomain)) {
+				this.enqueue(sink);
+			}
+		}
+		
+		for(int currentLevel = 0; currentLevel < this.levelQueue.size(); currentLevel++) {
+			List<TimingNode> queue = this.levelQueue.get(currentLevel);
+			for(int q = 0; q < queue.size(); q++) {
+				TimingNode node = queue.get(q);
+				this.queued[node.id] = false;
+				
+				float arrivalTime = 0;
+				if(!(node.getPosition() == Position.ROOT && node.getClockDomain() == sourceClockDomain)) {
+					for(TimingEdge edge : node.getSourceEdges()) {
+						if(edge.getSource().hasClockDomainAsSource(sourceClockDomain)) {
+							float localArrivalTime = pairArrival[edge.getSource().id] + edge.getTotalDelay();
+							if(localArrivalTime > arrivalTime) {
+								arrivalTime = localArrivalTime;
+							}
+						}
+					}
+				}
+				
+				if(arrivalTime != pairArrival[node.id]) {
+					pairArrival[node.id] = arrivalTime;
+					this.markChanged(node);
+					
+					if(node.hasClockDomainAsSource(sourceClockDomain)) {
+						for(TimingEdge edge : node.getSinkEdges()) {
+							if(!Float.isNaN(pairArrival[edge.getSink().id])) {
+								this.enqueue(edge.getSink());
+							}
+						}
+					}
+				}
+			}
+			queue.clear();
+		}
+	}
+	
+	private void updateRequiredTime(int pair, int sinkClockDomain) {
+		float[] pairRequired = this.required[pair];
+		
+		for(TimingEdge edge : this.changedEdges) {
+			TimingNode source = edge.getSource();
+			if(!Float.isNaN(pairRequired[source.id]) && edge.getSink().hasClockDomainAsSink(sinkClockDomain)) {
+				this.enqueue(source);
+			}
+		}
+		
+		for(int currentLevel = this.levelQueue.size() - 1; currentLevel >= 0; currentLevel--) {
+			List<TimingNode> queue = this.levelQueue.get(currentLevel);
+			for(int q = 0; q < queue.size(); q++) {
+				TimingNode node = queue.get(q);
+				this.queued[node.id] = false;
+				
+				float requiredTime;
+				if(node.getPosition() == Position.LEAF && node.getClockDomain() == sinkClockDomain) {
+					requiredTime = this.maxDelay[pair] + node.clockDelay;
+				} else {
+					requiredTime = Integer.MAX_VALUE;
+					for(TimingEdge edge : node.getSinkEdges()) {
+						if(edge.getSink().hasClockDomainAsSink(sinkClockDomain)) {
+							float localRequiredTime = pairRequired[edge.getSink().id] - edge.getTotalDelay();
+							if(localRequiredTime < requiredTime) {
+								requiredTime = localRequiredTime;
+							}
+						}
+					}
+				}
+				
+				if(requiredTime != pairRequired[node.id]) {
+					pairRequired[node.id] = requiredTime;
+					this.markChanged(node);
+					
+					if(node.hasClockDomainAsSink(sinkClockDomain)) {
+						for(TimingEdge edge : node.getSourceEdges()) {
+							if(!Float.isNaN(pairRequired[edge.getSource().id])) {
+								this.enqueue(edge.getSource());
+							}
+						}
+					}
+				}
+			}
+			queue.clear();
+		}
+	}
+	
+	private void calculateCriticality(Connection connection) {
+		TimingEdge edge = connection.getSinkNode().getSourceEdge(0);
+		int source = edge.getSource().id;
+		int sink = edge.getSink().id;
+		
+		edge.resetCriticality();
+		for(int pair = 0; pair < this.pairSource.length; pair++) {
+			float arrivalTime = this.arrival[pair][source];
+			float requiredTime = this.required[pair][sink];
+			if(!Float.isNaN(arrivalTime) && !Float.isNaN(requiredTime)) {
+				edge.calculateCriticality(arrivalTime, requiredTime, this.maxDelay[pair], this.maxCriticality, this.criticalityExponent);
+			}
+		}
+		connection.updateCriticality();
+	}
+	
+	private void enqueue(TimingNode node) {
+		if(!this.queued[node.id]) {
+			this.queued[node.id] = true;
+			this.levelQueue.get(this.level[node.id]).add(node);
+		}
+	}
+	private void markChanged(TimingNode node) {
+		if(!this.nodeChanged[node.id]) {
+			this.nodeChanged[node.id] = true;
+			this.changedNodes.add(node);
+		}
+	}
+}
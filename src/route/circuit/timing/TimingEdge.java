@@ -49,6 +49,10 @@ public class TimingEdge {
         this.wireDelay = wireDelay;
     }
 
+    public float getWireDelay(){
+        return this.wireDelay;
+    }
+
     public float getTotalDelay(){
         return this.fixedDelay + this.wireDelay;
     }
@@ -67,21 +71,24 @@ public class TimingEdge {
     
     public void calculateCriticality(float maxDelay, float maxCriticality, float criticalityExponent) {
     	if(this.source.hasArrivalTime() && this.sink.hasRequiredTime()) {
-        	this.slack = this.sink.getRequiredTime() - this.source.getArrivalTime() - this.getTotalDelay();
-        	
-        	//Fix rounding errors
-        	this.slack = Math.max(this.slack, 0);
-        	this.slack = Math.min(this.slack, maxDelay);
-        	
-        	float tempCriticality  = (1 - this.slack / maxDelay);
-        	tempCriticality = (float) (Math.pow(tempCriticality, criticalityExponent) * maxCriticality);
-        	
-        	//Fix rounding errors
-        	tempCriticality = Math.min(tempCriticality, maxCriticality);
-        	
-        	if(tempCriticality > this.criticality) this.criticality = tempCriticality;
+    		this.calculateCriticality(this.source.getArrivalTime(), this.sink.getRequiredTime(), maxDelay, maxCriticality, criticalityExponent);
     	}
     }
+    void calculateCriticality(float sourceArrivalTime, float sinkRequiredTime, float maxDelay, float maxCriticality, float criticalityExponent) {
+    	this.slack = sinkRequiredTime - sourceArrivalTime - this.getTotalDelay();
+    	
+    	//Fix rounding errors
+    	this.slack = Math.max(this.slack, 0);
+    	this.slack = Math.min(this.slack, maxDelay);
+    	
+    	float tempCriticality  = (1 - this.slack / maxDelay);
+    	tempCriticality = (float) (Math.pow(tempCriticality, criticalityExponent) * maxCriticality);
+    	
+    	//Fix rounding errors
+    	tempCriticality = Math.min(tempCriticality, maxCriticality);
+    	
+    	if(tempCriticality > this.criticality) this.criticality = tempCriticality;
+    }
 
     @Override
     public String toString() {
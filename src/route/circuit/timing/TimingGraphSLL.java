@@ -1,16 +1,22 @@
 package route.circuit.timing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import route.circuit.Circuit;
 import route.circuit.architecture.BlockCategory;
 import route.circuit.architecture.BlockType;
+import route.circuit.architecture.DelayTables;
 import route.circuit.architecture.PortType;
 import route.circuit.block.AbstractBlock;
 import route.circuit.block.GlobalBlock;
@@ -30,6 +36,7 @@ public class TimingGraphSLL {
     private static String VIRTUAL_IO_CLOCK = "virtual-io-clock";
 
     private Circuit[] circuitdie;
+    private DelayTables delayTables;
     private TimingGraph[] timingGraphDie;
     private HashMap<String, SllNetData> sllNetInfo;
     // A map of clock domains, along with their unique id
@@ -66,9 +73,27 @@ public class TimingGraphSLL {
     private List<AbstractPin> allSLLPins = new ArrayList<>();
     
     private List<SCC> scc;
+    
+    //Levelized timing graph, the nodes of level l are levelNodes[levelStart[l]] to levelNodes[levelStart[l + 1] - 1]
+    private TimingNode[] levelNodes;
+    private int[] levelStart;
+    private int[] nodeLevel;
+    
+    //Arrival and required times per included clock domain pair, NaN if the node has no time in the pair
+    private static final float NO_TIME = Float.NaN;
+    private int[] pairSource, pairSink;
+    private float[] pairMaxDelay;
+    private float[][] arrivalTimes, requiredTimes;
+    
+    private static final int MIN_PARALLEL_LEVEL_WIDTH = 4096;
+    private int numTimingThreads = 1;
+    private ExecutorService timingExecutor;
+    
+    private IncrementalTiming incrementalTiming;
 
     public TimingGraphSLL(Circuit[] circuit, HashMap<String, SllNetData> sllInfo, List<Connection> sllConns, int totDie) {
         this.circuitdie = circuit;
+        this.delayTables = circuit[0].getArchitecture().getDelayTables();
         this.totaldie = totDie;
         this.sllNetInfo = sllInfo;
         this.sllConnections = sllConns;
@@ -77,6 +102,7 @@ public class TimingGraphSLL {
     }    
     public TimingGraphSLL(Circuit[] circuit, HashMap<String, SllNetData> sllInfo, int totDie) {
         this.circuitdie = circuit;
+        this.delayTables = circuit[0].getArchitecture().getDelayTables();
         this.totaldie = totDie;
         this.sllNetInfo = sllInfo;
         
@@ -104,6 +130,28 @@ public class TimingGraphSLL {
         }
         
     }
+    /**
+     * A timing graph of blocks that are not read from a netlist, e.g. the
+     * synthetic circuits of the router benchmarks. The connections are
+     * added with addSLLConnections after the graph is built.
+     */
+    public TimingGraphSLL(List<GlobalBlock> globalBlocks, Map<BlockType, List<AbstractBlock>> leafBlocks, DelayTables delayTables) {
+        this.circuitdie = new Circuit[0];
+        this.delayTables = delayTables;
+        this.totaldie = 0;
+        this.sllNetInfo = new HashMap<>();
+        
+        this.clockNamesToDomains.put(VIRTUAL_IO_CLOCK, this.virtualIoClockDomain);
+        this.clockDomainFanout.put(this.numClockDomains, 0);
+        this.numClockDomains++;
+        this.clockDomainsSet = false;
+        
+        for(BlockType leafBlockType : BlockType.getLeafBlockTypes()) {
+        	List<AbstractBlock> blocks = leafBlocks.get(leafBlockType);
+        	this.allBlocks.put(leafBlockType, blocks == null ? new ArrayList<>() : new ArrayList<>(blocks));
+        }
+        this.globalBlockList.addAll(globalBlocks);
+    }
 
     /******************************************
      * These functions build the timing graph *
@@ -165,6 +213,8 @@ public class TimingGraphSLL {
         
         this.setClockDomains();
         
+        this.levelize();
+        
         System.out.println("Timing Graph:");
         
         System.out.println("  Total Num clock domains " + this.numClockDomains);
@@ -372,7 +422,7 @@ public class TimingGraphSLL {
                 // so isn't used in the timing graph
                 if(pathSinkNode != null && !disableEdge) {
                 	GlobalBlock pathSinkBlock = pathSinkNode.getGlobalBlock();
-                    TimingEdge edge = pathSourceNode.addSink(pathSinkNode, delay, this.circuitdie[0].getArchitecture().getDelayTables());
+                    TimingEdge edge = pathSourceNode.addSink(pathSinkNode, delay, this.delayTables);
                     this.timingEdges.add(edge);
                     
                     if(pathSinkBlock != pathSourceBlock) {
@@ -670,6 +720,9 @@ public class TimingGraphSLL {
 
  
     public void calculatePlacementEstimatedWireDelay() {
+    	if(this.incrementalTiming != null) {
+    		this.incrementalTiming.invalidate();
+    	}
     	for(TimingEdge edge : this.timingEdges) {
     		edge.calculatePlacementEstimatedWireDelay();
     	}
@@ -677,6 +730,9 @@ public class TimingGraphSLL {
     
     
     public void calculateRegionalWireDelay(List<Connection> conn) {
+    	if(this.incrementalTiming != null) {
+    		this.incrementalTiming.invalidate();
+    	}
     	for(Connection connection : conn) {
     		float wireDelay = 0;
     		for(RouteNode routeNode : connection.routeNodes) {
@@ -693,6 +749,12 @@ public class TimingGraphSLL {
     		for(RouteNode routeNode : connection.routeNodes) {
     			wireDelay += routeNode.getDelay();
     		}
+    		if(this.incrementalTiming != null) {
+    			TimingEdge edge = connection.getSinkNode().getSourceEdge(0);
+    			if(edge.getWireDelay() != wireDelay) {
+    				this.incrementalTiming.edgeChanged(edge);
+    			}
+    		}
     		connection.setWireDelay(wireDelay);
     	}
     }
@@ -763,6 +825,22 @@ public class TimingGraphSLL {
 
     
     public void calculateArrivalRequiredAndCriticality(float maxCriticality, float criticalityExponent) {
+    	if(this.levelNodes == null) {
+    		this.calculateArrivalRequiredAndCriticalityRecursive(maxCriticality, criticalityExponent);
+    	} else {
+    		this.calculateArrivalRequiredAndCriticalityLevelized(maxCriticality, criticalityExponent);
+    	}
+    	
+        if(this.incrementalTiming != null) {
+        	this.incrementalTiming.finishFullAnalysis(maxCriticality, criticalityExponent);
+        }
+    }
+    
+    /**
+     * Used when the timing graph could not be levelized, every clock
+     * domain pair is analysed separately with a recursive traversal.
+     */
+    private void calculateArrivalRequiredAndCriticalityRecursive(float maxCriticality, float criticalityExponent) {
     	//Initialization
         this.globalMaxDelay = 0;
         
@@ -812,6 +890,345 @@ public class TimingGraphSLL {
         	}
         }
     }
+    
+    /**
+     * Update the arrival and required times and the criticality of the
+     * connections after calculateActualWireDelay. Only the cones of the
+     * connections with a new wire delay are recalculated. Falls back to
+     * the full analysis if incremental timing is not enabled or if there
+     * is no full analysis with the same criticality parameters.
+     */
+    public void updateArrivalRequiredAndCriticality(float maxCriticality, float criticalityExponent) {
+    	if(this.incrementalTiming == null || !this.incrementalTiming.canUpdate(maxCriticality, criticalityExponent)) {
+    		this.calculateArrivalRequiredAndCriticality(maxCriticality, criticalityExponent);
+    		return;
+    	}
+    	
+    	this.incrementalTiming.update(this.maxDelay);
+    	
+    	this.globalMaxDelay = 0;
+    	for(int sourceClockDomain = 0; sourceClockDomain < this.numClockDomains; sourceClockDomain++) {
+    		for(int sinkClockDomain = 0; sinkClockDomain < this.numClockDomains; sinkClockDomain++) {
+    			if(this.includeClockDomain(sourceClockDomain, sinkClockDomain)) {
+    				this.globalMaxDelay = Math.max(this.globalMaxDelay, this.maxDelay[sourceClockDomain][sinkClockDomain]);
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Keep the arrival and required times of each clock domain pair, so
+     * updateArrivalRequiredAndCriticality can work incrementally. This
+     * needs a levelized timing graph.
+     */
+    public void enableIncrementalTiming() {
+    	if(this.levelNodes == null) {
+    		System.out.println("The timing graph is not levelized, incremental timing is disabled");
+    		return;
+    	}
+    	
+    	this.incrementalTiming = new IncrementalTiming(this.timingNodes, this.leafNodes, this.nodeLevel, this.levelStart.length - 1, this.pairSource, this.pairSink, this.arrivalTimes, this.requiredTimes, this.pairMaxDelay, this.allConnections);
+    }
+    
+    /**
+     * Split the wide levels of the levelized timing analysis over a
+     * number of threads. The threads are started by the first wide level.
+     */
+    public void setTimingThreads(int numThreads) {
+    	this.shutdownTimingExecutor();
+    	this.numTimingThreads = Math.max(1, numThreads);
+    }
+    public void shutdownTimingExecutor() {
+    	if(this.timingExecutor != null) {
+    		this.timingExecutor.shutdown();
+    		this.timingExecutor = null;
+    	}
+    }
+    
+    /*****************************************************
+     * Levelized timing analysis: the nodes are sorted   *
+     * in topological order once, all clock domain pairs *
+     * are handled in one forward and one backward sweep *
+     *****************************************************/
+    private void levelize() {
+    	for(int i = 0; i < this.timingNodes.size(); i++) {
+    		this.timingNodes.get(i).id = i;
+    	}
+    	for(TimingNode node : this.timingNodes) {
+    		for(TimingEdge edge : node.getSinkEdges()) {
+    			if(edge.getSink().id < 0) {
+    				System.out.println("Timing node " + edge.getSink() + " is not in the timing graph, the timing graph is not levelized");
+    				return;
+    			}
+    		}
+    	}
+    	
+    	//Topological level of each node, the longest number of edges from a node without sources
+    	int numNodes = this.timingNodes.size();
+    	int[] level = new int[numNodes];
+    	int[] numSourcesLeft = new int[numNodes];
+    	TimingNode[] order = new TimingNode[numNodes];
+    	int numOrdered = 0;
+    	for(TimingNode node : this.timingNodes) {
+    		numSourcesLeft[node.id] = node.getNumSources();
+    		if(numSourcesLeft[node.id] == 0) {
+    			order[numOrdered++] = node;
+    		}
+    	}
+    	int maxLevel = 0;
+    	for(int i = 0; i < numOrdered; i++) {
+    		TimingNode node = order[i];
+    		for(TimingEdge edge : node.getSinkEdges()) {
+    			TimingNode sink = edge.getSink();
+    			level[sink.id] = Math.max(level[sink.id], level[node.id] + 1);
+    			maxLevel = Math.max(maxLevel, level[sink.id]);
+    			if(--numSourcesLeft[sink.id] == 0) {
+    				order[numOrdered++] = sink;
+    			}
+    		}
+    	}
+    	if(numOrdered != numNodes) {
+    		System.out.println("The timing graph has a combinational loop, the timing graph is not levelized");
+    		return;
+    	}
+    	
+    	//Counting sort on level
+    	this.levelStart = new int[maxLevel + 2];
+    	for(int i = 0; i < numNodes; i++) {
+    		this.levelStart[level[i] + 1]++;
+    	}
+    	for(int l = 0; l <= maxLevel; l++) {
+    		this.levelStart[l + 1] += this.levelStart[l];
+    	}
+    	this.levelNodes = new TimingNode[numNodes];
+    	int[] position = this.levelStart.clone();
+    	for(TimingNode node : this.timingNodes) {
+    		this.levelNodes[position[level[node.id]]++] = node;
+    	}
+    	this.nodeLevel = level;
+    	
+    	//Clock domain pairs
+    	int numPairs = 0;
+    	for(int source = 0; source < this.numClockDomains; source++) {
+    		for(int sink = 0; sink < this.numClockDomains; sink++) {
+    			if(this.includeClockDomain(source, sink)) numPairs++;
+    		}
+    	}
+    	this.pairSource = new int[numPairs];
+    	this.pairSink = new int[numPairs];
+    	numPairs = 0;
+    	for(int source = 0; source < this.numClockDomains; source++) {
+    		for(int sink = 0; sink < this.numClockDomains; sink++) {
+    			if(this.includeClockDomain(source, sink)) {
+    				this.pairSource[numPairs] = source;
+    				this.pairSink[numPairs] = sink;
+    				numPairs++;
+    			}
+    		}
+    	}
+    	this.pairMaxDelay = new float[numPairs];
+    	
+    	//The nodes that get a time only depend on the clock domains. Their times start at 0,
+    	//the times of all other nodes are NaN and never change.
+    	this.arrivalTimes = new float[numPairs][numNodes];
+    	this.requiredTimes = new float[numPairs][numNodes];
+    	for(int pair = 0; pair < numPairs; pair++) {
+    		int sourceClockDomain = this.pairSource[pair];
+    		int sinkClockDomain = this.pairSink[pair];
+    		float[] arrival = this.arrivalTimes[pair];
+    		float[] required = this.requiredTimes[pair];
+    		Arrays.fill(arrival, NO_TIME);
+    		Arrays.fill(required, NO_TIME);
+    		
+    		//Arrival time: the fan-in cone of the leaf nodes, the root nodes have a fixed arrival time
+    		for(TimingNode rootNode : this.rootNodes.get(sourceClockDomain)) {
+    			arrival[rootNode.id] = 0;
+    		}
+    		for(TimingNode leafNode : this.leafNodes.get(sinkClockDomain)) {
+    			arrival[leafNode.id] = 0;
+    		}
+    		for(int i = numNodes - 1; i >= 0; i--) {
+    			TimingNode node = this.levelNodes[i];
+    			if(!Float.isNaN(arrival[node.id]) && !this.isRoot(node, sourceClockDomain)) {
+    				for(TimingEdge edge : node.getSourceEdges()) {
+    					if(edge.getSource().hasClockDomainAsSource(sourceClockDomain)) {
+    						arrival[edge.getSource().id] = 0;
+    					}
+    				}
+    			}
+    		}
+    		
+    		//Required time: the fan-out cone of the root nodes, the leaf nodes have a fixed required time
+    		for(TimingNode leafNode : this.leafNodes.get(sinkClockDomain)) {
+    			required[leafNode.id] = 0;
+    		}
+    		for(TimingNode rootNode : this.rootNodes.get(sourceClockDomain)) {
+    			required[rootNode.id] = 0;
+    		}
+    		for(int i = 0; i < numNodes; i++) {
+    			TimingNode node = this.levelNodes[i];
+    			if(!Float.isNaN(required[node.id]) && !this.isLeaf(node, sinkClockDomain)) {
+    				for(TimingEdge edge : node.getSinkEdges()) {
+    					if(edge.getSink().hasClockDomainAsSink(sinkClockDomain)) {
+    						required[edge.getSink().id] = 0;
+    					}
+    				}
+    			}
+    		}
+    	}
+    	
+    	System.out.println("   Num timing levels " + (maxLevel + 1));
+    	System.out.println("   Num clock domain pairs " + numPairs);
+    }
+    private boolean isRoot(TimingNode node, int sourceClockDomain) {
+    	return node.getPosition() == Position.ROOT && node.getClockDomain() == sourceClockDomain;
+    }
+    private boolean isLeaf(TimingNode node, int sinkClockDomain) {
+    	return node.getPosition() == Position.LEAF && node.getClockDomain() == sinkClockDomain;
+    }
+    
+    private void calculateArrivalRequiredAndCriticalityLevelized(float maxCriticality, float criticalityExponent) {
+    	int numPairs = this.pairSource.length;
+    	int numLevels = this.levelStart.length - 1;
+    	
+    	//Arrival time
+    	for(int level = 0; level < numLevels; level++) {
+    		this.processLevel(level, true);
+    	}
+    	
+    	//Max delay
+    	this.globalMaxDelay = 0;
+    	for(int pair = 0; pair < numPairs; pair++) {
+    		float maxDelay = 0;
+    		for(TimingNode leafNode : this.leafNodes.get(this.pairSink[pair])) {
+    			maxDelay = Math.max(this.arrivalTimes[pair][leafNode.id] - leafNode.clockDelay, maxDelay);
+    		}
+    		this.pairMaxDelay[pair] = maxDelay;
+    		this.maxDelay[this.pairSource[pair]][this.pairSink[pair]] = maxDelay;
+    		this.globalMaxDelay = Math.max(this.globalMaxDelay, maxDelay);
+    	}
+    	
+    	//Required time
+    	for(int level = numLevels - 1; level >= 0; level--) {
+    		this.processLevel(level, false);
+    	}
+    	
+    	//Criticality
+    	for(Connection connection : this.allConnections) {
+    		TimingEdge edge = connection.getSinkNode().getSourceEdge(0);
+    		int source = edge.getSource().id;
+    		int sink = edge.getSink().id;
+    		
+    		edge.resetCriticality();
+    		for(int pair = 0; pair < numPairs; pair++) {
+    			float arrivalTime = this.arrivalTimes[pair][source];
+    			float requiredTime = this.requiredTimes[pair][sink];
+    			if(!Float.isNaN(arrivalTime) && !Float.isNaN(requiredTime)) {
+    				edge.calculateCriticality(arrivalTime, requiredTime, this.pairMaxDelay[pair], maxCriticality, criticalityExponent);
+    			}
+    		}
+    		connection.updateCriticality();
+    	}
+    	
+    	//The times of the nodes are those of the last clock domain pair, as in the recursive analysis
+    	int lastPair = numPairs - 1;
+    	for(TimingNode node : this.timingNodes) {
+    		node.resetArrivalAndRequiredTime();
+    		if(lastPair >= 0) {
+    			if(!Float.isNaN(this.arrivalTimes[lastPair][node.id])) node.setArrivalTime(this.arrivalTimes[lastPair][node.id]);
+    			if(!Float.isNaN(this.requiredTimes[lastPair][node.id])) node.setRequiredTime(this.requiredTimes[lastPair][node.id]);
+    		}
+    	}
+    }
+    
+    /**
+     * The nodes of one level don't depend on each other, a wide level
+     * is split over the timing threads.
+     */
+    private void processLevel(int level, boolean arrival) {
+    	int start = this.levelStart[level];
+    	int end = this.levelStart[level + 1];
+    	
+    	if(this.numTimingThreads == 1 || end - start < MIN_PARALLEL_LEVEL_WIDTH) {
+    		this.processNodes(start, end, arrival);
+    		return;
+    	}
+    	if(this.timingExecutor == null) {
+    		this.timingExecutor = Executors.newFixedThreadPool(this.numTimingThreads, runnable -> {
+    			Thread thread = new Thread(runnable, "timing");
+    			thread.setDaemon(true);
+    			return thread;
+    		});
+    	}
+    	
+    	int chunk = (end - start + this.numTimingThreads - 1) / this.numTimingThreads;
+    	List<Future<?>> futures = new ArrayList<>();
+    	for(int first = start; first < end; first += chunk) {
+    		int from = first;
+    		int to = Math.min(end, first + chunk);
+    		futures.add(this.timingExecutor.submit(() -> this.processNodes(from, to, arrival)));
+    	}
+    	for(Future<?> future : futures) {
+    		try {
+    			future.get();
+    		} catch (InterruptedException | ExecutionException error) {
+    			throw new RuntimeException("Parallel timing analysis failed", error);
+    		}
+    	}
+    }
+    private void processNodes(int start, int end, boolean arrival) {
+    	for(int i = start; i < end; i++) {
+    		if(arrival) {
+    			this.calculateArrivalTime(this.levelNodes[i]);
+    		} else {
+    			this.calculateRequiredTime(this.levelNodes[i]);
+    		}
+    	}
+    }
+    private void calculateArrivalTime(TimingNode node) {
+    	for(int pair = 0; pair < this.pairSource.length; pair++) {
+    		float[] arrival = this.arrivalTimes[pair];
+    		if(Float.isNaN(arrival[node.id])) continue;
+    		
+    		int sourceClockDomain = this.pairSource[pair];
+    		float maxArrivalTime = 0;
+    		if(!this.isRoot(node, sourceClockDomain)) {
+    			for(TimingEdge edge : node.getSourceEdges()) {
+    				if(edge.getSource().hasClockDomainAsSource(sourceClockDomain)) {
+    					float localArrivalTime = arrival[edge.getSource().id] + edge.getTotalDelay();
+    					if(localArrivalTime > maxArrivalTime) {
+    						maxArrivalTime = localArrivalTime;
+    					}
+    				}
+    			}
+    		}
+    		arrival[node.id] = maxArrivalTime;
+    	}
+    }
+    private void calculateRequiredTime(TimingNode node) {
+    	for(int pair = 0; pair < this.pairSource.length; pair++) {
+    		float[] required = this.requiredTimes[pair];
+    		if(Float.isNaN(required[node.id])) continue;
+    		
+    		int sinkClockDomain = this.pairSink[pair];
+    		float minRequiredTime;
+    		if(this.isLeaf(node, sinkClockDomain)) {
+    			minRequiredTime = this.pairMaxDelay[pair] + node.clockDelay;
+    		} else {
+    			minRequiredTime = Integer.MAX_VALUE;
+    			for(TimingEdge edge : node.getSinkEdges()) {
+    				if(edge.getSink().hasClockDomainAsSink(sinkClockDomain)) {
+    					float localRequiredTime = required[edge.getSink().id] - edge.getTotalDelay();
+    					if(localRequiredTime < minRequiredTime) {
+    						minRequiredTime = localRequiredTime;
+    					}
+    				}
+    			}
+    		}
+    		required[node.id] = minRequiredTime;
+    	}
+    }
+    
     private boolean isSourceOfClockNet(TimingNode node) {
     	return this.isSourceOfClockNet(node.getPin());
     }
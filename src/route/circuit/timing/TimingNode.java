@@ -40,6 +40,9 @@ public class TimingNode {
     private boolean hasSinkClockDomains = false;
     
     private boolean sllNode = false;
+    
+    //Position in the node list of the timing graph, used by the incremental timing analysis
+    int id = -1;
    
     public final float clockDelay;
 
@@ -7,8 +7,10 @@ import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import route.circuit.Circuit;
 import route.circuit.CircuitSLL;
@@ -34,20 +36,25 @@ import route.circuit.exceptions.PlacementException;
 import route.circuit.io.BlockNotFoundException;
 import route.circuit.io.IllegalSizeException;
 import route.circuit.io.PlaceParser;
+import route.circuit.io.RouteWriter;
 import route.circuit.pin.AbstractPin;
 import route.circuit.pin.GlobalPin;
 import route.circuit.resource.ResourceGraph;
 import route.circuit.timing.TimingGraphSLL;
 import route.route.ConnectionRouter;
+import route.route.Net;
 
 public class Main {
 	
 	private Logger logger;
 	
 	private String circuitName;
-	private File architectureFile, blifFile, netFile, placeFile, lookupDumpFile, sdcFile, rrgFile;
+	private File architectureFile, blifFile, netFile, placeFile, lookupDumpFile, sdcFile, rrgFile, routeFile;
+	private boolean routeFilePerDie;
 	private File [] netFileDie, placeFileDie;
 	private ArrayList<File> netFiles;
+	private ArrayList<File> previousPlaceFiles;
+	private Set<String> changedBlocks = new HashSet<>(), changedSLLNets = new HashSet<>();
 	private ArrayList<File> placeFiles;
 	private File inputFolder;
 	
@@ -75,7 +82,10 @@ public class Main {
 	    O_RRG_FILE = "rr_graph_file",
 		O_NUM_DIE = "number_of_dies",
 		O_NUM_SLL_ROWS = "number_of_SLL_rows",
-    	O_SLL_DELAY = "delay_of_SLL_wire";
+    	O_SLL_DELAY = "delay_of_SLL_wire",
+    	O_ROUTE_FILE = "route_file",
+    	O_ROUTE_FILE_PER_DIE = "route_file_per_die",
+    	O_PREVIOUS_PLACE_FILE = "previous_place_file";
 
 
 	public static void initOptionList(Options options) {
@@ -89,6 +99,11 @@ public class Main {
 	    options.add(O_NUM_DIE, "Number of dies chosen as 2", new Integer(2));
 	    options.add(O_NUM_SLL_ROWS, "Number of SLL rows default set to 5", new Integer(36));
 	    options.add(O_SLL_DELAY, "Delay of SLL wire default set to 360ps", new Float(360));
+	    options.add(O_ROUTE_FILE, "routing results (default: based on the blif file)", File.class, Required.FALSE);
+	    options.add(O_PREVIOUS_PLACE_FILE, "placement of the previous routing, only the connections of the moved blocks are rerouted with route_eco_checkpoint", ArrayList.class, Required.FALSE);
+	    options.add(O_ROUTE_FILE_PER_DIE, "Write one route file per die and one for the interposer nets", Boolean.FALSE);
+	    
+	    ConnectionRouter.initOptions(options);
 	}
 
 	
@@ -108,6 +123,7 @@ public class Main {
         this.blifFile = options.getFile(O_BLIF_FILE);
         this.netFiles = options.getFiles(O_NET_FILE);
         this.placeFiles = options.getFiles(O_INPUT_PLACE_FILE);
+        this.previousPlaceFiles = options.getFiles(O_PREVIOUS_PLACE_FILE);
 
 
         this.inputFolder = this.blifFile.getParentFile();
@@ -132,6 +148,12 @@ public class Main {
         this.sdcFile = options.getFile(O_SDC_FILE);
         
         this.rrgFile = options.getFile(O_RRG_FILE);
+        
+        this.routeFile = options.getFile(O_ROUTE_FILE);
+        if(this.routeFile == null) {
+            this.routeFile = new File(this.inputFolder, this.circuitName + ".route");
+        }
+        this.routeFilePerDie = options.getBoolean(O_ROUTE_FILE_PER_DIE);
 
         this.checkFileExistence("architecture_file", this.architectureFile);
         this.checkFileExistence("blif_file", this.blifFile);
@@ -142,6 +164,14 @@ public class Main {
         for (int i = 0; i < this.placeFiles.size(); i++) {
             File placeFile = this.placeFiles.get(i);
             this.checkFileExistence("place_file", placeFile);
+        }
+        if(this.previousPlaceFiles != null) {
+            if(this.previousPlaceFiles.size() != this.placeFiles.size()) {
+                this.logger.raise("The number of previous place files doesn't match the number of place files");
+            }
+            for(File previousPlaceFile : this.previousPlaceFiles) {
+                this.checkFileExistence("previous_place_file", previousPlaceFile);
+            }
         }
 		this.checkFileExistence("lookup_dump_file", this.lookupDumpFile);
 		this.checkFileExistence("sdc_file", this.sdcFile);
@@ -201,12 +231,22 @@ public class Main {
 		
 		System.gc();
 		
-		ConnectionRouter connectionRouter = new ConnectionRouter(this.resourceGraph, this.circuitDie, this.circuitSLL, this.TotDie, this.timingGraphSystem);
+		ConnectionRouter connectionRouter = new ConnectionRouter(this.resourceGraph, this.circuitDie, this.circuitSLL, this.TotDie, this.timingGraphSystem, this.options.getMainOptions());
+		if(this.previousPlaceFiles != null) {
+			if(!connectionRouter.hasEcoCheckpoint()) {
+				this.logger.raise("previous_place_file is only used together with route_eco_checkpoint");
+			}
+			System.out.println("Moved blocks: " + this.changedBlocks.size() + ", moved SLL blocks: " + this.changedSLLNets.size());
+			connectionRouter.setMovedBlocks(this.changedBlocks, this.changedSLLNets);
+		}
 		int timeMilliseconds = connectionRouter.route();
 		
 		System.out.printf("Routing took %.2fs\n", (timeMilliseconds * Math.pow(10, -3)));
 		System.out.println();
 		
+		//The route files are written while the timing is reported
+		RouteWriter routeWriter = this.writeRouting();
+		
 		this.timingGraphSystem.calculateActualWireDelay();
 		this.timingGraphSystem.calculateArrivalRequiredAndCriticality(1, 1);
 
@@ -220,7 +260,33 @@ public class Main {
 		this.resourceGraph.printChannelUsage();
 		this.resourceGraph.printWireUsage();
 		System.out.print(this.timingGraphSystem.criticalPathToString());
-
+		
+		try {
+			routeWriter.finish();
+		} catch(IOException error) {
+			this.logger.raise("Failed to write the route file", error);
+		}
+	}
+	
+	private RouteWriter writeRouting() {
+		RouteWriter routeWriter = new RouteWriter(this.resourceGraph, this.architecture.getWidth(), this.architecture.getHeight());
+		
+		if(this.routeFilePerDie) {
+			String baseName = this.routeFile.getPath().replaceFirst("\\.route$", "");
+			for(int i = 0; i < this.TotDie; i++) {
+				routeWriter.write(new File(baseName + "_die" + i + ".route"), this.circuitDie[i].getNets());
+			}
+			routeWriter.write(new File(baseName + "_interposer.route"), this.circuitSLL.getSLLNets());
+		} else {
+			List<Net> nets = new ArrayList<>();
+			nets.addAll(this.circuitSLL.getSLLNets());
+			for(int i = 0; i < this.TotDie; i++) {
+				nets.addAll(this.circuitDie[i].getNets());
+			}
+			routeWriter.write(this.routeFile, nets);
+		}
+		
+		return routeWriter;
 	}
 	
 	
@@ -300,6 +366,14 @@ public class Main {
             } catch(IOException | BlockNotFoundException | PlacementException | IllegalSizeException error) {
                 this.logger.raise("Something went wrong while parsing the place file", error);
             }
+    		
+    		if(this.previousPlaceFiles != null) {
+    			try {
+    				placeParser.diff(this.previousPlaceFiles.get(currentDie), this.changedBlocks, this.changedSLLNets);
+    			} catch(IOException | IllegalSizeException error) {
+    				this.logger.raise("Something went wrong while parsing the previous place file", error);
+    			}
+    		}
         }else{
         	this.logger.raise("No valid place file");
         }
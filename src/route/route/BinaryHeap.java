@@ -0,0 +1,104 @@
+package route.route;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap on the lower bound total path cost. The route node
+ * indices and the costs are stored in two primitive arrays, so adding a
+ * node doesn't allocate an object. The arrays only grow, the heap is
+ * reused for all connections of a routing thread.
+ */
+class BinaryHeap implements RouteQueue {
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private int[] nodes;
+	private float[] costs;
+	private int size;
+	
+	BinaryHeap() {
+		this.nodes = new int[INITIAL_CAPACITY];
+		this.costs = new float[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+	
+	@Override
+	public void add(int index, float cost) {
+		if(this.size == this.nodes.length) {
+			this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+			this.costs = Arrays.copyOf(this.costs, 2 * this.size);
+		}
+		
+		//Sift up
+		int position = this.size++;
+		while(position > 0) {
+			int parent = (position - 1) >> 1;
+			if(this.costs[parent] <= cost) {
+				break;
+			}
+			this.nodes[position] = this.nodes[parent];
+			this.costs[position] = this.costs[parent];
+			position = parent;
+		}
+		this.nodes[position] = index;
+		this.costs[position] = cost;
+	}
+	
+	@Override
+	public int poll() {
+		if(this.size == 0) {
+			return -1;
+		}
+		
+		int first = this.nodes[0];
+		
+		this.size--;
+		if(this.size > 0) {
+			int index = this.nodes[this.size];
+			float cost = this.costs[this.size];
+			
+			//Sift down
+			int position = 0;
+			int half = this.size >> 1;
+			while(position < half) {
+				int child = 2 * position + 1;
+				int right = child + 1;
+				if(right < this.size && this.costs[right] < this.costs[child]) {
+					child = right;
+				}
+				if(cost <= this.costs[child]) {
+					break;
+				}
+				this.nodes[position] = this.nodes[child];
+				this.costs[position] = this.costs[child];
+				position = child;
+			}
+			this.nodes[position] = index;
+			this.costs[position] = cost;
+		}
+		
+		return first;
+	}
+	
+	@Override
+	public int peek() {
+		if(this.size == 0) {
+			return -1;
+		}
+		return this.nodes[0];
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	@Override
+	public void clear() {
+		this.size = 0;
+	}
+}
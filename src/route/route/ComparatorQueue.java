@@ -0,0 +1,51 @@
+package route.route;
+
+import java.util.PriorityQueue;
+
+import route.circuit.resource.RouteGraph;
+
+/**
+ * The frontier as a java PriorityQueue of QueueElements, ordered
+ * by Comparators.PRIORITY_COMPARATOR.
+ */
+class ComparatorQueue implements RouteQueue {
+	private final RouteGraph graph;
+	private final PriorityQueue<QueueElement> queue;
+	
+	ComparatorQueue(RouteGraph graph) {
+		this.graph = graph;
+		this.queue = new PriorityQueue<>(Comparators.PRIORITY_COMPARATOR);
+	}
+	
+	@Override
+	public void add(int node, float cost) {
+		this.queue.add(new QueueElement(this.graph.routeNodes[node], cost));
+	}
+	
+	@Override
+	public int poll() {
+		QueueElement element = this.queue.poll();
+		return element == null ? -1 : element.node.routeNodeData.index;
+	}
+	
+	@Override
+	public int peek() {
+		QueueElement element = this.queue.peek();
+		return element == null ? -1 : element.node.routeNodeData.index;
+	}
+	
+	@Override
+	public int size() {
+		return this.queue.size();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.queue.isEmpty();
+	}
+	
+	@Override
+	public void clear() {
+		this.queue.clear();
+	}
+}
@@ -43,6 +43,16 @@ public class Connection implements Comparable<Connection>  {
 	public boolean touchSLL = false;
 	public final List<RouteNode> routeNodes;
 	
+	//Number of overused route nodes in the route of the connection
+	private int numOverusedNodes;
+	
+	//Bounding box of the search, grows from the source and sink towards the bounding box of the net
+	private short x_min_b, x_max_b, y_min_b, y_max_b;
+	private int congestedReroutes;
+	
+	//SLL wire assigned before the routing, null if the connection can use any SLL wire
+	private RouteNode assignedSLLWire;
+	
 	public Connection(int id, GlobalPin source, GlobalPin sink, int dieNum) {
 		this.id = id;
 		this.source = source;
@@ -202,8 +212,92 @@ public class Connection implements Comparable<Connection>  {
 		this.net = net;
 	}
 
+	/**
+	 * Start with a bounding box of margin around the source and sink, or
+	 * around the SLL wire as well for a connection that crosses the
+	 * interposer. The box never exceeds the bounding box of the net, a
+	 * negative margin gives the bounding box of the net.
+	 */
+	public void initBoundingBox(int margin) {
+		this.congestedReroutes = 0;
+		
+		if(margin < 0) {
+			this.x_min_b = this.net.x_min_b;
+			this.x_max_b = this.net.x_max_b;
+			this.y_min_b = this.net.y_min_b;
+			this.y_max_b = this.net.y_max_b;
+			return;
+		}
+		
+		int x_min = Math.min(this.sourceRouteNode.xlow, this.sinkRouteNode.xlow);
+		int x_max = Math.max(this.sourceRouteNode.xhigh, this.sinkRouteNode.xhigh);
+		int y_min = Math.min(this.sourceRouteNode.ylow, this.sinkRouteNode.ylow);
+		int y_max = Math.max(this.sourceRouteNode.yhigh, this.sinkRouteNode.yhigh);
+		if(this.isCrossingSLL) {
+			RouteNode sllWire = this.assignedSLLWire != null ? this.assignedSLLWire : this.sllWireNode;
+			x_min = Math.min(x_min, sllWire.xlow);
+			x_max = Math.max(x_max, sllWire.xhigh);
+			y_min = Math.min(y_min, sllWire.ylow);
+			y_max = Math.max(y_max, sllWire.yhigh);
+		}
+		
+		this.x_min_b = (short) Math.max(x_min - margin, this.net.x_min_b);
+		this.x_max_b = (short) Math.min(x_max + margin, this.net.x_max_b);
+		this.y_min_b = (short) Math.max(y_min - margin, this.net.y_min_b);
+		this.y_max_b = (short) Math.min(y_max + margin, this.net.y_max_b);
+	}
+	
+	/**
+	 * Grow the bounding box by step on each side, limited to the bounding
+	 * box of the net. Returns false if the box already is the bounding box
+	 * of the net.
+	 */
+	public boolean growBoundingBox(int step) {
+		if(this.hasNetBoundingBox()) {
+			return false;
+		}
+		this.x_min_b = (short) Math.max(this.x_min_b - step, this.net.x_min_b);
+		this.x_max_b = (short) Math.min(this.x_max_b + step, this.net.x_max_b);
+		this.y_min_b = (short) Math.max(this.y_min_b - step, this.net.y_min_b);
+		this.y_max_b = (short) Math.min(this.y_max_b + step, this.net.y_max_b);
+		return true;
+	}
+	public boolean hasNetBoundingBox() {
+		return this.x_min_b == this.net.x_min_b && this.x_max_b == this.net.x_max_b && this.y_min_b == this.net.y_min_b && this.y_max_b == this.net.y_max_b;
+	}
+	public int boundingBoxArea() {
+		return (this.x_max_b - this.x_min_b) * (this.y_max_b - this.y_min_b);
+	}
+	
+	/**
+	 * Count the reroutes of a congested connection, returns true and
+	 * restarts the count after limit consecutive congested reroutes.
+	 */
+	public boolean congestedReroute(int limit) {
+		if(!this.congested()) {
+			this.congestedReroutes = 0;
+			return false;
+		}
+		this.congestedReroutes++;
+		if(this.congestedReroutes >= limit) {
+			this.congestedReroutes = 0;
+			return true;
+		}
+		return false;
+	}
+
+	public void setSLLWire(RouteNode sllWire) {
+		this.assignedSLLWire = sllWire;
+	}
+	public RouteNode getAssignedSLLWire() {
+		return this.assignedSLLWire;
+	}
+
 	public boolean isInBoundingBoxLimit(RouteNode node) {
-		return node.xlow < this.net.x_max_b && node.xhigh > this.net.x_min_b && node.ylow < this.net.y_max_b && node.yhigh > this.net.y_min_b;
+		return node.xlow < this.x_max_b && node.xhigh > this.x_min_b && node.ylow < this.y_max_b && node.yhigh > this.y_min_b;
+	}
+	public boolean isInBoundingBoxLimit(int xlow, int xhigh, int ylow, int yhigh) {
+		return xlow < this.x_max_b && xhigh > this.x_min_b && ylow < this.y_max_b && yhigh > this.y_min_b;
 	}
 	
 	public void addRouteNode(RouteNode routeNode) {
@@ -229,6 +323,9 @@ public class Connection implements Comparable<Connection>  {
 		
 		this.criticality = this.timingEdge.getCriticality();
 	}
+	public void updateCriticality() {
+		this.criticality = this.timingEdge.getCriticality();
+	}
 	public void setCriticality() {
 		this.criticality = 1;
 	}
@@ -276,12 +373,15 @@ public class Connection implements Comparable<Connection>  {
 	}
 	
 	public boolean congested() {
-		for(RouteNode rn : this.routeNodes){
-			if(rn.overUsed()) {
-				return true;
-			}
-		}
-		return false;
+		return this.numOverusedNodes > 0;
+	}
+	/**
+	 * Kept up to date by the route workers when a node of the connection
+	 * becomes overused or legal again. Two workers can update the same
+	 * connection if it crosses both of their partitions.
+	 */
+	synchronized void addOverusedNodes(int delta) {
+		this.numOverusedNodes += delta;
 	}
 	
 	public boolean illegal() {
@@ -1,26 +1,32 @@
 package route.route;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import route.circuit.Circuit;
 import route.circuit.CircuitSLL;
+import route.circuit.block.GlobalBlock;
 import route.circuit.resource.Opin;
 import route.circuit.resource.ResourceGraph;
+import route.circuit.resource.RouteGraph;
 import route.circuit.resource.RouteNode;
 import route.circuit.resource.RouteNodeType;
 import route.circuit.timing.TimingGraphSLL;
+import route.interfaces.Options;
+import route.interfaces.Options.Required;
+import route.route.PartitionTree.Partition;
+import route.util.FloatSelection;
 
-public class ConnectionRouter {
+public class ConnectionRouter implements RouteSearchParameters {
 	final ResourceGraph rrg;
 	final Circuit[] circuitDie;
 	final CircuitSLL circuitSLL;
@@ -29,36 +35,131 @@ public class ConnectionRouter {
 	final int totDie;
 	private int currentDie = 0;
 	
-	private float pres_fac, pres_fac_mult = 2;
-	private float alphaWLD = 1.4f;
-	private float alphaTD = 0.7f;
+	float pres_fac;
+	private float pres_fac_mult = 2;
+	float alphaWLD = 1.4f;
+	float alphaTD = 0.7f;
 	
 	private float MIN_REROUTE_CRITICALITY = 0.85f, REROUTE_CRITICALITY;
-	private final List<Connection> criticalConnections;
+	private float[] criticalities;
 	
 	private int MAX_PERCENTAGE_CRITICAL_CONNECTIONS = 3;
 	
-	private final PriorityQueue<QueueElement> queue;
-
+	private final RouteWorker worker;
 	
-	private final Collection<RouteNodeData> nodesTouched;
+	//Parallel routing of spatially independent nets
+	private final int numThreads;
+	private final RouteWorker[] workers;
+	private final int partitionMarginX, partitionMarginY;
+	private ExecutorService executor;
 	
-	private final float COST_PER_DISTANCE_HORIZONTAL, COST_PER_DISTANCE_VERTICAL, DELAY_PER_DISTANCE_HORIZONTAL, DELAY_PER_DISTANCE_VERTICAL;
-	private int distance_same_dir, distance_ortho_dir;
-	private final float IPIN_BASE_COST;
+	final float COST_PER_DISTANCE_HORIZONTAL, COST_PER_DISTANCE_VERTICAL, DELAY_PER_DISTANCE_HORIZONTAL, DELAY_PER_DISTANCE_VERTICAL;
+	final float IPIN_BASE_COST;
 	private static final float MAX_CRITICALITY = 0.99f;
 	private static final float CRITICALITY_EXPONENT = 3;
 	
-	private int connectionsRouted, nodesExpanded;
-	private int connectionsRoutedIteration;
-	
 	private int itry;
 	
+	//State of the current routing pass
+	private int passDie;
+	private List<Connection> sortedListOfConnections;
+	private List<Net> sortedListOfNets;
+	private PartitionTree partitionTree;
+	
+	//The route nodes of which the cost is updated, the whole device or the rows of one die
+	private final List<RouteNode> costNodes;
+	private final OveruseIndex overuseIndex;
+	private int wireLength;
+	private final boolean routeDiesParallel;
+	private final boolean binaryHeap;
+	
+	//Expected cost and delay to the sink, null if the distance based estimate is used
+	final RouterLookahead lookahead;
+	
+	//Start the search of a connection from the routing tree of its net
+	final boolean seedNetTree;
+	
+	//Adaptive bounding box of the connections: initial margin, growth step and congested reroutes before a growth
+	private final int bbInitialMargin;
+	final int bbStep, bbCongestedReroutes;
+	
+	//Assign the SLL wires to the interposer nets before the interposer pass, the window around the placed SLL site
+	private final boolean sllAssignment;
+	private final int sllWindow;
+	
+	//Route the crossing connections with an assigned SLL wire in two searches that meet at the SLL wire
+	final boolean splitSLLSearch;
+	
+	//Per iteration records of the router, exported to the metrics file
+	private final RouteMetrics metrics;
+	private final File metricsFile;
+	
+	private final boolean incrementalTiming;
+	private final int fullTimingInterval;
+	private int numTimingUpdates;
+	
+	//Checkpoints of the routing state and the state to resume from
+	private final File checkpointFile, resumeFile;
+	private final int checkpointInterval;
+	private int resumePass = -1, resumeItry;
+	private float resumePresFac;
+	
+	//Incremental routing after a placement change, starting from the routing of a checkpoint
+	private final File ecoFile;
+	private Set<String> movedBlocks = new HashSet<>(), movedSLLNets = new HashSet<>();
+	
+	//Route all connections in the first iteration of a pass, false if the passes start from an existing routing
+	private boolean routeAll = true;
+	
+	private static final float INITIAL_PRES_FAC = 0.5f;
+	private static final float ACC_FAC = 1;
+	
 	private RouteTimers routeTimers;
 	
 	public static final boolean DEBUG = true;
 	
-	public ConnectionRouter(ResourceGraph rrg, Circuit[] circuitDie, CircuitSLL circuitSLL, int totDie, TimingGraphSLL timingGraphSLL) {
+	private static final String
+		O_ROUTE_THREADS = "route_threads",
+		O_ROUTE_DIES_PARALLEL = "route_dies_parallel",
+		O_ROUTE_QUEUE = "route_queue",
+		O_ROUTE_LOOKAHEAD = "route_lookahead",
+		O_ROUTE_NET_TREE = "route_net_tree",
+		O_INCREMENTAL_TIMING = "route_incremental_timing",
+		O_FULL_TIMING_INTERVAL = "route_full_timing_interval",
+		O_CHECKPOINT_FILE = "route_checkpoint_file",
+		O_CHECKPOINT_INTERVAL = "route_checkpoint_interval",
+		O_RESUME_FILE = "route_resume_file",
+		O_ECO_FILE = "route_eco_checkpoint",
+		O_BB_INITIAL_MARGIN = "route_bb_initial_margin",
+		O_BB_STEP = "route_bb_step",
+		O_BB_CONGESTED_REROUTES = "route_bb_congested_reroutes",
+		O_SLL_ASSIGNMENT = "route_sll_assignment",
+		O_SLL_WINDOW = "route_sll_window",
+		O_SLL_SPLIT_SEARCH = "route_sll_split_search",
+		O_METRICS_FILE = "route_metrics_file";
+	
+	public static void initOptions(Options options) {
+		options.add(O_ROUTE_THREADS, "Number of threads that route nets with independent bounding boxes and analyse the wide levels of the timing graph, 1 routes sequentially", new Integer(1));
+		options.add(O_ROUTE_DIES_PARALLEL, "Route the dies concurrently once the interposer nets are routed", Boolean.FALSE);
+		options.add(O_ROUTE_QUEUE, "Frontier of the search: heap (primitive binary heap) or priority_queue (java PriorityQueue)", "priority_queue");
+		options.add(O_ROUTE_LOOKAHEAD, "Lower bound of the search: map (table per wire type and distance) or classic (average cost per distance)", "classic");
+		options.add(O_ROUTE_NET_TREE, "Start the search of a connection from the wires that are used by the other connections of its net", Boolean.FALSE);
+		options.add(O_INCREMENTAL_TIMING, "Only update the timing of the cones of the rerouted connections after a routing iteration", Boolean.FALSE);
+		options.add(O_FULL_TIMING_INTERVAL, "Number of timing updates between two full timing analyses when incremental timing is used", new Integer(10));
+		options.add(O_CHECKPOINT_FILE, "File to which the routing state is written", File.class, Required.FALSE);
+		options.add(O_CHECKPOINT_INTERVAL, "Number of iterations between two checkpoints, a checkpoint is also written after each routing pass, 0 disables the checkpoints", new Integer(0));
+		options.add(O_RESUME_FILE, "Checkpoint from which the routing is resumed", File.class, Required.FALSE);
+		options.add(O_ECO_FILE, "Checkpoint of a previous routing, only the connections of moved blocks and congested connections are rerouted", File.class, Required.FALSE);
+		options.add(O_BB_INITIAL_MARGIN, "Margin of the initial bounding box around the source and sink of a connection, -1 uses the bounding box of the net", new Integer(-1));
+		options.add(O_BB_STEP, "Growth of the bounding box of a connection on each side, up to the bounding box of the net", new Integer(2));
+		options.add(O_BB_CONGESTED_REROUTES, "Number of consecutive reroutes of a congested connection after which its bounding box grows", new Integer(3));
+		options.add(O_SLL_ASSIGNMENT, "Assign an SLL wire to each interposer net with a min-cost assignment before the interposer nets are routed", Boolean.FALSE);
+		options.add(O_SLL_WINDOW, "Maximum distance in columns and rows between the assigned SLL wire and the placed SLL site", new Integer(4));
+		options.add(O_METRICS_FILE, "File to which the metrics of each routing iteration are written, CSV if the name ends with .csv, JSON otherwise", File.class, Required.FALSE);
+		options.add(O_SLL_SPLIT_SEARCH, "Route a crossing connection with an assigned SLL wire with a search from the source to the SLL wire and a search from the SLL wire to the sink", Boolean.FALSE);
+	}
+	
+	public ConnectionRouter(ResourceGraph rrg, Circuit[] circuitDie, CircuitSLL circuitSLL, int totDie, TimingGraphSLL timingGraphSLL, Options options) {
 		this.rrg = rrg;
 		this.circuitDie = circuitDie;
 		this.circuitSLL = circuitSLL;
@@ -66,11 +167,8 @@ public class ConnectionRouter {
 		this.timingGraphSLL = timingGraphSLL;
 		
 		this.totDie = totDie;
-		this.nodesTouched = new ArrayList<>();
-		
-		this.queue = new PriorityQueue<>(Comparators.PRIORITY_COMPARATOR);
 
-		this.criticalConnections = new ArrayList<>();
+		this.criticalities = new float[0];
 
 
 		COST_PER_DISTANCE_HORIZONTAL = this.getAverageCost(RouteNodeType.CHANX);
@@ -84,11 +182,225 @@ public class ConnectionRouter {
 		
 		IPIN_BASE_COST = this.rrg.get_ipin_indexed_data().getBaseCost();
 		
-		this.connectionsRouted = 0;
-		this.nodesExpanded = 0;
+		String queueType = options.getString(O_ROUTE_QUEUE);
+		if(queueType.equals("heap")) {
+			this.binaryHeap = true;
+		} else if(queueType.equals("priority_queue")) {
+			this.binaryHeap = false;
+		} else {
+			throw new IllegalArgumentException("Non-existent route queue: " + queueType);
+		}
+		
+		String lookaheadType = options.getString(O_ROUTE_LOOKAHEAD);
+		if(lookaheadType.equals("map")) {
+			this.lookahead = new RouterLookahead(this.rrg.getRouteGraph(), this.rrg.getDieBoundary(), this.totDie, this.rrg.getRouterLookaheadFile());
+		} else if(lookaheadType.equals("classic")) {
+			this.lookahead = null;
+		} else {
+			throw new IllegalArgumentException("Non-existent route lookahead: " + lookaheadType);
+		}
+		
+		this.seedNetTree = options.getBoolean(O_ROUTE_NET_TREE);
+		
+		this.bbInitialMargin = options.getInteger(O_BB_INITIAL_MARGIN);
+		this.bbStep = Math.max(1, options.getInteger(O_BB_STEP));
+		this.bbCongestedReroutes = Math.max(1, options.getInteger(O_BB_CONGESTED_REROUTES));
+		for(Connection con : this.getAllConnections()) {
+			con.initBoundingBox(this.bbInitialMargin);
+		}
+		
+		this.sllAssignment = options.getBoolean(O_SLL_ASSIGNMENT);
+		this.sllWindow = Math.max(0, options.getInteger(O_SLL_WINDOW));
+		this.splitSLLSearch = options.getBoolean(O_SLL_SPLIT_SEARCH);
+		if(this.splitSLLSearch && !this.sllAssignment) {
+			System.out.println("The SLL split search only applies to connections with an assigned SLL wire, use " + O_SLL_ASSIGNMENT);
+		}
+		
+		this.numThreads = Math.max(1, options.getInteger(O_ROUTE_THREADS));
+		this.workers = new RouteWorker[this.numThreads];
+		for(int i = 0; i < this.numThreads; i++) {
+			this.workers[i] = new RouteWorker(this);
+		}
+		this.worker = this.workers[0];
+		
+		//A wire that starts inside a bounding box can end outside of it,
+		//the pins next to the end of the wire can be reached as well
+		this.partitionMarginX = this.getMaxWireSpan(RouteNodeType.CHANX) + 2;
+		this.partitionMarginY = this.getMaxWireSpan(RouteNodeType.CHANY) + 2;
+		
+		this.costNodes = this.rrg.getRouteNodes();
+		this.overuseIndex = new OveruseIndex();
+		this.initOveruseIndex();
+		this.routeDiesParallel = options.getBoolean(O_ROUTE_DIES_PARALLEL);
+		
+		this.incrementalTiming = options.getBoolean(O_INCREMENTAL_TIMING);
+		this.fullTimingInterval = Math.max(1, options.getInteger(O_FULL_TIMING_INTERVAL));
+		this.numTimingUpdates = 0;
+		if(this.incrementalTiming) {
+			this.timingGraphSLL.enableIncrementalTiming();
+		}
+		this.timingGraphSLL.setTimingThreads(this.numThreads);
+		
+		this.checkpointFile = options.getFile(O_CHECKPOINT_FILE);
+		this.checkpointInterval = options.getInteger(O_CHECKPOINT_INTERVAL);
+		this.resumeFile = options.getFile(O_RESUME_FILE);
+		this.ecoFile = options.getFile(O_ECO_FILE);
+		
+		this.metrics = new RouteMetrics();
+		this.metricsFile = options.getFile(O_METRICS_FILE);
+		
 		this.routeTimers = new RouteTimers();
 	}
 	
+	/**
+	 * Router for one die, used when the dies are routed concurrently.
+	 * The searches and the cost updates are restricted to the rows of
+	 * the die.
+	 */
+	private ConnectionRouter(ConnectionRouter parent, int die) {
+		this.rrg = parent.rrg;
+		this.circuitDie = parent.circuitDie;
+		this.circuitSLL = parent.circuitSLL;
+		this.timingGraphSLL = parent.timingGraphSLL;
+		
+		this.totDie = parent.totDie;
+		this.currentDie = die;
+		
+		this.pres_fac_mult = parent.pres_fac_mult;
+		this.alphaWLD = parent.alphaWLD;
+		this.alphaTD = parent.alphaTD;
+		
+		this.criticalities = new float[0];
+		
+		COST_PER_DISTANCE_HORIZONTAL = parent.COST_PER_DISTANCE_HORIZONTAL;
+		COST_PER_DISTANCE_VERTICAL = parent.COST_PER_DISTANCE_VERTICAL;
+		DELAY_PER_DISTANCE_HORIZONTAL = parent.DELAY_PER_DISTANCE_HORIZONTAL;
+		DELAY_PER_DISTANCE_VERTICAL = parent.DELAY_PER_DISTANCE_VERTICAL;
+		IPIN_BASE_COST = parent.IPIN_BASE_COST;
+		
+		int[] region = this.getDieRegion(die);
+		
+		this.binaryHeap = parent.binaryHeap;
+		this.lookahead = parent.lookahead;
+		this.seedNetTree = parent.seedNetTree;
+		this.bbInitialMargin = parent.bbInitialMargin;
+		this.bbStep = parent.bbStep;
+		this.bbCongestedReroutes = parent.bbCongestedReroutes;
+		this.sllAssignment = parent.sllAssignment;
+		this.sllWindow = parent.sllWindow;
+		this.splitSLLSearch = parent.splitSLLSearch;
+		this.numThreads = parent.numThreads;
+		this.workers = new RouteWorker[this.numThreads];
+		for(int i = 0; i < this.numThreads; i++) {
+			this.workers[i] = new RouteWorker(this, region[0], region[1]);
+		}
+		this.worker = this.workers[0];
+		
+		this.partitionMarginX = parent.partitionMarginX;
+		this.partitionMarginY = parent.partitionMarginY;
+		
+		this.costNodes = new ArrayList<>();
+		for(RouteNode node : this.rrg.getRouteNodes()) {
+			if(node.ylow >= region[0] && node.yhigh <= region[1]) {
+				this.costNodes.add(node);
+			}
+		}
+		this.overuseIndex = new OveruseIndex();
+		this.initOveruseIndex();
+		this.routeDiesParallel = false;
+		
+		//The timing graph is only updated by the parent router
+		this.incrementalTiming = false;
+		this.fullTimingInterval = parent.fullTimingInterval;
+		
+		//Checkpoints are only written when the dies are routed sequentially
+		this.checkpointFile = null;
+		this.checkpointInterval = 0;
+		this.resumeFile = null;
+		this.ecoFile = null;
+		this.metrics = parent.metrics;
+		this.metricsFile = null;
+		this.routeAll = parent.routeAll;
+		
+		this.routeTimers = new RouteTimers();
+	}
+	
+	@Override
+	public RouteGraph getRouteGraph() {
+		return this.rrg.getRouteGraph();
+	}
+	@Override
+	public RouteQueue createQueue() {
+		if(this.binaryHeap) {
+			return new BinaryHeap();
+		} else {
+			return new ComparatorQueue(this.rrg.getRouteGraph());
+		}
+	}
+	@Override
+	public float getPresFac() {
+		return this.pres_fac;
+	}
+	@Override
+	public float getAlphaWLD() {
+		return this.alphaWLD;
+	}
+	@Override
+	public float getAlphaTD() {
+		return this.alphaTD;
+	}
+	@Override
+	public float getCostPerDistanceHorizontal() {
+		return COST_PER_DISTANCE_HORIZONTAL;
+	}
+	@Override
+	public float getCostPerDistanceVertical() {
+		return COST_PER_DISTANCE_VERTICAL;
+	}
+	@Override
+	public float getDelayPerDistanceHorizontal() {
+		return DELAY_PER_DISTANCE_HORIZONTAL;
+	}
+	@Override
+	public float getDelayPerDistanceVertical() {
+		return DELAY_PER_DISTANCE_VERTICAL;
+	}
+	@Override
+	public float getIpinBaseCost() {
+		return IPIN_BASE_COST;
+	}
+	@Override
+	public RouterLookahead getLookahead() {
+		return this.lookahead;
+	}
+	@Override
+	public boolean seedNetTree() {
+		return this.seedNetTree;
+	}
+	@Override
+	public boolean splitSLLSearch() {
+		return this.splitSLLSearch;
+	}
+	@Override
+	public int getBBStep() {
+		return this.bbStep;
+	}
+	@Override
+	public int getBBCongestedReroutes() {
+		return this.bbCongestedReroutes;
+	}
+	
+	/**
+	 * The first and last row of a die, the first and last die
+	 * also contain the io rows at the edge of the device.
+	 */
+	private int[] getDieRegion(int die) {
+		int dieBoundary = this.rrg.getDieBoundary();
+		int yMin = die == 0 ? 0 : die * dieBoundary;
+		int yMax = die == this.totDie - 1 ? Integer.MAX_VALUE : (die + 1) * dieBoundary - 1;
+		return new int[] {yMin, yMax};
+	}
+	
 	private float getAverageCost(RouteNodeType type) {
 		float averageCost = 0;
 		int divider = 0;
@@ -114,6 +426,15 @@ public class ConnectionRouter {
 		}
 		return averageDelay / divider;
 	}
+	private int getMaxWireSpan(RouteNodeType type) {
+		int maxSpan = 0;
+		for(RouteNode node : this.rrg.getRouteNodes()) {
+			if(node.type.equals(type)) {
+				maxSpan = Math.max(maxSpan, Math.max(node.xhigh - node.xlow, node.yhigh - node.ylow));
+			}
+		}
+		return maxSpan;
+	}
 	
 	private void printManhattanDistance() {
 		for(int numDie = 0; numDie < this.totDie; numDie++) {
@@ -224,14 +545,25 @@ public class ConnectionRouter {
     	System.out.printf("--------------------------------------------------------------------------------------------------------------\n");
     	System.out.println("Runtime " + timeMilliseconds + " ms");
     	System.out.println("Num iterations: " + this.itry);
-		System.out.println("Connections routed: " + this.connectionsRouted);
+		int connectionsRouted = 0, nodesExpanded = 0;
+		int growthsUnreachable = 0, growthsCongested = 0, splitSearches = 0;
+		for(RouteWorker worker : this.workers) {
+			connectionsRouted += worker.connectionsRouted;
+			nodesExpanded += worker.nodesExpanded;
+			splitSearches += worker.splitSearches;
+			growthsUnreachable += worker.growthsUnreachable;
+			growthsCongested += worker.growthsCongested;
+		}
+		System.out.println("Connections routed: " + connectionsRouted);
 
-		System.out.println("Connections rerouted: " + (this.connectionsRouted - this.circuitSLL.getSLLConnections().size()));
+		System.out.println("Connections rerouted: " + (connectionsRouted - this.circuitSLL.getSLLConnections().size()));
 		for(int i = 0; i < this.totDie; i++) {
-			System.out.println("Connections rerouted: " + (this.connectionsRouted - this.circuitDie[i].getConnections().size()) + " for die " + i);			
+			System.out.println("Connections rerouted: " + (connectionsRouted - this.circuitDie[i].getConnections().size()) + " for die " + i);			
 		}
 		
-		System.out.println("Nodes expanded: " + this.nodesExpanded);
+		System.out.println("Nodes expanded: " + nodesExpanded);
+		if(this.splitSLLSearch) System.out.println("SLL split searches: " + splitSearches);
+		this.printBoundingBoxStatistics(growthsUnreachable, growthsCongested);
 		System.out.printf("--------------------------------------------------------------------------------------------------------------\n");
 		System.out.print(this.routeTimers);
 		System.out.printf("--------------------------------------------------------------------------------------------------------------\n\n");
@@ -239,10 +571,31 @@ public class ConnectionRouter {
     	return timeMilliseconds;
     }
     
+    /**
+     * The number of bounding box growths, the connections that ended with
+     * the bounding box of their net and the average area of the bounding
+     * box of a connection relative to the bounding box of its net.
+     */
+    private void printBoundingBoxStatistics(int growthsUnreachable, int growthsCongested) {
+    	List<Connection> connections = this.getAllConnections();
+    	int netBoundingBox = 0;
+    	double areaRatio = 0;
+    	for(Connection con : connections) {
+    		if(con.hasNetBoundingBox()) netBoundingBox++;
+    		
+    		Net net = con.net;
+    		int netArea = (net.x_max_b - net.x_min_b) * (net.y_max_b - net.y_min_b);
+    		areaRatio += netArea > 0 ? (double) con.boundingBoxArea() / netArea : 1;
+    	}
+    	
+		System.out.println("BB growths unreachable: " + growthsUnreachable);
+		System.out.println("BB growths congested: " + growthsCongested);
+		System.out.println("Connections with net BB: " + netBoundingBox + " of " + connections.size());
+		System.out.printf("Average BB area: %.1f%% of the net BB\n", connections.isEmpty() ? 0 : 100 * areaRatio / connections.size());
+    }
+    
     private void doRouting(int nrOfTrials, int fixOpins) {
     	
-
-       final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
        this.timingGraphSLL.calculatePlacementEstimatedWireDelay();
        this.timingGraphSLL.calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
 
@@ -259,6 +612,17 @@ public class ConnectionRouter {
 		System.out.printf("%-22s | %.2f\n", "Min reroute crit", MIN_REROUTE_CRITICALITY);
 		System.out.printf("%-22s | %d\n", "Max per crit con", MAX_PERCENTAGE_CRITICAL_CONNECTIONS);
 		System.out.printf("%-22s | %.1f\n", "Pres fac mult", this.pres_fac_mult);
+		System.out.printf("%-22s | %d\n", "Route threads", this.numThreads);
+		System.out.printf("%-22s | %b\n", "Route dies parallel", this.routeDiesParallel);
+		System.out.printf("%-22s | %s\n", "Route queue", this.binaryHeap ? "heap" : "priority_queue");
+		System.out.printf("%-22s | %s\n", "Route lookahead", this.lookahead != null ? "map" : "classic");
+		System.out.printf("%-22s | %b\n", "Route net tree", this.seedNetTree);
+		System.out.printf("%-22s | %d\n", "BB initial margin", this.bbInitialMargin);
+		System.out.printf("%-22s | %d\n", "BB step", this.bbStep);
+		System.out.printf("%-22s | %d\n", "BB congested reroutes", this.bbCongestedReroutes);
+		System.out.printf("%-22s | %s\n", "SLL assignment", this.sllAssignment ? "window " + this.sllWindow : "off");
+		System.out.printf("%-22s | %b\n", "SLL split search", this.splitSLLSearch);
+		System.out.printf("%-22s | %b\n", "Incremental timing", this.incrementalTiming);
 		
         System.out.printf("-----------------------------------------------------------------------------------------------------------------------\n");
         System.out.printf("%9s  %9s  %8s  %8s  %12s  %9s  %11s  %17s  %11s  %9s\n", "Iteration", "Die Number",  "AlphaWLD", "AlphaTD", "Reroute Crit", "Time (ms)", "Conn routed", "Overused RR Nodes", "Wire-Length", "Max Delay");
@@ -266,175 +630,471 @@ public class ConnectionRouter {
         
 
 		
-        this.runningCroute(nrOfTrials, fixOpins, this.totDie);
-		for(int i = 0; i < this.totDie; i++) {
-			this.currentDie = i;
+        //The interposer pass has the number of dies as die number
+        int startPass = this.totDie;
+        if(this.resumeFile != null) {
+        	startPass = this.resume();
+        } else if(this.ecoFile != null) {
+        	this.restorePreviousRouting();
+        }
+        
+        int firstDie = 0;
+        if(startPass == this.totDie) {
+        	if(this.sllAssignment && this.routeAll) {
+        		this.assignSLLWires();
+        	}
+        	this.runningCroute(nrOfTrials, fixOpins, this.totDie);
+        } else if(startPass < 0) {
+        	firstDie = this.totDie;
+        } else {
+        	firstDie = startPass;
+        }
+        
+        //The interposer nets are fixed now, the dies don't share any route node
+        boolean diesParallel = this.routeDiesParallel && this.totDie > 1 && firstDie == 0 && this.resumePass < 0;
+        if(diesParallel && !this.diesHaveSeparateRegions()) {
+        	System.out.println("The blocks of the dies overlap, the dies are routed sequentially");
+        	diesParallel = false;
+        }
+        
+        if(diesParallel) {
+        	this.runningCrouteDiesParallel(nrOfTrials, fixOpins);
+        } else {
+        	for(int i = firstDie; i < this.totDie; i++) {
+        		this.currentDie = i;
 
-			this.runningCroute(nrOfTrials, fixOpins, this.currentDie);
-		}
+        		this.runningCroute(nrOfTrials, fixOpins, this.currentDie);
+        	}
+        }
 
+		this.shutdownExecutor();
+		this.writeMetrics();
 
 		return;
     }
     
+    private void writeMetrics() {
+    	if(this.metricsFile == null) {
+    		return;
+    	}
+    	try {
+    		this.metrics.write(this.metricsFile);
+    		System.out.println("Wrote the routing metrics to " + this.metricsFile);
+    	} catch(IOException error) {
+    		System.out.println("Failed to write the routing metrics " + this.metricsFile + ": " + error.getMessage());
+    	}
+    }
+    
+    /**
+     * Assign the SLL wires before the interposer pass and shrink the
+     * bounding boxes of the crossing connections around their new wire.
+     */
+    private void assignSLLWires() {
+    	this.routeTimers.sllAssignment.start();
+    	SLLAssignment assignment = new SLLAssignment(this.rrg, this.circuitSLL.getSLLNets(), this.sllWindow);
+    	assignment.assign();
+    	for(Connection con : this.circuitSLL.getSLLConnections()) {
+    		if(con.getAssignedSLLWire() != null) {
+    			con.initBoundingBox(this.bbInitialMargin);
+    		}
+    	}
+    	this.routeTimers.sllAssignment.finish();
+    }
+    
+    private void shutdownExecutor() {
+		if(this.executor != null) {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		this.timingGraphSLL.shutdownTimingExecutor();
+    }
+    
     
     
     private void runningCroute(int nrOfTrials, int fixOpins, int dieNumber) {
-        boolean validRouting;
-    	this.nodesTouched.clear();
-    	this.queue.clear();
-		
-    	float initial_pres_fac = 0.5f;
-		float pres_fac_mult = this.pres_fac_mult;
-		float acc_fac = 1;
-		this.pres_fac = initial_pres_fac;
-		
-		this.itry = 1;
-		List<Connection> sortedListOfConnections = new ArrayList<>();
-		List<Net> sortedListOfNets = new ArrayList<>();
-
-		if(dieNumber == this.totDie) {
-			sortedListOfConnections.addAll(this.circuitSLL.getSLLConnections());
-			sortedListOfNets.addAll(this.circuitSLL.getSLLNets());
-		}else {
-			sortedListOfConnections.addAll(this.circuitDie[this.currentDie].getConnections());
-			sortedListOfNets.addAll(this.circuitDie[this.currentDie].getNets());
-		}
-
-		//Sorting the list in ascending order
-		Collections.sort(sortedListOfConnections, Comparators.FanoutConnection);
-		Collections.sort(sortedListOfNets, Comparators.FanoutNet);
+    	this.initialisePass(dieNumber);
+    	if(dieNumber == this.resumePass) {
+    		this.itry = this.resumeItry;
+    		this.pres_fac = this.resumePresFac;
+    		this.resumePass = -1;
+    	}
         
         while (this.itry <= nrOfTrials) {
         	long iterationStart = System.nanoTime();
 
-        	this.connectionsRoutedIteration = 0;
-        	validRouting = true;
-        	
-        	//Fix opins in order of high fanout nets
-        	this.routeTimers.fixOpin.start();
-        	if(this.itry >= fixOpins) {
-            	for(Net net : sortedListOfNets) {
-            		if(!net.hasOpin()) {
-                		Opin opin = net.getMostUsedOpin();
-            			if(!opin.isOpin) {
-                			net.setOpin(opin);
-                			opin.isOpin = true;
-                		}
-            		}
-            	}
-        	}
-        	this.routeTimers.fixOpin.finish();
-        	
-        	this.routeTimers.setRerouteCriticality.start();
-        	this.setRerouteCriticality(sortedListOfConnections);
-        	this.routeTimers.setRerouteCriticality.finish();
-
-        	//Route Connections
-        	for(Connection con : sortedListOfConnections) {
-					if (this.itry == 1) {
-						this.routeTimers.firstIteration.start();
-						this.routeConnection(con);
-						this.routeTimers.firstIteration.finish();
-					}else if (con.congested()) {
-	
-						this.routeTimers.rerouteCongestion.start();
-						this.routeConnection(con);
-						this.routeTimers.rerouteCongestion.finish();
+        	boolean validRouting = this.routeIteration(fixOpins);
 
-						
-					}else if (con.net.hasOpin() && !con.getOpin().equals(con.net.getOpin())) {
-						this.routeTimers.rerouteOpin.start();
-						this.routeConnection(con);
-						this.routeTimers.rerouteOpin.finish();
-						
-					} else if (con.getCriticality() > REROUTE_CRITICALITY) {
+			this.updateTiming();
 
-						this.routeTimers.rerouteCritical.start();
-						this.routeConnection(con);
-						this.routeTimers.rerouteCritical.finish();
-					}
-
-				if(con.congested()) validRouting = false;
-				if(!con.net.hasOpin()) validRouting = false;		
+			//Check if the routing is valid, if realizable return, the routing succeeded
+			boolean finished = this.finishIteration(validRouting, iterationStart);
+			this.writeCheckpoint(dieNumber, finished);
+			if(finished) {
+				return;
 			}
+		}
 
-        	if(validRouting) this.fixIllegalTrees(sortedListOfConnections, dieNumber);
-
-			String maxDelayString = String.format("%9s", "---");
-			this.routeTimers.updateTiming.start();
-
-			float maxDelay = 0;
-
-			this.timingGraphSLL.calculateActualWireDelay();
+		this.printFailedPass(nrOfTrials);
+    }
+    
+    /**
+     * Write a checkpoint every checkpointInterval iterations and after
+     * the last iteration of a pass. A failed checkpoint doesn't stop the
+     * routing.
+     */
+    private void writeCheckpoint(int dieNumber, boolean passFinished) {
+    	if(this.checkpointFile == null || this.checkpointInterval <= 0) {
+    		return;
+    	}
+    	//itry is already increased if the pass is not finished
+    	if(!passFinished && (this.itry - 1) % this.checkpointInterval != 0) {
+    		return;
+    	}
+    	
+    	this.routeTimers.checkpoint.start();
+    	try {
+    		RouteCheckpoint.write(this.checkpointFile, dieNumber, passFinished, this.itry, this.pres_fac, this.rrg.getRouteNodes(), this.getAllConnections(), this.getAllNets());
+    	} catch(IOException error) {
+    		System.out.println("Failed to write the routing checkpoint " + this.checkpointFile + ": " + error.getMessage());
+    	}
+    	this.routeTimers.checkpoint.finish();
+    }
+    
+    /**
+     * Restore the routing state of the checkpoint and return the pass
+     * that has to be routed next, -1 if all passes are finished.
+     */
+    private int resume() {
+    	System.out.println("Resume the routing from " + this.resumeFile);
+    	
+    	RouteCheckpoint checkpoint;
+    	try {
+    		checkpoint = RouteCheckpoint.read(this.resumeFile, this.rrg.getRouteNodes(), this.getAllConnections(), this.getAllNets(), this.worker, con -> true, true);
+    	} catch(IOException error) {
+    		throw new RuntimeException("Failed to resume from " + this.resumeFile, error);
+    	}
+    	this.updateOveruseIndex();
+    	
+    	this.timingGraphSLL.calculateActualWireDelay();
+    	this.timingGraphSLL.calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+    	
+    	if(!checkpoint.passFinished) {
+    		this.resumePass = checkpoint.pass;
+    		this.resumeItry = checkpoint.itry;
+    		this.resumePresFac = checkpoint.pres_fac;
+    		return checkpoint.pass;
+    	} else if(checkpoint.pass == this.totDie) {
+    		return 0;
+    	} else if(checkpoint.pass + 1 < this.totDie) {
+    		return checkpoint.pass + 1;
+    	} else {
+    		return -1;
+    	}
+    }
+    
+    public boolean hasEcoCheckpoint() {
+    	return this.ecoFile != null;
+    }
+    
+    /**
+     * Blocks of which the placement changed since the routing in the ECO
+     * checkpoint, the SLL blocks are given by the name of their net.
+     */
+    public void setMovedBlocks(Set<String> movedBlocks, Set<String> movedSLLNets) {
+    	this.movedBlocks = movedBlocks;
+    	this.movedSLLNets = movedSLLNets;
+    }
+    
+    /**
+     * Restore the routing of the ECO checkpoint, except for the connections
+     * of which the source or sink block moved and the connections of the
+     * nets of which an SLL block moved. The congestion cost starts from
+     * scratch. In the first iteration of each pass only these connections
+     * and the congested, critical and OPIN connections are routed.
+     */
+    private void restorePreviousRouting() {
+    	System.out.println("Start from the routing in " + this.ecoFile);
+    	
+    	try {
+    		RouteCheckpoint.read(this.ecoFile, this.rrg.getRouteNodes(), this.getAllConnections(), this.getAllNets(), this.worker, this::keepRouting, false);
+    	} catch(IOException error) {
+    		throw new RuntimeException("Failed to read the previous routing from " + this.ecoFile, error);
+    	}
+    	this.updateOveruseIndex();
+    	this.routeAll = false;
+    	
+    	int numRipped = 0;
+    	List<Connection> connections = this.getAllConnections();
+    	for(Connection con : connections) {
+    		if(con.routeNodes.isEmpty()) numRipped++;
+    	}
+    	System.out.println("Connections to reroute: " + numRipped + " of " + connections.size());
+    }
+    private boolean keepRouting(Connection con) {
+    	return !this.movedBlocks.contains(con.source.getOwner().getName())
+    			&& !this.movedBlocks.contains(con.sink.getOwner().getName())
+    			&& !this.movedSLLNets.contains(con.netName);
+    }
+    
+    private List<Connection> getAllConnections() {
+    	List<Connection> connections = new ArrayList<>(this.circuitSLL.getSLLConnections());
+    	for(int i = 0; i < this.totDie; i++) {
+    		connections.addAll(this.circuitDie[i].getConnections());
+    	}
+    	return connections;
+    }
+    private List<Net> getAllNets() {
+    	List<Net> nets = new ArrayList<>(this.circuitSLL.getSLLNets());
+    	for(int i = 0; i < this.totDie; i++) {
+    		nets.addAll(this.circuitDie[i].getNets());
+    	}
+    	return nets;
+    }
+    
+    /**
+     * Update the wire delays and the criticalities after a routing
+     * iteration. With incremental timing a full analysis is still done
+     * every fullTimingInterval updates to bound the rounding errors of
+     * the incremental updates.
+     */
+    private void updateTiming() {
+		this.routeTimers.updateTiming.start();
+		this.timingGraphSLL.calculateActualWireDelay();
+		if(this.incrementalTiming && this.numTimingUpdates % this.fullTimingInterval != 0) {
+			this.timingGraphSLL.updateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
+		} else {
 			this.timingGraphSLL.calculateArrivalRequiredAndCriticality(MAX_CRITICALITY, CRITICALITY_EXPONENT);
-			maxDelay = this.timingGraphSLL.getMaxDelay();
-					
-			maxDelayString = String.format("%9.3f", maxDelay);
-
-			this.routeTimers.updateTiming.finish();
-			
-			//Calculate statistics
-			this.routeTimers.calculateStatistics.start();
-			
-			int numRouteNodes = this.rrg.getRouteNodes().size();
-			int overUsed = this.getNumOverusedAndIllegalNodes(sortedListOfConnections);
-			double overUsePercentage = 100.0 * (double)overUsed / numRouteNodes;
-			
-			int wireLength = this.rrg.congestedTotalWireLengt();
-			
-			this.routeTimers.calculateStatistics.finish();
-			
-			//Runtime
-			long iterationEnd = System.nanoTime();
-			int rt = (int) Math.round((iterationEnd-iterationStart) * Math.pow(10, -6));
-			
-			System.out.printf("%9d  %9d  %8.2f  %8.2f  %12.3f  %9d  %11d  %8d  %6.2f%%  %11d  %s\n", this.itry, dieNumber, this.alphaWLD, this.alphaTD, REROUTE_CRITICALITY, rt, this.connectionsRoutedIteration, overUsed, overUsePercentage, wireLength, maxDelayString);
-	        
-
-			//Check if the routing is valid, if realizable return, the routing succeeded
-			if (validRouting) {
+		}
+		this.numTimingUpdates++;
+		this.routeTimers.updateTiming.finish();
+    }
+    
+    /**
+     * Route the dies concurrently, one router per die. The iterations of
+     * the dies run in lockstep: all active dies route one iteration, then
+     * the shared timing graph is updated once and each die updates the
+     * cost of the route nodes in its own region. A die that converged
+     * stops, the others continue with their own pres_fac schedule.
+     */
+    private void runningCrouteDiesParallel(int nrOfTrials, int fixOpins) {
+    	List<ConnectionRouter> activeRouters = new ArrayList<>();
+    	List<ConnectionRouter> dieRouters = new ArrayList<>();
+    	for(int i = 0; i < this.totDie; i++) {
+    		ConnectionRouter dieRouter = new ConnectionRouter(this, i);
+    		dieRouter.initialisePass(i);
+    		dieRouters.add(dieRouter);
+    		activeRouters.add(dieRouter);
+    	}
+    	
+    	if(this.checkpointFile != null && this.checkpointInterval > 0) {
+    		System.out.println("No checkpoints are written while the dies are routed in parallel");
+    	}
+    	
+    	ExecutorService dieExecutor = Executors.newFixedThreadPool(this.totDie);
+    	while(!activeRouters.isEmpty()) {
+    		long iterationStart = System.nanoTime();
+    		
+    		List<Future<Boolean>> futures = new ArrayList<>();
+    		for(ConnectionRouter dieRouter : activeRouters) {
+    			futures.add(dieExecutor.submit(() -> dieRouter.routeIteration(fixOpins)));
+    		}
+    		boolean[] validRouting = new boolean[activeRouters.size()];
+    		for(int i = 0; i < futures.size(); i++) {
+    			try {
+    				validRouting[i] = futures.get(i).get();
+    			} catch (InterruptedException | ExecutionException error) {
+    				dieExecutor.shutdownNow();
+    				throw new RuntimeException("Parallel die routing failed", error);
+    			}
+    		}
+    		
+    		this.updateTiming();
+    		
+    		List<ConnectionRouter> stillActive = new ArrayList<>();
+    		for(int i = 0; i < activeRouters.size(); i++) {
+    			ConnectionRouter dieRouter = activeRouters.get(i);
+    			if(!dieRouter.finishIteration(validRouting[i], iterationStart)) {
+    				if(dieRouter.itry <= nrOfTrials) {
+    					stillActive.add(dieRouter);
+    				} else {
+    					dieRouter.printFailedPass(nrOfTrials);
+    				}
+    			}
+    		}
+    		activeRouters = stillActive;
+    	}
+    	dieExecutor.shutdown();
+    	
+    	for(ConnectionRouter dieRouter : dieRouters) {
+    		dieRouter.shutdownExecutor();
+    		for(RouteWorker dieWorker : dieRouter.workers) {
+    			this.worker.connectionsRouted += dieWorker.connectionsRouted;
+    			this.worker.nodesExpanded += dieWorker.nodesExpanded;
+    		}
+    		this.routeTimers.add(dieRouter.routeTimers);
+    		this.itry = Math.max(this.itry, dieRouter.itry);
+    	}
+    }
+    
+    /**
+     * Returns true if every die only has blocks in its own row band of the
+     * device. In that case the per-die searches can be restricted to their
+     * own band and never share a route node.
+     */
+    private boolean diesHaveSeparateRegions() {
+    	for(int i = 0; i < this.totDie; i++) {
+    		int[] region = this.getDieRegion(i);
+    		for(GlobalBlock block : this.circuitDie[i].getGlobalBlocks()) {
+    			if(block.getRow() < region[0] || block.getRow() + block.getType().getHeight() - 1 > region[1]) {
+    				return false;
+    			}
+    		}
+    	}
+    	return true;
+    }
+    
+    private void initialisePass(int dieNumber) {
+    	for(RouteWorker worker : this.workers) {
+    		worker.clear();
+    	}
+    	this.passDie = dieNumber;
+		this.pres_fac = INITIAL_PRES_FAC;
+		
+		this.itry = 1;
+		this.sortedListOfConnections = new ArrayList<>();
+		this.sortedListOfNets = new ArrayList<>();
 
-				for(Connection con : sortedListOfConnections) {
-		        	int wirelength = 0;
-		        	for(RouteNode nodes: con.routeNodes) {
-		        		if(nodes.isWire) {
-		        			wirelength = wirelength + nodes.wireLength();
-		        		}
-		        	}
+		if(dieNumber == this.totDie) {
+			this.sortedListOfConnections.addAll(this.circuitSLL.getSLLConnections());
+			this.sortedListOfNets.addAll(this.circuitSLL.getSLLNets());
+		}else {
+			this.sortedListOfConnections.addAll(this.circuitDie[this.currentDie].getConnections());
+			this.sortedListOfNets.addAll(this.circuitDie[this.currentDie].getNets());
+		}
 
-		        }
-				return;
-			}
-			
-			//Updating the cost factors
-			this.routeTimers.updateCost.start();
-			if (this.itry == 1) {
-				this.pres_fac = initial_pres_fac;
-			} else {
-				this.pres_fac *= pres_fac_mult;
+		//Sorting the list in ascending order
+		Collections.sort(this.sortedListOfConnections, Comparators.FanoutConnection);
+		Collections.sort(this.sortedListOfNets, Comparators.FanoutNet);
+		
+		this.partitionTree = null;
+		if(this.numThreads > 1) {
+			int maxDepth = 2 + (int) Math.ceil(Math.log(this.numThreads) / Math.log(2));
+			this.partitionTree = new PartitionTree(this.sortedListOfNets, this.sortedListOfConnections, this.partitionMarginX, this.partitionMarginY, maxDepth);
+			System.out.print(this.partitionTree);
+			if(this.executor == null) {
+				this.executor = Executors.newFixedThreadPool(this.numThreads);
 			}
-			this.updateCost(this.pres_fac, acc_fac);
-			this.routeTimers.updateCost.finish();
-			
-			this.itry++;
-
 		}
+    }
+    
+    private boolean routeIteration(int fixOpins) {
+    	for(RouteWorker worker : this.workers) {
+    		worker.startIteration();
+    	}
+    	boolean validRouting = true;
+    	
+    	//Fix opins in order of high fanout nets
+    	this.routeTimers.fixOpin.start();
+    	if(this.itry >= fixOpins) {
+        	for(Net net : this.sortedListOfNets) {
+        		if(!net.hasOpin()) {
+            		Opin opin = net.getMostUsedOpin();
+        			if(!opin.isOpin) {
+            			net.setOpin(opin);
+            			opin.isOpin = true;
+            		}
+        		}
+        	}
+    	}
+    	this.routeTimers.fixOpin.finish();
+    	
+    	this.routeTimers.setRerouteCriticality.start();
+    	this.setRerouteCriticality(this.sortedListOfConnections);
+    	this.routeTimers.setRerouteCriticality.finish();
+
+    	//Route Connections
+    	if(this.partitionTree != null) {
+    		this.routeTimers.routeParallel.start();
+    		this.routeParallel(this.partitionTree);
+    		this.routeTimers.routeParallel.finish();
+    		
+    		for(Connection con : this.sortedListOfConnections) {
+    			if(con.congested()) validRouting = false;
+    			if(!con.net.hasOpin()) validRouting = false;
+    		}
+    	} else {
+        	for(Connection con : this.sortedListOfConnections) {
+        		this.rerouteConnection(this.worker, this.routeTimers, con);
+        		
+        		if(con.congested()) validRouting = false;
+        		if(!con.net.hasOpin()) validRouting = false;
+        	}
+    	}
 
+    	this.updateOveruseIndex();
+    	if(validRouting) this.fixIllegalTrees(this.sortedListOfConnections, this.passDie);
+    	
+    	return validRouting;
+    }
+    
+    /**
+     * Print the statistics of the iteration and update the cost factors.
+     * Returns true if the routing of this pass is valid.
+     */
+    private boolean finishIteration(boolean validRouting, long iterationStart) {
+		String maxDelayString = String.format("%9.3f", this.timingGraphSLL.getMaxDelay());
+		
+		//Calculate statistics
+		this.routeTimers.calculateStatistics.start();
+		
+		int numRouteNodes = this.costNodes.size();
+		this.updateOveruseIndex();
+		int overUsed = this.overuseIndex.numOverusedAndIllegalNodes();
+		double overUsePercentage = 100.0 * (double)overUsed / numRouteNodes;
+		
+		int wireLength = this.wireLength;
+		
+		this.routeTimers.calculateStatistics.finish();
+		
+		//Runtime
+		long iterationEnd = System.nanoTime();
+		int rt = (int) Math.round((iterationEnd-iterationStart) * Math.pow(10, -6));
+		
+		int connectionsRoutedIteration = 0;
+		for(RouteWorker worker : this.workers) {
+			connectionsRoutedIteration += worker.connectionsRoutedIteration;
+		}
+		
+		System.out.printf("%9d  %9d  %8.2f  %8.2f  %12.3f  %9d  %11d  %8d  %6.2f%%  %11d  %s\n", this.itry, this.passDie, this.alphaWLD, this.alphaTD, REROUTE_CRITICALITY, rt, connectionsRoutedIteration, overUsed, overUsePercentage, wireLength, maxDelayString);
+		this.metrics.add(this.passDie, this.itry, rt, this.pres_fac, this.workers, overUsed, wireLength, this.timingGraphSLL.getMaxDelay());
 
+		if (validRouting) {
+			return true;
+		}
+		
+		//Updating the cost factors
+		this.routeTimers.updateCost.start();
+		if (this.itry == 1) {
+			this.pres_fac = INITIAL_PRES_FAC;
+		} else {
+			this.pres_fac *= this.pres_fac_mult;
+		}
+		this.updateCost(this.pres_fac, ACC_FAC);
+		this.routeTimers.updateCost.finish();
+		
+		this.itry++;
+		
+		return false;
+    }
+    
+    private void printFailedPass(int nrOfTrials) {
 		if (this.itry == nrOfTrials + 1) {
 			System.out.println("Routing failled after " + this.itry + " trials!");
 			
 			int maxNameLength = 0;
 			
-			Set<RouteNode> overused = new HashSet<>();
-			for (Connection conn: sortedListOfConnections) {
-				for (RouteNode node: conn.routeNodes) {
-					if (node.overUsed() || node.illegal()) {
-						overused.add(node);
-					}
-				}
-			}
+			this.updateOveruseIndex();
+			List<RouteNode> overused = this.overuseIndex.getNodes();
 			for (RouteNode node: overused) {
 				if (node.overUsed()) {
 					if(node.toString().length() > maxNameLength) {
@@ -452,33 +1112,131 @@ public class ConnectionRouter {
 		}
     }
     
-    private int getNumOverusedAndIllegalNodes(List<Connection> connections) {
-        Set<Integer> overUsed = new HashSet<>();
-		for (Connection conn : connections) {
-			for (RouteNode node : conn.routeNodes) {
-				if (node.overUsed() || node.illegal()) {
-					overUsed.add(node.hashCode());
+    /**
+     * Index the route nodes that are already full, e.g. by an earlier
+     * routing pass, and sum the wire length of the used wires. After this
+     * the index and the wire length are updated from the changes that
+     * the workers collect.
+     */
+    private void initOveruseIndex() {
+    	this.overuseIndex.addAll(this.costNodes);
+    	
+		int totalWireLength = 0;
+		for(RouteNode routeNode : this.costNodes) {
+			if(routeNode.isWire) {
+				if(routeNode.used()) {
+					totalWireLength += routeNode.wireLength() * routeNode.routeNodeData.occupation;
 				}
 			}
 		}
-		return overUsed.size();
+		this.wireLength = totalWireLength;
     }
-    private int getNumIllegalNodes(List<Connection> connections) {
-        Set<Integer> illegal = new HashSet<>();
-		for (Connection con : connections) {
-			for (RouteNode node : con.routeNodes) {
-				if (node.illegal()) {
-					illegal.add(node.hashCode());
-				}
-			}
-		}
-		return illegal.size();
+    private void updateOveruseIndex() {
+    	for(RouteWorker worker : this.workers) {
+    		this.overuseIndex.addAll(worker.overuseCandidates);
+    		worker.overuseCandidates.clear();
+    		
+    		this.wireLength += worker.wireLength;
+    		worker.wireLength = 0;
+    	}
+    	this.overuseIndex.prune();
+    }
+    
+    /**
+     * Route the partitions level by level. The partitions of one level
+     * are spatially independent, each thread routes a fixed subset of
+     * them in the sorted order of the connections, so the result does
+     * not depend on the thread scheduling.
+     */
+    private void routeParallel(PartitionTree partitionTree) {
+    	for(List<Partition> level : partitionTree.getLevels()) {
+    		int numTasks = Math.min(this.numThreads, level.size());
+    		List<Future<?>> futures = new ArrayList<>();
+    		
+    		//The timers are not thread safe, each task times its reroutes on its own timers
+    		RouteTimers[] taskTimers = new RouteTimers[numTasks];
+    		for(int i = 0; i < numTasks; i++) {
+    			final int first = i;
+    			final RouteWorker worker = this.workers[i];
+    			final RouteTimers timers = taskTimers[i] = new RouteTimers();
+    			futures.add(this.executor.submit(() -> {
+    				for(int p = first; p < level.size(); p += numTasks) {
+    					for(Connection con : level.get(p).connections) {
+    						this.rerouteConnection(worker, timers, con);
+    					}
+    				}
+    			}));
+    		}
+    		
+    		for(Future<?> future : futures) {
+    			try {
+    				future.get();
+    			} catch (InterruptedException | ExecutionException error) {
+    				throw new RuntimeException("Parallel routing failed", error);
+    			}
+    		}
+    		for(RouteTimers timers : taskTimers) {
+    			this.routeTimers.add(timers);
+    		}
+    	}
+    }
+    
+    /**
+     * Reroute the connection if it has a reason to in this iteration. The
+     * reroute is counted in the metrics of the worker and timed on the
+     * timer of its reason.
+     */
+    private void rerouteConnection(RouteWorker worker, RouteTimers timers, Connection con) {
+    	int reason = this.rerouteReason(con);
+    	Timer timer;
+    	switch(reason) {
+    		case RouteMetrics.FIRST:
+    		case RouteMetrics.UNROUTED:
+    			timer = timers.firstIteration;
+    			break;
+    		case RouteMetrics.CONGESTION:
+    			timer = timers.rerouteCongestion;
+    			break;
+    		case RouteMetrics.OPIN:
+    			timer = timers.rerouteOpin;
+    			break;
+    		case RouteMetrics.CRITICAL:
+    			timer = timers.rerouteCritical;
+    			break;
+    		default:
+    			return;
+    	}
+    	
+    	worker.reroutesIteration[reason]++;
+    	timer.start();
+    	worker.routeConnection(con);
+    	timer.finish();
+    }
+    
+    /**
+     * The reason to reroute the connection in this iteration, -1 if the
+     * connection keeps its route.
+     */
+    private int rerouteReason(Connection con) {
+    	if(this.itry == 1 && this.routeAll) {
+    		return RouteMetrics.FIRST;
+    	} else if(con.routeNodes.isEmpty()) {
+    		return RouteMetrics.UNROUTED;
+    	} else if(con.congested()) {
+    		return RouteMetrics.CONGESTION;
+    	} else if(con.net.hasOpin() && !con.getOpin().equals(con.net.getOpin())) {
+    		return RouteMetrics.OPIN;
+    	} else if(con.getCriticality() > REROUTE_CRITICALITY) {
+    		return RouteMetrics.CRITICAL;
+    	} else {
+    		return -1;
+    	}
     }
     
     private void fixIllegalTrees(List<Connection> connections, int dieNumber) {
 		this.routeTimers.rerouteIllegal.start();
 		List<Net> allNets = new ArrayList<>();
-		int numIllegalNodes = this.getNumIllegalNodes(connections);
+		int numIllegalNodes = this.overuseIndex.numIllegalNodes();
 		
 		if (numIllegalNodes > 0) {
 			
@@ -530,7 +1288,7 @@ public class ConnectionRouter {
 					}
 					//Replace the path with the path from the connection with maximum criticality
 					for(Connection illegalConnection : illegalConnections) {
-						this.ripup(illegalConnection);
+						this.worker.ripup(illegalConnection);
 						
 						//Remove illegal path from routing tree
 						while(!illegalConnection.routeNodes.remove(illegalConnection.routeNodes.size() - 1).equals(illegalNode));
@@ -540,7 +1298,7 @@ public class ConnectionRouter {
 							illegalConnection.addRouteNode(newRouteNode);
 						}
 						
-						this.add(illegalConnection);
+						this.worker.add(illegalConnection);
 					}
 
 				}
@@ -553,310 +1311,25 @@ public class ConnectionRouter {
     private void setRerouteCriticality(List<Connection> connections) {
     	//Limit number of critical connections
     	REROUTE_CRITICALITY = MIN_REROUTE_CRITICALITY;
-    	this.criticalConnections.clear();
 
     	int maxNumberOfCriticalConnections = (int) (connections.size() * 0.01 * MAX_PERCENTAGE_CRITICAL_CONNECTIONS);
     	
+    	if(this.criticalities.length < connections.size()) {
+    		this.criticalities = new float[connections.size()];
+    	}
+    	int numCriticalConnections = 0;
     	for(Connection con : connections) {
     		if(con.getCriticality() > REROUTE_CRITICALITY) {
-    			this.criticalConnections.add(con);
+    			this.criticalities[numCriticalConnections++] = con.getCriticality();
     		}
     	}
     	
-    	if(this.criticalConnections.size() > maxNumberOfCriticalConnections) {
-    		Collections.sort(this.criticalConnections, Comparators.ConnectionCriticality);
-    		REROUTE_CRITICALITY = this.criticalConnections.get(maxNumberOfCriticalConnections).getCriticality();
+    	//The criticality of the connection at maxNumberOfCriticalConnections in descending order, without sorting
+    	if(numCriticalConnections > maxNumberOfCriticalConnections) {
+    		REROUTE_CRITICALITY = FloatSelection.select(this.criticalities, numCriticalConnections, numCriticalConnections - 1 - maxNumberOfCriticalConnections);
     	}
     }
     
-    private void routeConnection(Connection con) {
-
-    	this.ripup(con);
-    	this.route(con);
-    	this.add(con);
-    }
-	private void ripup(Connection con) {
-
-		RouteNode parent = null;
-		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
-			RouteNode node = con.routeNodes.get(i);
-			
-			RouteNodeData data = node.routeNodeData;
-			
-			data.removeSource(con.source);
-			
-			if (parent == null) {
-				parent = node;
-			} else {
-				data.removeParent(parent);
-				parent = node;
-			}
-			
-			// Calculation of present congestion penalty
-			node.updatePresentCongestionPenalty(this.pres_fac);
-		}
-	}
-	private void add(Connection con) {
-
-		RouteNode parent = null;
-		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
-			RouteNode node = con.routeNodes.get(i);
-			
-			RouteNodeData data = node.routeNodeData;
-
-			data.addSource(con.source);
-
-			if (parent == null) {
-				parent = node;
-			} else {
-				data.addParent(parent);
-				parent = node;
-			}
-			
-			// Calculation of present congestion penalty
-			node.updatePresentCongestionPenalty(this.pres_fac);
-		}
-	}
-	private boolean route(Connection con) {
-		this.connectionsRouted++;
-		this.connectionsRoutedIteration++;
-	
-		// Clear Routing
-		con.resetConnection();
-
-		// Clear Queue
-		this.queue.clear();
-		
-		// Set target flag sink
-		RouteNode sink = con.sinkRouteNode;
-		sink.target = true;
-		
-		// Add source to queue
-		RouteNode source = con.sourceRouteNode;
-
-		this.addNodeToQueue(source, null, 0, 0);
-
-		// Start Dijkstra / directed search
-		while (!targetReached()) {
-
-			this.expandFirstNode(con);
-		}
-		
-		// Reset target flag sink
-		sink.target = false;
-		
-		// Save routing in connection class
-		this.saveRouting(con);
-		
-		// Reset path cost from Dijkstra Algorithm
-		this.resetPathCost();
-
-		return true;
-	}
-	
-
-	private void saveRouting(Connection con) {
-		RouteNode rn = con.sinkRouteNode;
-		
-		while (rn != null) {
-			con.addRouteNode(rn);
-			rn = rn.routeNodeData.prev;
-		}
-	}
-
-	private boolean targetReached() {
-		RouteNode queueHead = this.queue.peek().node;
-		if(queueHead == null){
-			System.out.println("queue is empty");			
-			return false;
-		} else {
-			return queueHead.target;
-		}
-	}
-	
-	private void resetPathCost() {
-		for (RouteNodeData node : this.nodesTouched) {
-			node.touched = false;
-		}
-		this.nodesTouched.clear();
-	}
-
-	private void expandFirstNode(Connection con) {
-		this.nodesExpanded++;
-		
-		if (this.queue.isEmpty()) {
-			System.out.println(con.netName + " " + con.source.getPortName() + " " + con.sink.getPortName());
-			throw new RuntimeException("Queue is empty: target unreachable?");
-		}
-
-		RouteNode node = this.queue.poll().node;
-
-		for (RouteNode child : node.children) {
-			
-			if(child != null) {
-
-				//CHANX OR CHANY
-				if (child.isWire) {
-					if (con.isInBoundingBoxLimit(child)) {
-						this.addNodeToQueue(node, child, con);
-
-					}
-				
-				//OPIN
-				} else if (child.type == RouteNodeType.OPIN) {
-					if(con.net.hasOpin()) {
-						if (child.equals(con.net.getOpin())) {
-							this.addNodeToQueue(node, child, con);
-						}
-					} else if (!child.isOpin) {
-						this.addNodeToQueue(node, child, con);
-					}
-				
-				//IPIN
-				} else if (child.type == RouteNodeType.IPIN) {
-					if(child.children[0].target) {
-						this.addNodeToQueue(node, child, con);
-					}else{
-						this.addNodeToQueue(node, child, con);
-					}
-					
-				//SINK
-				} else if (child.type == RouteNodeType.SINK) {
-					this.addNodeToQueue(node, child, con);
-				}	
-			}
-
-		}
-	}
-	
-	private void addNodeToQueue(RouteNode node, RouteNode child, Connection con) {
-		RouteNodeData data = child.routeNodeData;
-		int countSourceUses = data.countSourceUses(con.source);
-		
-		float partial_path_cost = node.routeNodeData.getPartialPathCost();
-		
-		// PARTIAL PATH COST
-		float new_partial_path_cost = partial_path_cost + (1 - con.getCriticality()) * this.getRouteNodeCost(child, con, countSourceUses) + con.getCriticality() * child.getDelay();
-		
-		// LOWER BOUND TOTAL PATH COST
-		// This is just an estimate and not an absolute lower bound.
-		// The routing algorithm is therefore not A* and optimal.
-		// It's directed search and heuristic.
-		float new_lower_bound_total_path_cost;
-		if(child.isWire) {
-			//Expected remaining cost
-			RouteNode target = con.sinkRouteNode;
-			
-			this.set_expected_distance_to_target(child, target);
-			
-			float expected_distance_cost, expected_timing_cost;
-			
-			//assumption that all wires have the same base cost, change it to the actual cost read from the file.
-			if(child.type.equals(RouteNodeType.CHANX)) {
-				expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * COST_PER_DISTANCE_VERTICAL;
-				expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_HORIZONTAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_VERTICAL;
-			} else {
-				expected_distance_cost = this.distance_same_dir * COST_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * COST_PER_DISTANCE_HORIZONTAL;
-				expected_timing_cost = this.distance_same_dir * DELAY_PER_DISTANCE_VERTICAL + this.distance_ortho_dir * DELAY_PER_DISTANCE_HORIZONTAL;
-			}
-
-			float expected_wire_cost = expected_distance_cost / (1 + countSourceUses) + IPIN_BASE_COST;
-			new_lower_bound_total_path_cost = new_partial_path_cost + this.alphaWLD * (1 - con.getCriticality()) * expected_wire_cost + this.alphaTD * con.getCriticality() * expected_timing_cost;
-
-		} else {
-			new_lower_bound_total_path_cost = new_partial_path_cost;
-		}
-		
-		this.addNodeToQueue(child, node, new_partial_path_cost, new_lower_bound_total_path_cost);
-	}
-
-
-	
-	public void set_expected_distance_to_target(RouteNode node, RouteNode target) {
-		/*************************************************
-		 * Function adapted and modified from VPR 7.0.7, *
-		 * get_expected_segs_to_target in route_timing.c *
-		 *************************************************/
-		RouteNodeType type = node.type;
-		short ylow, yhigh, xlow, xhigh;
-		int no_need_to_pass_by_clb;
-		
-		short target_x = target.xlow;
-		short target_y = target.ylow;
-		
-		if (type == RouteNodeType.CHANX) { 
-			ylow = node.ylow;
-			xhigh = node.xhigh;
-			xlow = node.xlow;
-
-			if (ylow > target_y) { /* Coming from a row above target? */
-				this.distance_ortho_dir = ylow - target_y + 1;
-				no_need_to_pass_by_clb = 1;
-			} else if (ylow < target_y - 1) { /* Below the CLB bottom? */
-				this.distance_ortho_dir = target_y - ylow;
-				no_need_to_pass_by_clb = 1;
-			} else { /* In a row that passes by target CLB */
-				this.distance_ortho_dir = 0;
-				no_need_to_pass_by_clb = 0;
-			}
-
-			if (xlow > target_x + no_need_to_pass_by_clb) {
-				this.distance_same_dir = xlow - no_need_to_pass_by_clb - target_x;
-			} else if (xhigh < target_x - no_need_to_pass_by_clb) {
-				this.distance_same_dir = target_x - no_need_to_pass_by_clb - xhigh;
-			} else {
-				this.distance_same_dir = 0;
-			}
-			
-			return;
-			
-		} else { /* CHANY */
-			ylow = node.ylow;
-			yhigh = node.yhigh;
-			xlow = node.xlow;
-
-			if (xlow > target_x) { /* Coming from a column right of target? */
-				this.distance_ortho_dir = xlow - target_x + 1;
-				no_need_to_pass_by_clb = 1;
-			} else if (xlow < target_x - 1) { /* Left of and not adjacent to the CLB? */
-				this.distance_ortho_dir = target_x - xlow;
-				no_need_to_pass_by_clb = 1;
-			} else { /* In a column that passes by target CLB */
-				this.distance_ortho_dir = 0;
-				no_need_to_pass_by_clb = 0;
-			}
-
-			if (ylow > target_y + no_need_to_pass_by_clb) {
-				this.distance_same_dir = ylow - no_need_to_pass_by_clb - target_y;
-			} else if (yhigh < target_y - no_need_to_pass_by_clb) {
-				this.distance_same_dir = target_y - no_need_to_pass_by_clb - yhigh;
-			} else {
-				this.distance_same_dir = 0;
-			}
-			
-			return;
-		}
-	}
-	
-	
-	private void addNodeToQueue(RouteNode node, RouteNode prev, float new_partial_path_cost, float new_lower_bound_total_path_cost) {
-		RouteNodeData data = node.routeNodeData;
-		//source node data
-		if(!data.touched) {
-			this.nodesTouched.add(data);
-			data.setLowerBoundTotalPathCost(new_lower_bound_total_path_cost);
-			data.setPartialPathCost(new_partial_path_cost);
-			data.prev = prev;
-			this.queue.add(new QueueElement(node, new_lower_bound_total_path_cost));
-			
-		} else if (data.updateLowerBoundTotalPathCost(new_lower_bound_total_path_cost)) { //queue is sorted by lower bound total cost
-			data.setPartialPathCost(new_partial_path_cost);
-			data.prev = prev;
-			this.queue.add(new QueueElement(node, new_lower_bound_total_path_cost));
-		}
-	}
-
-	
     public void calculateExtraNode() {
     	for(Net sllNets: this.circuitSLL.getSLLNets()) {
     		RouteNode oldNode = null, currentNode;
@@ -887,36 +1360,12 @@ public class ConnectionRouter {
     }
     
     
-	private float getRouteNodeCost(RouteNode node, Connection con, int countSourceUses) {
-		RouteNodeData data = node.routeNodeData;
-		
-		boolean containsSource = countSourceUses != 0;
-		
-		//Present congestion cost
-		float pres_cost;
-		if (containsSource) {
-			int overoccupation = data.numUniqueSources() - node.capacity;
-			if (overoccupation < 0) {
-				pres_cost = 1;
-			} else {
-				pres_cost = 1 + overoccupation * this.pres_fac;
-			}
-		} else {
-			pres_cost = data.pres_cost;
-		}
-		
-		//Bias cost
-		float bias_cost = 0;
-		if(node.isWire) {
-			Net net = con.net;
-			bias_cost = 0.5f * node.base_cost / net.fanout * (Math.abs(node.centerx - net.x_geo) + Math.abs(node.centery - net.y_geo)) / net.hpwl;
-		}
-
-		return node.base_cost * data.acc_cost * pres_cost / (1 + countSourceUses) + bias_cost;
-	}
-	
 	private void updateCost(float pres_fac, float acc_fac){
-		for (RouteNode node : this.rrg.getRouteNodes()) {
+		//The other nodes are below capacity, their present congestion cost is 1
+		updateCost(this.overuseIndex.getNodes(), pres_fac, acc_fac);
+	}
+	static void updateCost(List<RouteNode> nodes, float pres_fac, float acc_fac) {
+		for (RouteNode node : nodes) {
 			RouteNodeData data = node.routeNodeData;
 
 			int overuse = data.occupation - node.capacity;
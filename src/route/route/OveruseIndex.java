@@ -0,0 +1,87 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import route.circuit.resource.RouteNode;
+
+/**
+ * The route nodes of a router that are full (occupation at or above the
+ * capacity) or illegal. Only these nodes get a new present congestion
+ * cost after an iteration, and the overused nodes among them are the
+ * ones that are reported in the statistics.
+ *
+ * The workers collect the nodes that become full or illegal while they
+ * route, the router adds them to the index after the connections are
+ * routed and removes the nodes that are no longer full or illegal.
+ *
+ * The membership is kept per index, the routers of the dies each have
+ * their own index on the same route nodes.
+ */
+class OveruseIndex {
+	private final List<RouteNode> nodes;
+	private final BitSet indexed;
+
+	OveruseIndex() {
+		this.nodes = new ArrayList<>();
+		this.indexed = new BitSet();
+	}
+
+	void add(RouteNode node) {
+		if(!this.indexed.get(node.routeNodeData.index) && isIndexed(node)) {
+			this.indexed.set(node.routeNodeData.index);
+			this.nodes.add(node);
+		}
+	}
+	void addAll(Collection<RouteNode> nodes) {
+		for(RouteNode node : nodes) {
+			this.add(node);
+		}
+	}
+
+	/**
+	 * Remove the nodes that are no longer full or illegal, the order of
+	 * the other nodes doesn't change.
+	 */
+	void prune() {
+		int size = 0;
+		for(int i = 0; i < this.nodes.size(); i++) {
+			RouteNode node = this.nodes.get(i);
+			if(isIndexed(node)) {
+				this.nodes.set(size++, node);
+			} else {
+				this.indexed.clear(node.routeNodeData.index);
+			}
+		}
+		this.nodes.subList(size, this.nodes.size()).clear();
+	}
+
+	List<RouteNode> getNodes() {
+		return this.nodes;
+	}
+
+	int numOverusedAndIllegalNodes() {
+		int count = 0;
+		for(RouteNode node : this.nodes) {
+			if(node.overUsed() || node.illegal()) {
+				count++;
+			}
+		}
+		return count;
+	}
+	int numIllegalNodes() {
+		int count = 0;
+		for(RouteNode node : this.nodes) {
+			if(node.illegal()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	static boolean isIndexed(RouteNode node) {
+		return node.routeNodeData.occupation >= node.capacity || node.illegal();
+	}
+}
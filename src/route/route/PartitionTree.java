@@ -0,0 +1,147 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive bisection of the nets of one routing pass, based on the
+ * bounding boxes of the nets. The nets that cross a cutline stay in
+ * the partition itself, all other nets go to the child partition on
+ * their side of the cutline.
+ *
+ * A net is only assigned to a side of a cutline if its bounding box
+ * stays at least a margin away from the cutline, on the low side as well
+ * as on the high side. A search expands the wires that overlap the
+ * bounding box of its connection, and such a wire can stick out of the
+ * box by its length. The margin covers the longest wire and the pins
+ * that can be reached from it, so the nets of two partitions on the same
+ * level never expand the same route node and can be routed concurrently.
+ */
+public class PartitionTree {
+	private static final int MIN_NETS_PER_PARTITION = 16;
+
+	private final int marginX, marginY;
+	private final int maxDepth;
+
+	private final List<List<Partition>> levels;
+	private final Map<Net, Partition> netToPartition;
+
+	public PartitionTree(List<Net> nets, List<Connection> connections, int marginX, int marginY, int maxDepth) {
+		this.marginX = marginX;
+		this.marginY = marginY;
+		this.maxDepth = maxDepth;
+
+		this.levels = new ArrayList<>();
+		this.netToPartition = new HashMap<>();
+
+		this.build(nets, 0);
+
+		//The connections keep the order of the given list within each partition
+		for(Connection con : connections) {
+			this.netToPartition.get(con.net).connections.add(con);
+		}
+	}
+
+	private void build(List<Net> nets, int depth) {
+		Partition partition = new Partition();
+		if(this.levels.size() == depth) {
+			this.levels.add(new ArrayList<Partition>());
+		}
+		this.levels.get(depth).add(partition);
+
+		List<Net> low = new ArrayList<>();
+		List<Net> high = new ArrayList<>();
+
+		if(depth < this.maxDepth && nets.size() >= MIN_NETS_PER_PARTITION) {
+			List<Net> lowX = new ArrayList<>(), highX = new ArrayList<>(), crossX = new ArrayList<>();
+			List<Net> lowY = new ArrayList<>(), highY = new ArrayList<>(), crossY = new ArrayList<>();
+
+			int scoreX = this.cut(nets, true, lowX, highX, crossX);
+			int scoreY = this.cut(nets, false, lowY, highY, crossY);
+
+			if(scoreX <= scoreY) {
+				low = lowX;
+				high = highX;
+				partition.nets.addAll(crossX);
+			} else {
+				low = lowY;
+				high = highY;
+				partition.nets.addAll(crossY);
+			}
+		}
+
+		//A cut that leaves one side empty does not create any parallelism
+		if(low.isEmpty() || high.isEmpty()) {
+			partition.nets.clear();
+			partition.nets.addAll(nets);
+		} else {
+			this.build(low, depth + 1);
+			this.build(high, depth + 1);
+		}
+
+		for(Net net : partition.nets) {
+			this.netToPartition.put(net, partition);
+		}
+	}
+
+	/**
+	 * Split the nets at the median of the bounding box centers. Returns
+	 * the number of nets that has to be routed before both sides can
+	 * start, i.e. the crossing nets plus the nets on the largest side.
+	 */
+	private int cut(List<Net> nets, boolean horizontal, List<Net> low, List<Net> high, List<Net> cross) {
+		int[] centers = new int[nets.size()];
+		for(int i = 0; i < nets.size(); i++) {
+			Net net = nets.get(i);
+			if(horizontal) {
+				centers[i] = (net.x_min_b + net.x_max_b) / 2;
+			} else {
+				centers[i] = (net.y_min_b + net.y_max_b) / 2;
+			}
+		}
+		Arrays.sort(centers);
+		int cutline = centers[centers.length / 2];
+
+		int margin = horizontal ? this.marginX : this.marginY;
+		for(Net net : nets) {
+			int min = horizontal ? net.x_min_b : net.y_min_b;
+			int max = horizontal ? net.x_max_b : net.y_max_b;
+
+			if(max + margin <= cutline) {
+				low.add(net);
+			} else if(min - margin >= cutline) {
+				high.add(net);
+			} else {
+				cross.add(net);
+			}
+		}
+
+		return cross.size() + Math.max(low.size(), high.size());
+	}
+
+	public List<List<Partition>> getLevels() {
+		return this.levels;
+	}
+
+	@Override
+	public String toString() {
+		String result = "";
+		for(int depth = 0; depth < this.levels.size(); depth++) {
+			int numConnections = 0, maxConnections = 0;
+			for(Partition partition : this.levels.get(depth)) {
+				numConnections += partition.connections.size();
+				maxConnections = Math.max(maxConnections, partition.connections.size());
+			}
+			result += String.format("\tlevel %2d | %5d partitions | %8d cons | largest %8d cons\n", depth, this.levels.get(depth).size(), numConnections, maxConnections);
+		}
+		return result;
+	}
+
+	public static class Partition {
+		final List<Net> nets = new ArrayList<>();
+		final List<Connection> connections = new ArrayList<>();
+	}
+}
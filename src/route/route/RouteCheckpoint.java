@@ -0,0 +1,163 @@
+package route.route;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+import route.circuit.resource.Opin;
+import route.circuit.resource.RouteNode;
+
+/**
+ * Binary checkpoint of the state of the connection router after an
+ * iteration: the routing pass, the iteration that comes next, pres_fac,
+ * the present and accumulated congestion cost of every route node, the
+ * route of every connection and the fixed OPIN of every net.
+ *
+ * The connections and nets are stored in the order of the circuits, a
+ * checkpoint can only be restored for the same circuit, placement and
+ * routing resource graph. The criticalities are not stored, they are
+ * recalculated from the restored routing.
+ *
+ * Layout, big endian:
+ *   header: magic, version, number of route nodes, number of connections, number of nets
+ *   state: pass, pass finished, iteration, pres_fac
+ *   route nodes: pres_cost, acc_cost
+ *   connections: id, number of route nodes, route node indices from sink to source
+ *   nets: index of the fixed OPIN or -1
+ */
+class RouteCheckpoint {
+	private static final int MAGIC = 0x52434B50;
+	private static final int VERSION = 1;
+
+	int pass;
+	boolean passFinished;
+	int itry;
+	float pres_fac;
+
+	static void write(File file, int pass, boolean passFinished, int itry, float pres_fac, List<RouteNode> routeNodes, List<Connection> connections, List<Net> nets) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(routeNodes.size());
+			output.writeInt(connections.size());
+			output.writeInt(nets.size());
+
+			output.writeInt(pass);
+			output.writeBoolean(passFinished);
+			output.writeInt(itry);
+			output.writeFloat(pres_fac);
+
+			for(RouteNode node : routeNodes) {
+				output.writeFloat(node.routeNodeData.pres_cost);
+				output.writeFloat(node.routeNodeData.acc_cost);
+			}
+
+			for(Connection con : connections) {
+				output.writeInt(con.id);
+				output.writeInt(con.routeNodes.size());
+				for(RouteNode node : con.routeNodes) {
+					output.writeInt(node.routeNodeData.index);
+				}
+			}
+
+			for(Net net : nets) {
+				output.writeInt(net.hasOpin() ? net.getOpin().routeNodeData.index : -1);
+			}
+		}
+
+		//Never leave a half written checkpoint behind
+		if(!tmpFile.renameTo(file)) {
+			file.delete();
+			if(!tmpFile.renameTo(file)) {
+				throw new IOException("Failed to rename " + tmpFile + " to " + file);
+			}
+		}
+	}
+
+	/**
+	 * Restore the routing and the congestion cost. The routes are added
+	 * with the worker, so the occupation and the overuse index are
+	 * rebuilt, the costs are overwritten afterwards. Only the connections
+	 * accepted by restore get their route back, the fixed OPIN of a net
+	 * is only restored if one of its connections is restored.
+	 */
+	static RouteCheckpoint read(File file, List<RouteNode> routeNodes, List<Connection> connections, List<Net> nets, RouteWorker worker, Predicate<Connection> restore, boolean restoreCosts) throws IOException {
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException(file + " is not a routing checkpoint of this version");
+			}
+			int numNodes = input.readInt();
+			int numConnections = input.readInt();
+			int numNets = input.readInt();
+			if(numNodes != routeNodes.size() || numConnections != connections.size() || numNets != nets.size()) {
+				throw new IOException("The checkpoint has " + numNodes + " route nodes, " + numConnections + " connections and " + numNets + " nets, the circuit has " + routeNodes.size() + ", " + connections.size() + " and " + nets.size());
+			}
+
+			RouteCheckpoint checkpoint = new RouteCheckpoint();
+			checkpoint.pass = input.readInt();
+			checkpoint.passFinished = input.readBoolean();
+			checkpoint.itry = input.readInt();
+			checkpoint.pres_fac = input.readFloat();
+
+			float[] presCost = new float[numNodes];
+			float[] accCost = new float[numNodes];
+			for(int i = 0; i < numNodes; i++) {
+				presCost[i] = input.readFloat();
+				accCost[i] = input.readFloat();
+			}
+
+			for(Connection con : connections) {
+				int id = input.readInt();
+				if(id != con.id) {
+					throw new IOException("Connection " + con.id + " is stored as connection " + id + " in the checkpoint");
+				}
+				worker.ripup(con);
+				con.resetConnection();
+				int size = input.readInt();
+				if(restore.test(con)) {
+					for(int i = 0; i < size; i++) {
+						con.addRouteNode(routeNodes.get(input.readInt()));
+					}
+					worker.add(con);
+				} else {
+					input.skipBytes(4 * size);
+				}
+			}
+
+			for(Net net : nets) {
+				int opin = input.readInt();
+				if(opin >= 0 && !net.hasOpin() && isRouted(net)) {
+					Opin fixedOpin = (Opin) routeNodes.get(opin);
+					net.setOpin(fixedOpin);
+					fixedOpin.isOpin = true;
+				}
+			}
+
+			if(restoreCosts) {
+				for(int i = 0; i < numNodes; i++) {
+					RouteNodeData data = routeNodes.get(i).routeNodeData;
+					data.pres_cost = presCost[i];
+					data.acc_cost = accCost[i];
+				}
+			}
+
+			return checkpoint;
+		}
+	}
+	private static boolean isRouted(Net net) {
+		for(Connection con : net.getConnections()) {
+			if(!con.routeNodes.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
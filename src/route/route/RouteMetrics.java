@@ -0,0 +1,136 @@
+package route.route;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One record per routing iteration and pass, filled from the counters
+ * of the workers after the iteration. The records are exported as CSV
+ * if the file name ends with .csv, as a JSON array otherwise.
+ *
+ * The die routers of the concurrent die passes share the metrics of
+ * the main router, the records are added after the lockstep iteration.
+ */
+class RouteMetrics {
+	//Reasons to reroute a connection
+	static final int FIRST = 0, UNROUTED = 1, CONGESTION = 2, OPIN = 3, CRITICAL = 4;
+	static final int NUM_REASONS = 5;
+
+	private static final String[] COLUMNS = {
+		"pass", "iteration", "time_ms", "pres_fac", "connections_routed",
+		"reroute_first", "reroute_unrouted", "reroute_congestion", "reroute_opin", "reroute_critical",
+		"nodes_expanded", "nodes_pushed", "queue_peak", "expansions_per_connection",
+		"overused_nodes", "wire_length", "max_delay", "gc_time_ms"};
+
+	private static class Record {
+		int pass, iteration, timeMs;
+		float presFac;
+		int connectionsRouted;
+		final int[] reroutes = new int[NUM_REASONS];
+		long nodesExpanded, nodesPushed;
+		int queuePeak;
+		int overusedNodes, wireLength;
+		float maxDelay;
+		long gcTimeMs;
+
+		Object[] values() {
+			double expansionsPerConnection = this.connectionsRouted > 0 ? (double) this.nodesExpanded / this.connectionsRouted : 0;
+			return new Object[] {
+				this.pass, this.iteration, this.timeMs, this.presFac, this.connectionsRouted,
+				this.reroutes[FIRST], this.reroutes[UNROUTED], this.reroutes[CONGESTION], this.reroutes[OPIN], this.reroutes[CRITICAL],
+				this.nodesExpanded, this.nodesPushed, this.queuePeak, expansionsPerConnection,
+				this.overusedNodes, this.wireLength, this.maxDelay, this.gcTimeMs};
+		}
+	}
+
+	private final List<Record> records;
+	private long gcTime;
+
+	RouteMetrics() {
+		this.records = new ArrayList<>();
+		this.gcTime = totalGcTime();
+	}
+
+	synchronized void add(int pass, int iteration, int timeMs, float presFac, RouteWorker[] workers, int overusedNodes, int wireLength, float maxDelay) {
+		Record record = new Record();
+		record.pass = pass;
+		record.iteration = iteration;
+		record.timeMs = timeMs;
+		record.presFac = presFac;
+		for(RouteWorker worker : workers) {
+			record.connectionsRouted += worker.connectionsRoutedIteration;
+			for(int reason = 0; reason < NUM_REASONS; reason++) {
+				record.reroutes[reason] += worker.reroutesIteration[reason];
+			}
+			record.nodesExpanded += worker.nodesExpandedIteration;
+			record.nodesPushed += worker.nodesPushedIteration;
+			record.queuePeak = Math.max(record.queuePeak, worker.queuePeakIteration);
+		}
+		record.overusedNodes = overusedNodes;
+		record.wireLength = wireLength;
+		record.maxDelay = maxDelay;
+
+		long gcTime = totalGcTime();
+		record.gcTimeMs = gcTime - this.gcTime;
+		this.gcTime = gcTime;
+
+		this.records.add(record);
+	}
+
+	void write(File file) throws IOException {
+		boolean csv = file.getName().endsWith(".csv");
+		try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			if(csv) {
+				writer.write(String.join(",", COLUMNS));
+				writer.write("\n");
+				for(Record record : this.records) {
+					Object[] values = record.values();
+					for(int i = 0; i < values.length; i++) {
+						if(i > 0) writer.write(",");
+						writer.write(format(values[i]));
+					}
+					writer.write("\n");
+				}
+			} else {
+				writer.write("[");
+				for(int r = 0; r < this.records.size(); r++) {
+					Object[] values = this.records.get(r).values();
+					writer.write(r == 0 ? "\n  {" : ",\n  {");
+					for(int i = 0; i < values.length; i++) {
+						if(i > 0) writer.write(", ");
+						writer.write("\"" + COLUMNS[i] + "\": " + format(values[i]));
+					}
+					writer.write("}");
+				}
+				writer.write("\n]\n");
+			}
+		}
+	}
+
+	//NaN and infinity are not valid JSON numbers
+	private static String format(Object value) {
+		if(value instanceof Float || value instanceof Double) {
+			double number = ((Number) value).doubleValue();
+			if(Double.isNaN(number) || Double.isInfinite(number)) {
+				return "null";
+			}
+			return String.format(Locale.ROOT, "%.4f", number);
+		}
+		return value.toString();
+	}
+
+	private static long totalGcTime() {
+		long time = 0;
+		for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, bean.getCollectionTime());
+		}
+		return time;
+	}
+}
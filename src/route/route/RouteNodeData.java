@@ -1,8 +1,10 @@
 package route.route;
 
+import java.util.Arrays;
+
 import route.circuit.pin.GlobalPin;
 import route.circuit.resource.RouteNode;
-import route.util.CountingSet;
+import route.util.IntCountingSet;
 
 public class RouteNodeData {
 	public final int index;
@@ -18,8 +20,14 @@ public class RouteNodeData {
 	
 	public int occupation;
 	
-	private CountingSet<GlobalPin> sourcesSet;
-	private CountingSet<RouteNode> parentsSet;
+	//Keyed on the id of the source pin and the index of the parent node,
+	//the sets are kept once allocated so the router doesn't allocate them again
+	private IntCountingSet sourcesSet;
+	private IntCountingSet parentsSet;
+	
+	//The connections that use the node, in no particular order
+	private Connection[] users;
+	private int numUsers;
 	
     public RouteNodeData(int index) {
     	this.index = index;
@@ -31,6 +39,9 @@ public class RouteNodeData {
 		this.sourcesSet = null;
 		this.parentsSet = null;
 		
+		this.users = null;
+		this.numUsers = 0;
+		
 		this.prev = null;
 	}
 
@@ -59,9 +70,9 @@ public class RouteNodeData {
 
 	public void addSource(GlobalPin source) {
 		if(this.sourcesSet == null) {
-			this.sourcesSet = new CountingSet<GlobalPin>();
+			this.sourcesSet = new IntCountingSet();
 		}
-		this.sourcesSet.add(source);
+		this.sourcesSet.add(source.hashCode());
 	}
 	
 	public int numUniqueSources() {
@@ -72,17 +83,14 @@ public class RouteNodeData {
 	}
 	
 	public void removeSource(GlobalPin source) {
-		this.sourcesSet.remove(source);
-		if(this.sourcesSet.isEmpty()) {
-			this.sourcesSet = null;
-		}
+		this.sourcesSet.remove(source.hashCode());
 	}
 
 	public int countSourceUses(GlobalPin source) {
 		if(this.sourcesSet == null) {
 			return 0;
 		}
-		return this.sourcesSet.count(source);
+		return this.sourcesSet.count(source.hashCode());
 	}
 	
 	public int numUniqueParents() {
@@ -94,17 +102,38 @@ public class RouteNodeData {
 	
 	public void addParent(RouteNode parent) {
 		if(this.parentsSet == null) {
-			this.parentsSet = new CountingSet<RouteNode>();
+			this.parentsSet = new IntCountingSet();
 		}
-		this.parentsSet.add(parent);
+		this.parentsSet.add(parent.hashCode());
 	}
 	
 	public void removeParent(RouteNode parent) {
-		this.parentsSet.remove(parent);
-		if(this.parentsSet.isEmpty()) {
-			this.parentsSet = null;
+		this.parentsSet.remove(parent.hashCode());
+	}
+	
+	void addUser(Connection con) {
+		if(this.users == null) {
+			this.users = new Connection[2];
+		} else if(this.numUsers == this.users.length) {
+			this.users = Arrays.copyOf(this.users, 2 * this.numUsers);
+		}
+		this.users[this.numUsers++] = con;
+	}
+	void removeUser(Connection con) {
+		for(int i = 0; i < this.numUsers; i++) {
+			if(this.users[i] == con) {
+				this.users[i] = this.users[--this.numUsers];
+				this.users[this.numUsers] = null;
+				return;
+			}
 		}
 	}
+	int numUsers() {
+		return this.numUsers;
+	}
+	Connection getUser(int i) {
+		return this.users[i];
+	}
 	
 	@Override
 	public int hashCode() {
@@ -0,0 +1,20 @@
+package route.route;
+
+/**
+ * The frontier of the directed search, on the indices of the route
+ * nodes. A node can be added more than once, the entries with a higher
+ * cost than the current lower bound of the node are not removed.
+ */
+interface RouteQueue {
+	void add(int node, float cost);
+	
+	/**
+	 * Returns -1 if the queue is empty
+	 */
+	int poll();
+	int peek();
+	
+	boolean isEmpty();
+	int size();
+	void clear();
+}
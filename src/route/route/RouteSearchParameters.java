@@ -0,0 +1,32 @@
+package route.route;
+
+import route.circuit.resource.RouteGraph;
+
+/**
+ * What the search of a RouteWorker reads from its router: the graph, the
+ * frontier and the cost parameters. The present congestion factor and
+ * the weights of the cost change between the iterations of the router.
+ */
+interface RouteSearchParameters {
+	RouteGraph getRouteGraph();
+	RouteQueue createQueue();
+	
+	float getPresFac();
+	float getAlphaWLD();
+	float getAlphaTD();
+	
+	//Distance based estimate of the remaining cost, used when there is no lookahead or no entry
+	float getCostPerDistanceHorizontal();
+	float getCostPerDistanceVertical();
+	float getDelayPerDistanceHorizontal();
+	float getDelayPerDistanceVertical();
+	float getIpinBaseCost();
+	
+	//Null if the distance based estimate is used
+	RouterLookahead getLookahead();
+	
+	boolean seedNetTree();
+	boolean splitSLLSearch();
+	int getBBStep();
+	int getBBCongestedReroutes();
+}
@@ -7,10 +7,13 @@ public class RouteTimers {
 	public Timer rerouteCongestion;
 	public Timer rerouteIllegal;
 	public Timer rerouteOpin;
+	public Timer routeParallel;
 	public Timer fixOpin;
 	public Timer setRerouteCriticality;
 	public Timer calculateStatistics;
 	public Timer updateCost;
+	public Timer checkpoint;
+	public Timer sllAssignment;
 	
 	public RouteTimers() {
 		this.firstIteration = new Timer("first iteration");
@@ -19,10 +22,33 @@ public class RouteTimers {
 		this.rerouteCongestion = new Timer("reroute congestion");
 		this.rerouteIllegal = new Timer("reroute illegal");
 		this.rerouteOpin = new Timer("reroute opin");
+		this.routeParallel = new Timer("route parallel");
 		this.fixOpin = new Timer("fix opin");
 		this.setRerouteCriticality = new Timer("set reroute crit");
 		this.calculateStatistics = new Timer("calc stat");
 		this.updateCost = new Timer("update cost");
+		this.checkpoint = new Timer("checkpoint");
+		this.sllAssignment = new Timer("sll assignment");
+	}
+	
+	/**
+	 * Add the time of the timers of an other router, e.g. the routers
+	 * of the dies that are routed concurrently.
+	 */
+	public void add(RouteTimers other) {
+		this.firstIteration.add(other.firstIteration);
+		this.updateTiming.add(other.updateTiming);
+		this.rerouteCritical.add(other.rerouteCritical);
+		this.rerouteCongestion.add(other.rerouteCongestion);
+		this.rerouteIllegal.add(other.rerouteIllegal);
+		this.rerouteOpin.add(other.rerouteOpin);
+		this.routeParallel.add(other.routeParallel);
+		this.fixOpin.add(other.fixOpin);
+		this.setRerouteCriticality.add(other.setRerouteCriticality);
+		this.calculateStatistics.add(other.calculateStatistics);
+		this.updateCost.add(other.updateCost);
+		this.checkpoint.add(other.checkpoint);
+		this.sllAssignment.add(other.sllAssignment);
 	}
 	
 	@Override
@@ -34,34 +60,15 @@ public class RouteTimers {
 		result += this.rerouteIllegal;
 		result += this.rerouteOpin;
 		result += this.rerouteCritical;
+		result += this.routeParallel;
 		result += this.fixOpin;
 		result += this.setRerouteCriticality;
 		result += this.calculateStatistics;
 		result += this.updateTiming;
 		result += this.updateCost;
+		result += this.checkpoint;
+		result += this.sllAssignment;
 		
 		return result;
 	}
 }
-
-class Timer {
-	private String name;
-	private long time;
-	private long start;
-	
-	public Timer(String name) {
-		this.name = name;
-		this.time = 0;
-	}
-	
-	public void start() {
-		this.start = System.nanoTime();
-	}
-	public void finish() {
-		this.time += System.nanoTime() - this.start;
-	}
-	
-	public String toString() {
-		return String.format("%-20s %7.2f s\n", this.name, this.time * 1e-9);
-	}
-}
\ No newline at end of file
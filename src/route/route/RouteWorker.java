@@ -0,0 +1,550 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import route.circuit.resource.RouteGraph;
+import route.circuit.resource.RouteNode;
+
+/**
+ * Holds the search state of one routing thread: the route queue,
+ * the list of touched nodes and the expansion counters. The cost
+ * parameters are shared and read from the owning router through
+ * RouteSearchParameters.
+ * The search runs on the index based RouteGraph, only the routing
+ * tree of the connection is saved as RouteNode objects.
+ *
+ * Two workers may route at the same time as long as their connections
+ * never touch the same route nodes, which is guaranteed by the
+ * PartitionTree, or by restricting the workers of each die to the
+ * rows of their own die.
+ */
+class RouteWorker {
+	private final RouteSearchParameters router;
+	private final RouteGraph graph;
+
+	private final RouteQueue queue;
+	private final Collection<RouteNodeData> nodesTouched;
+
+	private int target;
+	private int distance_same_dir, distance_ortho_dir;
+
+	//Rows of the device this worker may expand, the whole device by default
+	private final int regionYMin, regionYMax;
+
+	int connectionsRouted, nodesExpanded;
+	int connectionsRoutedIteration;
+	
+	//Bounding box growths because the search ran out of nodes or the connection stayed congested
+	int growthsUnreachable, growthsCongested;
+
+	//Crossing connections that are routed in two searches through their SLL wire
+	int splitSearches;
+
+	//Counters of the current iteration, collected in the metrics of the router
+	int nodesExpandedIteration, nodesPushedIteration, queuePeakIteration;
+	final int[] reroutesIteration;
+
+	//Nodes that became full or illegal and the change of the wire length, collected by the router
+	final List<RouteNode> overuseCandidates;
+	int wireLength;
+
+	RouteWorker(RouteSearchParameters router) {
+		this(router, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+	RouteWorker(RouteSearchParameters router, int regionYMin, int regionYMax) {
+		this.router = router;
+		this.graph = router.getRouteGraph();
+
+		this.regionYMin = regionYMin;
+		this.regionYMax = regionYMax;
+
+		this.queue = router.createQueue();
+		this.nodesTouched = new ArrayList<>();
+		this.overuseCandidates = new ArrayList<>();
+		this.reroutesIteration = new int[RouteMetrics.NUM_REASONS];
+
+		this.connectionsRouted = 0;
+		this.nodesExpanded = 0;
+		this.connectionsRoutedIteration = 0;
+	}
+
+	void clear() {
+		this.nodesTouched.clear();
+		this.queue.clear();
+	}
+
+	void startIteration() {
+		this.connectionsRoutedIteration = 0;
+		this.nodesExpandedIteration = 0;
+		this.nodesPushedIteration = 0;
+		this.queuePeakIteration = 0;
+		Arrays.fill(this.reroutesIteration, 0);
+	}
+
+	void routeConnection(Connection con) {
+		if(con.congestedReroute(this.router.getBBCongestedReroutes()) && con.growBoundingBox(this.router.getBBStep())) {
+			this.growthsCongested++;
+		}
+		this.ripup(con);
+		this.route(con);
+		this.add(con);
+	}
+
+	void ripup(Connection con) {
+		RouteNode parent = null;
+		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
+			RouteNode node = con.routeNodes.get(i);
+
+			RouteNodeData data = node.routeNodeData;
+			boolean overUsed = node.overUsed();
+			int occupation = data.occupation;
+
+			data.removeSource(con.source);
+			data.removeUser(con);
+			if(overUsed) con.addOverusedNodes(-1);
+
+			if (parent == null) {
+				parent = node;
+			} else {
+				data.removeParent(parent);
+				parent = node;
+			}
+
+			// Calculation of present congestion penalty
+			node.updatePresentCongestionPenalty(this.router.getPresFac());
+
+			this.occupationChanged(node, occupation, overUsed);
+		}
+	}
+	void add(Connection con) {
+		RouteNode parent = null;
+		for(int i = con.routeNodes.size() - 1; i >=0; i--) {
+			RouteNode node = con.routeNodes.get(i);
+
+			RouteNodeData data = node.routeNodeData;
+			boolean overUsed = node.overUsed();
+			int occupation = data.occupation;
+
+			data.addSource(con.source);
+			data.addUser(con);
+
+			if (parent == null) {
+				parent = node;
+			} else {
+				data.addParent(parent);
+				parent = node;
+			}
+
+			// Calculation of present congestion penalty
+			node.updatePresentCongestionPenalty(this.router.getPresFac());
+
+			if(overUsed) con.addOverusedNodes(1);
+			this.occupationChanged(node, occupation, overUsed);
+			if(OveruseIndex.isIndexed(node)) {
+				this.overuseCandidates.add(node);
+			}
+		}
+	}
+
+	/**
+	 * Update the number of overused nodes of the connections that use the
+	 * node if the node became overused or legal, and the wire length.
+	 */
+	private void occupationChanged(RouteNode node, int oldOccupation, boolean wasOverUsed) {
+		RouteNodeData data = node.routeNodeData;
+
+		boolean overUsed = node.overUsed();
+		if(overUsed != wasOverUsed) {
+			int delta = overUsed ? 1 : -1;
+			for(int i = 0; i < data.numUsers(); i++) {
+				data.getUser(i).addOverusedNodes(delta);
+			}
+		}
+
+		if(node.isWire) {
+			this.wireLength += node.wireLength() * (data.occupation - oldOccupation);
+		}
+	}
+
+	boolean route(Connection con) {
+		this.connectionsRouted++;
+		this.connectionsRoutedIteration++;
+
+		// Clear Routing
+		con.resetConnection();
+
+		// Clear Queue
+		this.queue.clear();
+
+		// Search to the assigned SLL wire first, then from the SLL wire to the sink
+		RouteNode sllWire = con.getAssignedSLLWire();
+		if(this.router.splitSLLSearch() && sllWire != null) {
+			this.target = sllWire.routeNodeData.index;
+			this.startSearch(con);
+			this.search(con);
+
+			this.target = con.sinkRouteNode.routeNodeData.index;
+			this.continueFromNode(sllWire.routeNodeData.index, con);
+			this.splitSearches++;
+		} else {
+			// Set target sink
+			this.target = con.sinkRouteNode.routeNodeData.index;
+			this.startSearch(con);
+		}
+
+		this.search(con);
+
+		// Save routing in connection class
+		this.saveRouting(con);
+
+		// Reset path cost from Dijkstra Algorithm
+		this.resetPathCost();
+
+		return true;
+	}
+
+	// Start Dijkstra / directed search
+	private void search(Connection con) {
+		while (!targetReached()) {
+			if(this.queue.isEmpty()) {
+				// The sink can't be reached inside the bounding box of the connection
+				if(!con.growBoundingBox(this.router.getBBStep())) {
+					System.out.println(con.netName + " " + con.source.getPortName() + " " + con.sink.getPortName());
+					throw new RuntimeException("Queue is empty: target unreachable?");
+				}
+				this.growthsUnreachable++;
+				this.resetPathCost();
+				this.startSearch(con);
+			}
+			this.expandFirstNode(con);
+		}
+	}
+
+	/**
+	 * Continue the search from a node that was reached: only the path to
+	 * the node stays touched, with a lower bound that can't be improved,
+	 * so the next search can't change the path or cross it.
+	 */
+	private void continueFromNode(int node, Connection con) {
+		this.resetPathCost();
+		this.queue.clear();
+
+		for(RouteNode pathNode = this.graph.routeNodes[node]; pathNode != null; pathNode = pathNode.routeNodeData.prev) {
+			RouteNodeData data = pathNode.routeNodeData;
+			data.setLowerBoundTotalPathCost(-Float.MAX_VALUE);
+			this.nodesTouched.add(data);
+		}
+
+		RouteNodeData data = this.graph.routeNodeData[node];
+		float partial_path_cost = data.getPartialPathCost();
+		this.queue.add(node, this.getLowerBoundTotalPathCost(node, con, data.countSourceUses(con.source), partial_path_cost));
+	}
+
+	private void startSearch(Connection con) {
+		// Add source to queue
+		int source = con.sourceRouteNode.routeNodeData.index;
+
+		this.addNodeToQueue(source, -1, 0, 0);
+
+		// Add the routing tree of the net to queue
+		if(this.router.seedNetTree()) {
+			this.addNetTreeToQueue(con);
+		}
+	}
+
+	/**
+	 * The wires that are used by the other connections of the net start
+	 * in the queue, so the connection branches off the existing routing
+	 * tree instead of searching again from the source. The partial path
+	 * cost of a node in the tree only holds the delay from the source.
+	 * The nodes are added from the source to the sink of each connection
+	 * and a node is only added once, so the prev pointers always lead
+	 * back to the source.
+	 */
+	private void addNetTreeToQueue(Connection con) {
+		RouteGraph graph = this.graph;
+
+		for(Connection other : con.net.getConnections()) {
+			if(other == con || other.routeNodes.isEmpty()) continue;
+			if(other.routeNodes.get(other.routeNodes.size() - 1) != con.sourceRouteNode) continue;
+
+			int prev = -1;
+			float delay = 0;
+			for(int i = other.routeNodes.size() - 1; i >= 0; i--) {
+				int node = other.routeNodes.get(i).routeNodeData.index;
+				byte type = graph.type[node];
+
+				//The pins of the other sinks don't lead to this sink
+				if(type == RouteGraph.IPIN || type == RouteGraph.SINK) break;
+
+				delay += graph.delay[node];
+				if(prev >= 0 && !graph.routeNodeData[node].touched) {
+					if(graph.ylow[node] < this.regionYMin || graph.yhigh[node] > this.regionYMax) break;
+
+					RouteNodeData data = graph.routeNodeData[node];
+					int countSourceUses = data.countSourceUses(con.source);
+					if(countSourceUses == 0) break;
+
+					float partial_path_cost = con.getCriticality() * delay;
+					float lower_bound_total_path_cost = this.getLowerBoundTotalPathCost(node, con, countSourceUses, partial_path_cost);
+					this.addNodeToQueue(node, prev, partial_path_cost, lower_bound_total_path_cost);
+				}
+				prev = node;
+			}
+		}
+	}
+
+	private void saveRouting(Connection con) {
+		RouteNode rn = con.sinkRouteNode;
+
+		while (rn != null) {
+			con.addRouteNode(rn);
+			rn = rn.routeNodeData.prev;
+		}
+	}
+
+	private boolean targetReached() {
+		int queueHead = this.queue.peek();
+		if(queueHead == -1){
+			return false;
+		} else {
+			return queueHead == this.target;
+		}
+	}
+
+	private void resetPathCost() {
+		for (RouteNodeData node : this.nodesTouched) {
+			node.touched = false;
+		}
+		this.nodesTouched.clear();
+	}
+
+	private void expandFirstNode(Connection con) {
+		this.nodesExpanded++;
+		this.nodesExpandedIteration++;
+
+		if (this.queue.isEmpty()) {
+			System.out.println(con.netName + " " + con.source.getPortName() + " " + con.sink.getPortName());
+			throw new RuntimeException("Queue is empty: target unreachable?");
+		}
+
+		RouteGraph graph = this.graph;
+		int node = this.queue.poll();
+
+		for (int edge = graph.edgeStart[node]; edge < graph.edgeStart[node + 1]; edge++) {
+			int child = graph.edgeTarget[edge];
+
+			if(graph.ylow[child] < this.regionYMin || graph.yhigh[child] > this.regionYMax) {
+				continue;
+			}
+
+			byte type = graph.type[child];
+
+			//CHANX OR CHANY
+			if (type == RouteGraph.CHANX || type == RouteGraph.CHANY) {
+				if (con.isInBoundingBoxLimit(graph.xlow[child], graph.xhigh[child], graph.ylow[child], graph.yhigh[child]) && this.isAllowedSLLWire(child, con)) {
+					this.addNodeToQueue(node, child, con);
+				}
+
+			//OPIN
+			} else if (type == RouteGraph.OPIN) {
+				RouteNode opin = graph.routeNodes[child];
+				if(con.net.hasOpin()) {
+					if (opin.equals(con.net.getOpin())) {
+						this.addNodeToQueue(node, child, con);
+					}
+				} else if (!opin.isOpin) {
+					this.addNodeToQueue(node, child, con);
+				}
+
+			//IPIN
+			} else if (type == RouteGraph.IPIN) {
+				this.addNodeToQueue(node, child, con);
+
+			//SINK
+			} else if (type == RouteGraph.SINK) {
+				this.addNodeToQueue(node, child, con);
+			}
+		}
+	}
+
+	//A connection with an assigned SLL wire doesn't use the other SLL wires
+	private boolean isAllowedSLLWire(int child, Connection con) {
+		RouteNode sllWire = con.getAssignedSLLWire();
+		return sllWire == null || sllWire.routeNodeData.index == child || !this.graph.routeNodes[child].isSLL;
+	}
+
+	private void addNodeToQueue(int node, int child, Connection con) {
+		RouteGraph graph = this.graph;
+		RouteNodeData data = graph.routeNodeData[child];
+		int countSourceUses = data.countSourceUses(con.source);
+
+		float partial_path_cost = graph.routeNodeData[node].getPartialPathCost();
+
+		// PARTIAL PATH COST
+		float new_partial_path_cost = partial_path_cost + (1 - con.getCriticality()) * this.getRouteNodeCost(child, con, countSourceUses) + con.getCriticality() * graph.delay[child];
+
+		// LOWER BOUND TOTAL PATH COST
+		float new_lower_bound_total_path_cost = this.getLowerBoundTotalPathCost(child, con, countSourceUses, new_partial_path_cost);
+
+		this.addNodeToQueue(child, node, new_partial_path_cost, new_lower_bound_total_path_cost);
+	}
+
+	private float getLowerBoundTotalPathCost(int child, Connection con, int countSourceUses, float new_partial_path_cost) {
+		// This is just an estimate and not an absolute lower bound.
+		// The routing algorithm is therefore not A* and optimal.
+		// It's directed search and heuristic.
+		byte type = this.graph.type[child];
+		if(type == RouteGraph.CHANX || type == RouteGraph.CHANY) {
+			//Expected remaining cost
+			float expected_distance_cost, expected_timing_cost;
+
+			RouterLookahead lookahead = this.router.getLookahead();
+			int lookaheadIndex = lookahead == null ? -1 : lookahead.lookup(child, this.target);
+			if(lookaheadIndex >= 0) {
+				expected_distance_cost = lookahead.getCost(lookaheadIndex);
+				expected_timing_cost = lookahead.getDelay(lookaheadIndex);
+
+			//assumption that all wires have the same base cost, change it to the actual cost read from the file.
+			} else if(type == RouteGraph.CHANX) {
+				this.set_expected_distance_to_target(child, this.target);
+				expected_distance_cost = this.distance_same_dir * this.router.getCostPerDistanceHorizontal() + this.distance_ortho_dir * this.router.getCostPerDistanceVertical();
+				expected_timing_cost = this.distance_same_dir * this.router.getDelayPerDistanceHorizontal() + this.distance_ortho_dir * this.router.getDelayPerDistanceVertical();
+			} else {
+				this.set_expected_distance_to_target(child, this.target);
+				expected_distance_cost = this.distance_same_dir * this.router.getCostPerDistanceVertical() + this.distance_ortho_dir * this.router.getCostPerDistanceHorizontal();
+				expected_timing_cost = this.distance_same_dir * this.router.getDelayPerDistanceVertical() + this.distance_ortho_dir * this.router.getDelayPerDistanceHorizontal();
+			}
+
+			float expected_wire_cost = expected_distance_cost / (1 + countSourceUses) + this.router.getIpinBaseCost();
+			return new_partial_path_cost + this.router.getAlphaWLD() * (1 - con.getCriticality()) * expected_wire_cost + this.router.getAlphaTD() * con.getCriticality() * expected_timing_cost;
+
+		} else {
+			return new_partial_path_cost;
+		}
+	}
+
+	private void set_expected_distance_to_target(int node, int target) {
+		/*************************************************
+		 * Function adapted and modified from VPR 7.0.7, *
+		 * get_expected_segs_to_target in route_timing.c *
+		 *************************************************/
+		RouteGraph graph = this.graph;
+		short ylow, yhigh, xlow, xhigh;
+		int no_need_to_pass_by_clb;
+
+		short target_x = graph.xlow[target];
+		short target_y = graph.ylow[target];
+
+		if (graph.type[node] == RouteGraph.CHANX) {
+			ylow = graph.ylow[node];
+			xhigh = graph.xhigh[node];
+			xlow = graph.xlow[node];
+
+			if (ylow > target_y) { /* Coming from a row above target? */
+				this.distance_ortho_dir = ylow - target_y + 1;
+				no_need_to_pass_by_clb = 1;
+			} else if (ylow < target_y - 1) { /* Below the CLB bottom? */
+				this.distance_ortho_dir = target_y - ylow;
+				no_need_to_pass_by_clb = 1;
+			} else { /* In a row that passes by target CLB */
+				this.distance_ortho_dir = 0;
+				no_need_to_pass_by_clb = 0;
+			}
+
+			if (xlow > target_x + no_need_to_pass_by_clb) {
+				this.distance_same_dir = xlow - no_need_to_pass_by_clb - target_x;
+			} else if (xhigh < target_x - no_need_to_pass_by_clb) {
+				this.distance_same_dir = target_x - no_need_to_pass_by_clb - xhigh;
+			} else {
+				this.distance_same_dir = 0;
+			}
+
+			return;
+
+		} else { /* CHANY */
+			ylow = graph.ylow[node];
+			yhigh = graph.yhigh[node];
+			xlow = graph.xlow[node];
+
+			if (xlow > target_x) { /* Coming from a column right of target? */
+				this.distance_ortho_dir = xlow - target_x + 1;
+				no_need_to_pass_by_clb = 1;
+			} else if (xlow < target_x - 1) { /* Left of and not adjacent to the CLB? */
+				this.distance_ortho_dir = target_x - xlow;
+				no_need_to_pass_by_clb = 1;
+			} else { /* In a column that passes by target CLB */
+				this.distance_ortho_dir = 0;
+				no_need_to_pass_by_clb = 0;
+			}
+
+			if (ylow > target_y + no_need_to_pass_by_clb) {
+				this.distance_same_dir = ylow - no_need_to_pass_by_clb - target_y;
+			} else if (yhigh < target_y - no_need_to_pass_by_clb) {
+				this.distance_same_dir = target_y - no_need_to_pass_by_clb - yhigh;
+			} else {
+				this.distance_same_dir = 0;
+			}
+
+			return;
+		}
+	}
+
+	private void addNodeToQueue(int node, int prev, float new_partial_path_cost, float new_lower_bound_total_path_cost) {
+		RouteNodeData data = this.graph.routeNodeData[node];
+		//source node data
+		if(!data.touched) {
+			this.nodesTouched.add(data);
+			data.setLowerBoundTotalPathCost(new_lower_bound_total_path_cost);
+			data.setPartialPathCost(new_partial_path_cost);
+			data.prev = prev == -1 ? null : this.graph.routeNodes[prev];
+			this.queue.add(node, new_lower_bound_total_path_cost);
+			this.pushed();
+
+		} else if (data.updateLowerBoundTotalPathCost(new_lower_bound_total_path_cost)) { //queue is sorted by lower bound total cost
+			data.setPartialPathCost(new_partial_path_cost);
+			data.prev = prev == -1 ? null : this.graph.routeNodes[prev];
+			this.queue.add(node, new_lower_bound_total_path_cost);
+			this.pushed();
+		}
+	}
+
+	private void pushed() {
+		this.nodesPushedIteration++;
+		if(this.queue.size() > this.queuePeakIteration) {
+			this.queuePeakIteration = this.queue.size();
+		}
+	}
+
+	private float getRouteNodeCost(int node, Connection con, int countSourceUses) {
+		RouteGraph graph = this.graph;
+		RouteNodeData data = graph.routeNodeData[node];
+
+		boolean containsSource = countSourceUses != 0;
+
+		//Present congestion cost
+		float pres_cost;
+		if (containsSource) {
+			int overoccupation = data.numUniqueSources() - graph.capacity[node];
+			if (overoccupation < 0) {
+				pres_cost = 1;
+			} else {
+				pres_cost = 1 + overoccupation * this.router.getPresFac();
+			}
+		} else {
+			pres_cost = data.pres_cost;
+		}
+
+		//Bias cost
+		float bias_cost = 0;
+		if(graph.isWire(node)) {
+			Net net = con.net;
+			bias_cost = 0.5f * graph.baseCost[node] / net.fanout * (Math.abs(graph.centerx[node] - net.x_geo) + Math.abs(graph.centery[node] - net.y_geo)) / net.hpwl;
+		}
+
+		return graph.baseCost[node] * data.acc_cost * pres_cost / (1 + countSourceUses) + bias_cost;
+	}
+}
@@ -0,0 +1,422 @@
+package route.route;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import route.circuit.resource.RouteGraph;
+import route.circuit.resource.RouteNode;
+
+/**
+ * Expected cost and delay from a wire to the sink of a connection, used
+ * as the lower bound of the directed search. The table is indexed by the
+ * wire type, whether the sink is on another die than the end of the wire
+ * and the distance between the end of the wire and the sink.
+ *
+ * The table is filled with Dijkstra searches from a few sample wires of
+ * each type on each die. The cost of a path is the base cost of the wires
+ * after the sample wire, the delay is the delay of the nodes on the
+ * cheapest path up to and including the input pin. Each entry keeps the
+ * smallest cost and delay that was seen for its type and distance.
+ *
+ * The table only depends on the routing resource graph and is cached in
+ * a binary file next to the RRG dumps.
+ */
+class RouterLookahead {
+	private static final int MAGIC = 0x524C4B41;
+	private static final int VERSION = 1;
+
+	//The wires that end closest to the center and the four quarters of each die
+	private static final int SAMPLES_PER_DIE = 5;
+
+	private static final float NO_ENTRY = Float.NaN;
+
+	private final RouteGraph graph;
+	private final int dieBoundary, numDies;
+
+	//Type of each wire, -1 for the other nodes, and the coordinates where the wire ends
+	private final short[] nodeClass;
+	private final short[] endX, endY;
+	private final int numClasses;
+
+	private final int sizeX, sizeY;
+	private final float[] cost, delay;
+
+	RouterLookahead(RouteGraph graph, int dieBoundary, int numDies, File cacheFile) {
+		this.graph = graph;
+		this.dieBoundary = dieBoundary;
+		this.numDies = numDies;
+
+		this.nodeClass = new short[graph.numNodes];
+		this.endX = new short[graph.numNodes];
+		this.endY = new short[graph.numNodes];
+
+		//The interposer wires get a type of their own, even if they share the cost index of a normal wire
+		Map<Integer, Short> classes = new HashMap<>();
+		int maxX = 0, maxY = 0;
+		for(int i = 0; i < graph.numNodes; i++) {
+			maxX = Math.max(maxX, graph.xhigh[i]);
+			maxY = Math.max(maxY, graph.yhigh[i]);
+
+			if(graph.isWire(i)) {
+				RouteNode node = graph.routeNodes[i];
+				int key = 2 * node.indexedData.getIndex() + (node.isSLL ? 1 : 0);
+				Short nodeClass = classes.get(key);
+				if(nodeClass == null) {
+					nodeClass = (short) classes.size();
+					classes.put(key, nodeClass);
+				}
+				this.nodeClass[i] = nodeClass;
+
+				if(node.direction.equals("DEC_DIR")) {
+					this.endX[i] = graph.xlow[i];
+					this.endY[i] = graph.ylow[i];
+				} else {
+					this.endX[i] = graph.xhigh[i];
+					this.endY[i] = graph.yhigh[i];
+				}
+			} else {
+				this.nodeClass[i] = -1;
+			}
+		}
+		this.numClasses = classes.size();
+		this.sizeX = maxX + 1;
+		this.sizeY = maxY + 1;
+
+		int tableSize = this.numClasses * 2 * this.sizeX * this.sizeY;
+		this.cost = new float[tableSize];
+		this.delay = new float[tableSize];
+
+		long hash = this.hash();
+		if(!this.read(cacheFile, hash)) {
+			Arrays.fill(this.cost, NO_ENTRY);
+			Arrays.fill(this.delay, NO_ENTRY);
+
+			long start = System.nanoTime();
+			int numSamples = this.calculate();
+			this.fillHoles();
+			System.out.printf("Router lookahead: %d wire types, %d samples, %.2f s\n", this.numClasses, numSamples, (System.nanoTime() - start) * 1e-9);
+
+			this.write(cacheFile, hash);
+		} else {
+			System.out.println("Router lookahead: read " + cacheFile);
+		}
+	}
+
+	/**
+	 * Position of the expected cost and delay from a wire to a sink in
+	 * the table, -1 if the node is no wire or if there is no entry.
+	 */
+	int lookup(int node, int target) {
+		int nodeClass = this.nodeClass[node];
+		if(nodeClass < 0) {
+			return -1;
+		}
+
+		int dx = Math.min(Math.abs(this.graph.xlow[target] - this.endX[node]), this.sizeX - 1);
+		int dy = Math.min(Math.abs(this.graph.ylow[target] - this.endY[node]), this.sizeY - 1);
+		int crossing = this.die(this.graph.ylow[target]) != this.die(this.endY[node]) ? 1 : 0;
+
+		int index = this.index(nodeClass, crossing, dx, dy);
+		if(Float.isNaN(this.cost[index])) {
+			return -1;
+		}
+		return index;
+	}
+	float getCost(int index) {
+		return this.cost[index];
+	}
+	float getDelay(int index) {
+		return this.delay[index];
+	}
+
+	private int index(int nodeClass, int crossing, int dx, int dy) {
+		return ((nodeClass * 2 + crossing) * this.sizeX + dx) * this.sizeY + dy;
+	}
+	private int die(int y) {
+		return Math.min(y / this.dieBoundary, this.numDies - 1);
+	}
+
+	/*************************************************
+	 * Sampled Dijkstra searches                     *
+	 *************************************************/
+	private int calculate() {
+		//Sample wires: per type and die the wire that ends closest to each reference point
+		int[][] samples = new int[this.numClasses * this.numDies][SAMPLES_PER_DIE];
+		int[][] sampleDistance = new int[this.numClasses * this.numDies][SAMPLES_PER_DIE];
+		for(int[] row : samples) Arrays.fill(row, -1);
+		for(int[] row : sampleDistance) Arrays.fill(row, Integer.MAX_VALUE);
+
+		int[] refX = {this.sizeX / 2, this.sizeX / 4, 3 * this.sizeX / 4, this.sizeX / 4, 3 * this.sizeX / 4};
+		int[] refY = {2, 1, 1, 3, 3};
+
+		for(int i = 0; i < this.graph.numNodes; i++) {
+			if(this.nodeClass[i] < 0) continue;
+
+			int die = this.die(this.endY[i]);
+			int dieHeight = die == this.numDies - 1 ? this.sizeY - die * this.dieBoundary : this.dieBoundary;
+			int row = this.nodeClass[i] * this.numDies + die;
+			for(int r = 0; r < SAMPLES_PER_DIE; r++) {
+				int y = die * this.dieBoundary + refY[r] * dieHeight / 4;
+				int distance = Math.abs(this.endX[i] - refX[r]) + Math.abs(this.endY[i] - y);
+				if(distance < sampleDistance[row][r]) {
+					sampleDistance[row][r] = distance;
+					samples[row][r] = i;
+				}
+			}
+		}
+
+		List<Integer> sampleNodes = new ArrayList<>();
+		for(int[] row : samples) {
+			for(int sample : row) {
+				if(sample >= 0 && !sampleNodes.contains(sample)) {
+					sampleNodes.add(sample);
+				}
+			}
+		}
+
+		int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), sampleNodes.size());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int sample : sampleNodes) {
+				futures.add(executor.submit(() -> this.search(sample)));
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException error) {
+			throw new RuntimeException("Router lookahead calculation failed", error);
+		} finally {
+			executor.shutdown();
+		}
+
+		return sampleNodes.size();
+	}
+
+	private void search(int sample) {
+		RouteGraph graph = this.graph;
+
+		float[] pathCost = new float[graph.numNodes];
+		float[] pathDelay = new float[graph.numNodes];
+		boolean[] expanded = new boolean[graph.numNodes];
+		Arrays.fill(pathCost, Float.POSITIVE_INFINITY);
+
+		//Smallest cost and delay of this sample, merged in the table at the end
+		int tableSize = 2 * this.sizeX * this.sizeY;
+		float[] sampleCost = new float[tableSize];
+		float[] sampleDelay = new float[tableSize];
+		Arrays.fill(sampleCost, NO_ENTRY);
+		Arrays.fill(sampleDelay, NO_ENTRY);
+
+		int sampleDie = this.die(this.endY[sample]);
+
+		BinaryHeap heap = new BinaryHeap();
+		pathCost[sample] = 0;
+		pathDelay[sample] = 0;
+		heap.add(sample, 0);
+
+		while(!heap.isEmpty()) {
+			int node = heap.poll();
+
+			//The heap keeps duplicates, the first one has the lowest cost
+			if(expanded[node]) continue;
+			expanded[node] = true;
+
+			if(graph.type[node] == RouteGraph.IPIN) {
+				int dx = Math.min(Math.abs(graph.xlow[node] - this.endX[sample]), this.sizeX - 1);
+				int dy = Math.min(Math.abs(graph.ylow[node] - this.endY[sample]), this.sizeY - 1);
+				int crossing = this.die(graph.ylow[node]) != sampleDie ? 1 : 0;
+				int index = (crossing * this.sizeX + dx) * this.sizeY + dy;
+
+				if(!(sampleCost[index] <= pathCost[node])) sampleCost[index] = pathCost[node];
+				if(!(sampleDelay[index] <= pathDelay[node])) sampleDelay[index] = pathDelay[node];
+				continue;
+			}
+
+			for(int edge = graph.edgeStart[node]; edge < graph.edgeStart[node + 1]; edge++) {
+				int child = graph.edgeTarget[edge];
+				byte type = graph.type[child];
+
+				float childCost;
+				if(graph.isWire(child)) {
+					childCost = pathCost[node] + graph.baseCost[child];
+				} else if(type == RouteGraph.IPIN) {
+					childCost = pathCost[node];
+				} else {
+					continue;
+				}
+
+				if(childCost < pathCost[child]) {
+					pathCost[child] = childCost;
+					pathDelay[child] = pathDelay[node] + graph.delay[child];
+					heap.add(child, childCost);
+				}
+			}
+		}
+
+		int offset = this.nodeClass[sample] * tableSize;
+		synchronized(this) {
+			for(int i = 0; i < tableSize; i++) {
+				if(!Float.isNaN(sampleCost[i]) && !(this.cost[offset + i] <= sampleCost[i])) {
+					this.cost[offset + i] = sampleCost[i];
+				}
+				if(!Float.isNaN(sampleDelay[i]) && !(this.delay[offset + i] <= sampleDelay[i])) {
+					this.delay[offset + i] = sampleDelay[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Distances that no sample reached get the values of the more
+	 * expensive of the two entries that are one step closer. Entries
+	 * without a closer entry stay empty, the router uses its distance
+	 * based estimate for them.
+	 */
+	private void fillHoles() {
+		for(int nodeClass = 0; nodeClass < this.numClasses; nodeClass++) {
+			for(int crossing = 0; crossing < 2; crossing++) {
+				for(int dx = 0; dx < this.sizeX; dx++) {
+					for(int dy = 0; dy < this.sizeY; dy++) {
+						int index = this.index(nodeClass, crossing, dx, dy);
+						if(!Float.isNaN(this.cost[index])) continue;
+
+						int closer = -1;
+						if(dx > 0 && !Float.isNaN(this.cost[this.index(nodeClass, crossing, dx - 1, dy)])) {
+							closer = this.index(nodeClass, crossing, dx - 1, dy);
+						}
+						if(dy > 0 && !Float.isNaN(this.cost[this.index(nodeClass, crossing, dx, dy - 1)])) {
+							int candidate = this.index(nodeClass, crossing, dx, dy - 1);
+							if(closer < 0 || this.cost[candidate] > this.cost[closer]) {
+								closer = candidate;
+							}
+						}
+						if(closer >= 0) {
+							this.cost[index] = this.cost[closer];
+							this.delay[index] = this.delay[closer];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*************************************************
+	 * Cache file                                    *
+	 *************************************************/
+	private long hash() {
+		RouteGraph graph = this.graph;
+		CRC32 crc = new CRC32();
+
+		byte[] buffer = new byte[1 << 16];
+		int position = 0;
+		for(int i = 0; i < graph.numNodes; i++) {
+			if(position + 32 > buffer.length) {
+				crc.update(buffer, 0, position);
+				position = 0;
+			}
+			position = putInt(buffer, position, graph.type[i] << 16 | this.nodeClass[i] & 0xFFFF);
+			position = putInt(buffer, position, graph.xlow[i] << 16 | graph.xhigh[i] & 0xFFFF);
+			position = putInt(buffer, position, graph.ylow[i] << 16 | graph.yhigh[i] & 0xFFFF);
+			position = putInt(buffer, position, this.endX[i] << 16 | this.endY[i] & 0xFFFF);
+			position = putInt(buffer, position, Float.floatToIntBits(graph.baseCost[i]));
+			position = putInt(buffer, position, Float.floatToIntBits(graph.delay[i]));
+			position = putInt(buffer, position, graph.edgeStart[i]);
+		}
+		for(int i = 0; i < graph.numEdges; i++) {
+			if(position + 4 > buffer.length) {
+				crc.update(buffer, 0, position);
+				position = 0;
+			}
+			position = putInt(buffer, position, graph.edgeTarget[i]);
+		}
+		position = putInt(buffer, position, this.dieBoundary);
+		position = putInt(buffer, position, this.numDies);
+		position = putInt(buffer, position, SAMPLES_PER_DIE);
+		crc.update(buffer, 0, position);
+
+		return crc.getValue();
+	}
+	private static int putInt(byte[] buffer, int position, int value) {
+		buffer[position] = (byte) (value >>> 24);
+		buffer[position + 1] = (byte) (value >>> 16);
+		buffer[position + 2] = (byte) (value >>> 8);
+		buffer[position + 3] = (byte) value;
+		return position + 4;
+	}
+
+	private boolean read(File file, long hash) {
+		if(file == null || !file.exists()) {
+			return false;
+		}
+
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if(input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != hash) {
+				return false;
+			}
+			if(input.readInt() != this.numClasses || input.readInt() != this.sizeX || input.readInt() != this.sizeY) {
+				return false;
+			}
+			for(int i = 0; i < this.cost.length; i++) {
+				this.cost[i] = input.readFloat();
+			}
+			for(int i = 0; i < this.delay.length; i++) {
+				this.delay[i] = input.readFloat();
+			}
+			return true;
+		} catch(IOException error) {
+			System.out.println("Router lookahead: failed to read " + file + ": " + error.getMessage());
+			return false;
+		}
+	}
+
+	private void write(File file, long hash) {
+		if(file == null) {
+			return;
+		}
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(hash);
+			output.writeInt(this.numClasses);
+			output.writeInt(this.sizeX);
+			output.writeInt(this.sizeY);
+			for(float value : this.cost) {
+				output.writeFloat(value);
+			}
+			for(float value : this.delay) {
+				output.writeFloat(value);
+			}
+		} catch(IOException error) {
+			System.out.println("Router lookahead: failed to write " + file + ": " + error.getMessage());
+			tmpFile.delete();
+			return;
+		}
+
+		if(!tmpFile.renameTo(file)) {
+			file.delete();
+			if(!tmpFile.renameTo(file)) {
+				System.out.println("Router lookahead: failed to write " + file);
+				tmpFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package route.route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import route.circuit.resource.Chany;
+import route.circuit.resource.InterposerSite;
+import route.circuit.resource.ResourceGraph;
+import route.circuit.resource.RouteNode;
+
+/**
+ * Assigns an SLL wire of the interposer to each interposer net before the
+ * interposer pass is routed, so the nets don't have to negotiate for the
+ * SLL wires. The placement gives every net a preferred site, two nets
+ * that prefer the same wire are spread over the free wires around it.
+ *
+ * Each net and direction is one row of a min-cost bipartite assignment,
+ * the candidate wires are the SLL wires in the same direction within the
+ * window around the preferred site and inside the bounding box of the
+ * net. The cost of a wire is its manhattan distance to the preferred site,
+ * multiplied by one plus the highest criticality of the connections of the
+ * row, so the critical nets keep their preferred wire.
+ *
+ * The rows are added one by one with a Dijkstra search for the cheapest
+ * augmenting path (Hungarian algorithm with potentials). The rows that
+ * get their preferred wire are matched up front, so only the rows of
+ * conflicting nets need a search.
+ */
+class SLLAssignment {
+	//Rounding of the potentials, a larger negative reduced cost is a bug
+	private static final float EPSILON = 1e-3f;
+
+	private final ResourceGraph rrg;
+	private final int window;
+
+	//Rows: the crossing connections of a net in one direction
+	private final List<List<Connection>> rows;
+	private final List<RouteNode> preferred;
+
+	//Candidate wires and their cost per row
+	private int[][] candidates;
+	private float[][] cost;
+	private final List<RouteNode> wires;
+
+	//The assigned wire of a row, its position in the candidates of the row and the row of a wire
+	private int[] rowWire, rowSlot, wireRow;
+	private float[] rowPotential, wirePotential;
+
+	//State of the search, the nodes are the rows (0 to numRows - 1) and the wires (numRows and up)
+	private float[] distance;
+	private int[] prev, prevSlot;
+	private boolean[] settled;
+	private int[] touched;
+	private int numTouched;
+	private BinaryHeap queue;
+
+	SLLAssignment(ResourceGraph rrg, List<Net> nets, int window) {
+		this.rrg = rrg;
+		this.window = window;
+
+		this.rows = new ArrayList<>();
+		this.preferred = new ArrayList<>();
+		this.wires = new ArrayList<>();
+
+		for(Net net : nets) {
+			Map<RouteNode, List<Connection>> directions = new LinkedHashMap<>();
+			for(Connection con : net.getConnections()) {
+				if(con.isCrossingSLL() && con.sllWireNode != null) {
+					directions.computeIfAbsent(con.sllWireNode, wire -> new ArrayList<>()).add(con);
+				}
+			}
+			for(Map.Entry<RouteNode, List<Connection>> direction : directions.entrySet()) {
+				this.preferred.add(direction.getKey());
+				this.rows.add(direction.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Solve the assignment and give the connections their wire. Returns
+	 * the number of rows that got a wire.
+	 */
+	int assign() {
+		long start = System.nanoTime();
+
+		this.buildCandidates();
+
+		int numRows = this.rows.size();
+		int numWires = this.wires.size();
+		this.rowWire = new int[numRows];
+		this.rowSlot = new int[numRows];
+		this.wireRow = new int[numWires];
+		this.rowPotential = new float[numRows];
+		this.wirePotential = new float[numWires];
+		Arrays.fill(this.rowWire, -1);
+		Arrays.fill(this.wireRow, -1);
+
+		this.distance = new float[numRows + numWires];
+		this.prev = new int[numRows + numWires];
+		this.prevSlot = new int[numRows + numWires];
+		this.settled = new boolean[numRows + numWires];
+		this.touched = new int[numRows + numWires];
+		this.numTouched = 0;
+		this.queue = new BinaryHeap();
+		Arrays.fill(this.distance, Float.POSITIVE_INFINITY);
+
+		//The preferred wire costs nothing, an assignment of zero cost edges is optimal for its size
+		for(int row = 0; row < numRows; row++) {
+			for(int i = 0; i < this.candidates[row].length; i++) {
+				int wire = this.candidates[row][i];
+				if(this.cost[row][i] == 0 && this.wireRow[wire] < 0) {
+					this.rowWire[row] = wire;
+					this.rowSlot[row] = i;
+					this.wireRow[wire] = row;
+					break;
+				}
+			}
+		}
+
+		int searches = 0;
+		for(int row = 0; row < numRows; row++) {
+			if(this.rowWire[row] < 0 && this.candidates[row].length > 0) {
+				this.augment(row);
+				searches++;
+			}
+		}
+
+		int assigned = 0, moved = 0, totalDetour = 0;
+		for(int row = 0; row < numRows; row++) {
+			if(this.rowWire[row] < 0) continue;
+
+			RouteNode wire = this.wires.get(this.rowWire[row]);
+			for(Connection con : this.rows.get(row)) {
+				con.setSLLWire(wire);
+			}
+			assigned++;
+
+			int detour = this.distance(wire, this.preferred.get(row));
+			if(detour > 0) {
+				moved++;
+				totalDetour += detour;
+			}
+		}
+
+		System.out.printf("SLL assignment: %d of %d interposer nets assigned, %d moved (average detour %.2f), %d searches, took %.2f s\n",
+				assigned, numRows, moved, moved > 0 ? (double) totalDetour / moved : 0.0, searches, (System.nanoTime() - start) * 1e-9);
+
+		return assigned;
+	}
+
+	private void buildCandidates() {
+		int numRows = this.rows.size();
+		this.candidates = new int[numRows][];
+		this.cost = new float[numRows][];
+
+		Map<RouteNode, Integer> wireIndex = new HashMap<>();
+		List<Integer> rowCandidates = new ArrayList<>();
+		List<Float> rowCost = new ArrayList<>();
+
+		for(int row = 0; row < numRows; row++) {
+			List<Connection> connections = this.rows.get(row);
+			Connection first = connections.get(0);
+			RouteNode preferred = this.preferred.get(row);
+			String direction = ((Chany) preferred).direction;
+
+			float criticality = 0;
+			for(Connection con : connections) {
+				criticality = Math.max(criticality, con.getCriticality());
+			}
+
+			rowCandidates.clear();
+			rowCost.clear();
+
+			int xMin = Math.max(0, first.xCoordSLL - this.window), xMax = Math.min(this.rrg.getWidth() + 1, first.xCoordSLL + this.window);
+			int yMin = Math.max(0, first.yCoordSLL - this.window), yMax = Math.min(this.rrg.getHeight() + 1, first.yCoordSLL + this.window);
+			for(int x = xMin; x <= xMax; x++) {
+				for(int y = yMin; y <= yMax; y++) {
+					InterposerSite site = this.rrg.getInterposerSite(x, y);
+					if(site == null) continue;
+
+					RouteNode wire = site.getInterposerNode(direction);
+					if(wire == null || !first.net.isInBoundingBoxLimit(wire)) continue;
+
+					Integer index = wireIndex.get(wire);
+					if(index == null) {
+						index = this.wires.size();
+						wireIndex.put(wire, index);
+						this.wires.add(wire);
+					}
+					rowCandidates.add(index);
+					rowCost.add(this.distance(wire, preferred) * (1 + criticality));
+				}
+			}
+
+			this.candidates[row] = new int[rowCandidates.size()];
+			this.cost[row] = new float[rowCost.size()];
+			for(int i = 0; i < rowCandidates.size(); i++) {
+				this.candidates[row][i] = rowCandidates.get(i);
+				this.cost[row][i] = rowCost.get(i);
+			}
+		}
+	}
+
+	/**
+	 * Find the cheapest alternating path from the row to a free wire and
+	 * flip it. The search runs on reduced costs, which are never negative.
+	 * A row without a path to a free wire stays unassigned.
+	 */
+	private void augment(int start) {
+		int numRows = this.rows.size();
+
+		//Make the reduced costs of the new row non negative
+		float potential = -Float.MAX_VALUE;
+		for(int i = 0; i < this.candidates[start].length; i++) {
+			potential = Math.max(potential, this.wirePotential[this.candidates[start][i]] - this.cost[start][i]);
+		}
+		this.rowPotential[start] = potential;
+
+		this.queue.clear();
+		this.relax(start, -1, -1, 0);
+
+		int freeWire = -1;
+		float pathDistance = 0;
+		while(!this.queue.isEmpty()) {
+			int node = this.queue.poll();
+			if(this.settled[node]) continue;
+			this.settled[node] = true;
+			float nodeDistance = this.distance[node];
+
+			if(node < numRows) {
+				for(int i = 0; i < this.candidates[node].length; i++) {
+					int wire = this.candidates[node][i];
+					float reduced = this.cost[node][i] + this.rowPotential[node] - this.wirePotential[wire];
+					assert reduced > -EPSILON : "Reduced cost " + reduced + " from row " + node + " to wire " + wire;
+					this.relax(numRows + wire, node, i, nodeDistance + reduced);
+				}
+			} else {
+				int wire = node - numRows;
+				int row = this.wireRow[wire];
+				if(row < 0) {
+					freeWire = wire;
+					pathDistance = nodeDistance;
+					break;
+				}
+				float reduced = -this.cost[row][this.rowSlot[row]] + this.wirePotential[wire] - this.rowPotential[row];
+				assert reduced > -EPSILON : "Reduced cost " + reduced + " from wire " + wire + " to row " + row;
+				this.relax(row, node, -1, nodeDistance + reduced);
+			}
+		}
+
+		if(freeWire >= 0) {
+			//Keep the reduced costs non negative
+			for(int t = 0; t < this.numTouched; t++) {
+				int node = this.touched[t];
+				if(!this.settled[node]) continue;
+
+				float shift = this.distance[node] - pathDistance;
+				if(shift >= 0) continue;
+				if(node < numRows) {
+					this.rowPotential[node] += shift;
+				} else {
+					this.wirePotential[node - numRows] += shift;
+				}
+			}
+
+			//Flip the path
+			int wire = freeWire;
+			while(true) {
+				int row = this.prev[numRows + wire];
+				int previousWire = this.rowWire[row];
+				this.rowWire[row] = wire;
+				this.rowSlot[row] = this.prevSlot[numRows + wire];
+				this.wireRow[wire] = row;
+				if(row == start) break;
+				wire = previousWire;
+			}
+		}
+
+		for(int t = 0; t < this.numTouched; t++) {
+			int node = this.touched[t];
+			this.distance[node] = Float.POSITIVE_INFINITY;
+			this.settled[node] = false;
+		}
+		this.numTouched = 0;
+	}
+
+	//The slot is the position of a wire in the candidates of the row it is reached from
+	private void relax(int node, int from, int slot, float nodeDistance) {
+		if(!this.settled[node] && nodeDistance < this.distance[node]) {
+			if(this.distance[node] == Float.POSITIVE_INFINITY) {
+				this.touched[this.numTouched++] = node;
+			}
+			this.distance[node] = nodeDistance;
+			this.prev[node] = from;
+			this.prevSlot[node] = slot;
+			this.queue.add(node, nodeDistance);
+		}
+	}
+
+	private int distance(RouteNode wire, RouteNode preferred) {
+		return Math.abs(wire.xlow - preferred.xlow) + Math.abs(wire.ylow - preferred.ylow);
+	}
+}
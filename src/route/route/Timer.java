@@ -0,0 +1,26 @@
+package route.route;
+
+class Timer {
+	private String name;
+	private long time;
+	private long start;
+	
+	public Timer(String name) {
+		this.name = name;
+		this.time = 0;
+	}
+	
+	public void start() {
+		this.start = System.nanoTime();
+	}
+	public void finish() {
+		this.time += System.nanoTime() - this.start;
+	}
+	public void add(Timer other) {
+		this.time += other.time;
+	}
+	
+	public String toString() {
+		return String.format("%-20s %7.2f s\n", this.name, this.time * 1e-9);
+	}
+}
@@ -0,0 +1,57 @@
+package route.util;
+
+/**
+ * Selection of the k-th smallest value of a float array in expected linear
+ * time (quickselect), for when only a threshold is needed and sorting all
+ * values would be wasted work. The array is reordered in place.
+ */
+public class FloatSelection {
+	private FloatSelection() {}
+
+	/**
+	 * Returns the k-th smallest (0-based) of the first size values. After
+	 * the call the values before index k are not larger and the values
+	 * after index k are not smaller than the returned value.
+	 */
+	public static float select(float[] values, int size, int k) {
+		if(k < 0 || k >= size) {
+			throw new IllegalArgumentException("k = " + k + " is not in [0, " + size + ")");
+		}
+
+		int left = 0, right = size - 1;
+		while(right > left) {
+			//Median of three as pivot, sorted or reverse sorted input is common
+			int middle = (left + right) >>> 1;
+			if(values[middle] < values[left]) swap(values, left, middle);
+			if(values[right] < values[left]) swap(values, left, right);
+			if(values[right] < values[middle]) swap(values, middle, right);
+			float pivot = values[middle];
+
+			int i = left, j = right;
+			while(i <= j) {
+				while(values[i] < pivot) i++;
+				while(values[j] > pivot) j--;
+				if(i <= j) {
+					swap(values, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if(k <= j) {
+				right = j;
+			} else if(k >= i) {
+				left = i;
+			} else {
+				return values[k];
+			}
+		}
+		return values[k];
+	}
+
+	private static void swap(float[] values, int i, int j) {
+		float value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+}
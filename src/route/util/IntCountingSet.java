@@ -0,0 +1,188 @@
+package route.util;
+
+import java.util.Arrays;
+
+/**
+ * MultiSet of non-negative int keys that counts how many times each key
+ * is present. The first keys are stored in small inline arrays that are
+ * searched linearly. When more unique keys are added, the arrays are
+ * turned into an open addressing hash table with linear probing. Adding,
+ * removing and counting a key don't allocate, except when the arrays
+ * have to grow.
+ */
+public class IntCountingSet {
+	private static final int INLINE_SIZE = 4;
+	private static final int EMPTY = -1;
+	
+	private int[] keys;
+	private int[] counts;
+	private boolean hashed;
+	
+	private int uniqueSize;
+	private int size;
+	
+	public IntCountingSet() {
+		this.keys = new int[INLINE_SIZE];
+		this.counts = new int[INLINE_SIZE];
+		this.hashed = false;
+		
+		this.uniqueSize = 0;
+		this.size = 0;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	public int uniqueSize() {
+		return this.uniqueSize;
+	}
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	public void add(int key) {
+		this.size++;
+		
+		if(!this.hashed) {
+			for(int i = 0; i < this.uniqueSize; i++) {
+				if(this.keys[i] == key) {
+					this.counts[i]++;
+					return;
+				}
+			}
+			if(this.uniqueSize < INLINE_SIZE) {
+				this.keys[this.uniqueSize] = key;
+				this.counts[this.uniqueSize] = 1;
+				this.uniqueSize++;
+				return;
+			}
+			this.rehash(4 * INLINE_SIZE);
+		}
+		
+		int slot = this.find(key);
+		if(this.keys[slot] == key) {
+			this.counts[slot]++;
+		} else {
+			this.keys[slot] = key;
+			this.counts[slot] = 1;
+			this.uniqueSize++;
+			
+			//Keep the load factor below 0.5
+			if(2 * this.uniqueSize > this.keys.length) {
+				this.rehash(2 * this.keys.length);
+			}
+		}
+	}
+	
+	public boolean remove(int key) {
+		if(!this.hashed) {
+			for(int i = 0; i < this.uniqueSize; i++) {
+				if(this.keys[i] == key) {
+					this.size--;
+					if(--this.counts[i] == 0) {
+						this.uniqueSize--;
+						this.keys[i] = this.keys[this.uniqueSize];
+						this.counts[i] = this.counts[this.uniqueSize];
+					}
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		int slot = this.find(key);
+		if(this.keys[slot] != key) {
+			return false;
+		}
+		
+		this.size--;
+		if(--this.counts[slot] == 0) {
+			this.uniqueSize--;
+			this.deleteSlot(slot);
+		}
+		return true;
+	}
+	
+	public int count(int key) {
+		if(!this.hashed) {
+			for(int i = 0; i < this.uniqueSize; i++) {
+				if(this.keys[i] == key) {
+					return this.counts[i];
+				}
+			}
+			return 0;
+		}
+		
+		int slot = this.find(key);
+		return this.keys[slot] == key ? this.counts[slot] : 0;
+	}
+	
+	public void clear() {
+		this.keys = new int[INLINE_SIZE];
+		this.counts = new int[INLINE_SIZE];
+		this.hashed = false;
+		
+		this.uniqueSize = 0;
+		this.size = 0;
+	}
+	
+	/**
+	 * Returns the slot of the key, or the empty slot where it should be inserted
+	 */
+	private int find(int key) {
+		int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while(this.keys[slot] != EMPTY && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Backward shift deletion, the entries after the deleted slot are moved
+	 * up so no tombstones are needed
+	 */
+	private void deleteSlot(int slot) {
+		int mask = this.keys.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while(this.keys[next] != EMPTY) {
+			int home = hash(this.keys[next]) & mask;
+			
+			//Move the entry if its home slot is not between the hole and the entry
+			if(((next - home) & mask) >= ((next - hole) & mask)) {
+				this.keys[hole] = this.keys[next];
+				this.counts[hole] = this.counts[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this.keys[hole] = EMPTY;
+		this.counts[hole] = 0;
+	}
+	
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		int[] oldCounts = this.counts;
+		int oldLength = this.hashed ? oldKeys.length : this.uniqueSize;
+		boolean wasHashed = this.hashed;
+		
+		this.keys = new int[capacity];
+		this.counts = new int[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.hashed = true;
+		
+		for(int i = 0; i < oldLength; i++) {
+			if(!wasHashed || oldKeys[i] != EMPTY) {
+				int slot = this.find(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.counts[slot] = oldCounts[i];
+			}
+		}
+	}
+	
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}